@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.benchmarks;
+
+import com.smoketurner.dropwizard.zipkin.ReportingZipkinFactory;
+import io.dropwizard.setup.Environment;
+import zipkin2.reporter.Sender;
+
+/**
+ * A reporting factory wired exactly like the network collectors, but sending to a {@link
+ * NoopSender}.
+ */
+public class BenchmarkZipkinFactory extends ReportingZipkinFactory {
+
+  @Override
+  protected Sender buildSender(final Environment environment) {
+    return new NoopSender();
+  }
+}
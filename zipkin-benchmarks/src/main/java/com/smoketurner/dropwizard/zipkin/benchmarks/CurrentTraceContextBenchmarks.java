@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.benchmarks;
+
+import brave.context.slf4j.MDCScopeDecorator;
+import brave.propagation.CurrentTraceContext;
+import brave.propagation.CurrentTraceContext.Scope;
+import brave.propagation.ThreadLocalCurrentTraceContext;
+import brave.propagation.TraceContext;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures opening and closing a scope on the {@link CurrentTraceContext} built by {@code
+ * AbstractZipkinFactory.buildTracing}, with and without the {@link MDCScopeDecorator}.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(org.openjdk.jmh.annotations.Scope.Thread)
+@Threads(2)
+public class CurrentTraceContextBenchmarks {
+
+  @Param({"true", "false"})
+  public boolean sampled;
+
+  private final CurrentTraceContext plain = ThreadLocalCurrentTraceContext.newBuilder().build();
+  private final CurrentTraceContext mdc =
+      ThreadLocalCurrentTraceContext.newBuilder()
+          .addScopeDecorator(MDCScopeDecorator.get())
+          .build();
+
+  private TraceContext context;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context =
+        TraceContext.newBuilder()
+            .traceIdHigh(333L)
+            .traceId(444L)
+            .spanId(3)
+            .sampled(sampled)
+            .build();
+  }
+
+  @Benchmark
+  public void newScope_plain() {
+    try (Scope scope = plain.newScope(context)) {
+      // measuring scope open and close only
+    }
+  }
+
+  @Benchmark
+  public void newScope_mdc() {
+    try (Scope scope = mdc.newScope(context)) {
+      // measuring scope open and close only
+    }
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include(".*" + CurrentTraceContextBenchmarks.class.getSimpleName() + ".*")
+            .addProfiler("gc")
+            .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.benchmarks;
+
+import brave.ScopedSpan;
+import brave.Tracer;
+import brave.http.HttpTracing;
+import com.smoketurner.dropwizard.zipkin.client.ZipkinClientBuilder;
+import com.smoketurner.dropwizard.zipkin.client.ZipkinClientConfiguration;
+import com.sun.net.httpserver.HttpServer;
+import io.dropwizard.setup.Environment;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures a fan-out of {@code fanOut} calls to a local HTTP server made within a traced operation
+ * by a client built by {@link ZipkinClientBuilder}, either one after the other with the synchronous
+ * invoker or concurrently through the {@code async()} and {@code rx()} invokers.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(2)
+public class JerseyAsyncClientBenchmarks {
+
+  @Param({"0.0", "0.01", "1.0"})
+  public float sampleRate;
+
+  @Param({"4"})
+  public int fanOut;
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private Environment environment;
+  private Tracer tracer;
+  private Client client;
+  private WebTarget target;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          exchange.sendResponseHeaders(204, -1);
+          exchange.close();
+        });
+    executor = Executors.newFixedThreadPool(8);
+    server.setExecutor(executor);
+    server.start();
+
+    environment = new Environment("benchmark");
+    final BenchmarkZipkinFactory factory = new BenchmarkZipkinFactory();
+    factory.setSampleRate(sampleRate);
+    final HttpTracing httpTracing = factory.build(environment).get();
+    tracer = httpTracing.tracing().tracer();
+
+    final ZipkinClientConfiguration configuration = new ZipkinClientConfiguration();
+    configuration.setServiceName("backend");
+    configuration.setMinThreads(8);
+    configuration.setMaxThreads(8);
+    for (LifeCycle managed : environment.lifecycle().getManagedObjects()) {
+      managed.start();
+    }
+
+    client = new ZipkinClientBuilder(environment, httpTracing).using(configuration).build("traced");
+    target = client.target("http://127.0.0.1:" + server.getAddress().getPort() + "/api");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    client.close();
+    for (LifeCycle managed : environment.lifecycle().getManagedObjects()) {
+      managed.stop();
+    }
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public int fanout_sync() {
+    final ScopedSpan span = tracer.startScopedSpan("fanout");
+    try {
+      int status = 0;
+      for (int i = 0; i < fanOut; i++) {
+        status += target.request().get().getStatus();
+      }
+      return status;
+    } finally {
+      span.finish();
+    }
+  }
+
+  @Benchmark
+  public int fanout_async() throws Exception {
+    final ScopedSpan span = tracer.startScopedSpan("fanout");
+    try {
+      @SuppressWarnings("unchecked")
+      final Future<Response>[] responses = new Future[fanOut];
+      for (int i = 0; i < fanOut; i++) {
+        responses[i] = target.request().async().get();
+      }
+      int status = 0;
+      for (Future<Response> response : responses) {
+        status += response.get().getStatus();
+      }
+      return status;
+    } finally {
+      span.finish();
+    }
+  }
+
+  @Benchmark
+  public int fanout_rx() {
+    final ScopedSpan span = tracer.startScopedSpan("fanout");
+    try {
+      final CompletableFuture<?>[] responses = new CompletableFuture<?>[fanOut];
+      for (int i = 0; i < fanOut; i++) {
+        responses[i] = target.request().rx().get().toCompletableFuture();
+      }
+      CompletableFuture.allOf(responses).join();
+      int status = 0;
+      for (CompletableFuture<?> response : responses) {
+        status += ((Response) response.join()).getStatus();
+      }
+      return status;
+    } finally {
+      span.finish();
+    }
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include(".*" + JerseyAsyncClientBenchmarks.class.getSimpleName() + ".*")
+            .addProfiler("gc")
+            .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.benchmarks;
+
+import brave.http.HttpTracing;
+import com.smoketurner.dropwizard.zipkin.client.ZipkinClientBuilder;
+import com.smoketurner.dropwizard.zipkin.client.ZipkinClientConfiguration;
+import com.sun.net.httpserver.HttpServer;
+import io.dropwizard.client.JerseyClientBuilder;
+import io.dropwizard.setup.Environment;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures Jersey clients built by {@link ZipkinClientBuilder}, whose Apache connector uses {@code
+ * TracingHttpClientBuilder}, against a plain {@link JerseyClientBuilder} calling the same local
+ * HTTP server.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(2)
+public class JerseyClientBenchmarks {
+
+  @Param({"0.0", "0.01", "1.0"})
+  public float sampleRate;
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private Environment environment;
+  private Client untracedClient;
+  private Client tracedClient;
+  private WebTarget untraced;
+  private WebTarget traced;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          exchange.sendResponseHeaders(204, -1);
+          exchange.close();
+        });
+    executor = Executors.newFixedThreadPool(4);
+    server.setExecutor(executor);
+    server.start();
+
+    environment = new Environment("benchmark");
+    final BenchmarkZipkinFactory factory = new BenchmarkZipkinFactory();
+    factory.setSampleRate(sampleRate);
+    final HttpTracing httpTracing = factory.build(environment).get();
+
+    final ZipkinClientConfiguration configuration = new ZipkinClientConfiguration();
+    configuration.setServiceName("backend");
+
+    untracedClient = new JerseyClientBuilder(environment).using(configuration).build("untraced");
+    tracedClient =
+        new ZipkinClientBuilder(environment, httpTracing).using(configuration).build("traced");
+
+    final String uri = "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    untraced = untracedClient.target(uri);
+    traced = tracedClient.target(uri);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    untracedClient.close();
+    tracedClient.close();
+    for (LifeCycle managed : environment.lifecycle().getManagedObjects()) {
+      managed.stop();
+    }
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public int client_untraced() {
+    return untraced.request().get().getStatus();
+  }
+
+  @Benchmark
+  public int client_traced() {
+    return traced.request().get().getStatus();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include(".*" + JerseyClientBenchmarks.class.getSimpleName() + ".*")
+            .addProfiler("gc")
+            .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.benchmarks;
+
+import io.dropwizard.setup.Environment;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the per-request cost of the {@code TracingApplicationEventListener} registered by {@code
+ * AbstractZipkinFactory.buildTracing}, by dispatching in-memory requests through Jersey with and
+ * without tracing.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(1)
+public class JerseyServerBenchmarks {
+
+  private static final URI BASE_URI = URI.create("http://localhost:8080/");
+  private static final URI REQUEST_URI = URI.create("http://localhost:8080/hello/world");
+
+  @Param({"0.0", "0.01", "1.0"})
+  public float sampleRate;
+
+  private Environment environment;
+  private ApplicationHandler untraced;
+  private ApplicationHandler traced;
+
+  @Path("/hello")
+  public static class HelloResource {
+    @GET
+    @Path("/{name}")
+    public String hello(@PathParam("name") String name) {
+      return name;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    final Environment untracedEnvironment = new Environment("benchmark");
+    untracedEnvironment.jersey().register(HelloResource.class);
+    untraced = new ApplicationHandler(untracedEnvironment.jersey().getResourceConfig());
+
+    environment = new Environment("benchmark");
+    final BenchmarkZipkinFactory factory = new BenchmarkZipkinFactory();
+    factory.setSampleRate(sampleRate);
+    factory.build(environment);
+    environment.jersey().register(HelloResource.class);
+    traced = new ApplicationHandler(environment.jersey().getResourceConfig());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    for (LifeCycle managed : environment.lifecycle().getManagedObjects()) {
+      managed.stop();
+    }
+  }
+
+  @Benchmark
+  public ContainerResponse server_untraced() throws Exception {
+    return untraced.apply(newRequest()).get();
+  }
+
+  @Benchmark
+  public ContainerResponse server_traced() throws Exception {
+    return traced.apply(newRequest()).get();
+  }
+
+  private static ContainerRequest newRequest() {
+    return new ContainerRequest(BASE_URI, REQUEST_URI, "GET", null, new MapPropertiesDelegate());
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include(".*" + JerseyServerBenchmarks.class.getSimpleName() + ".*")
+            .addProfiler("gc")
+            .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.benchmarks;
+
+import java.util.List;
+import zipkin2.Call;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+/** A {@link Sender} that discards every message, so benchmarks only measure the reporting path. */
+public final class NoopSender extends Sender {
+
+  private final Encoding encoding;
+
+  public NoopSender() {
+    this(Encoding.JSON);
+  }
+
+  public NoopSender(final Encoding encoding) {
+    this.encoding = encoding;
+  }
+
+  @Override
+  public Encoding encoding() {
+    return encoding;
+  }
+
+  @Override
+  public int messageMaxBytes() {
+    return 500_000;
+  }
+
+  @Override
+  public int messageSizeInBytes(List<byte[]> encodedSpans) {
+    return encoding.listSizeInBytes(encodedSpans);
+  }
+
+  @Override
+  public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+    return Call.create(null);
+  }
+
+  @Override
+  public CheckResult check() {
+    return CheckResult.OK;
+  }
+
+  @Override
+  public String toString() {
+    return "NoopSender";
+  }
+}
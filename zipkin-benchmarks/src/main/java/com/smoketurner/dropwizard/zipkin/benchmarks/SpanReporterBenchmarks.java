@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.benchmarks;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.sampler.Sampler;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin2.Endpoint;
+import zipkin2.reporter.AsyncReporter;
+import zipkin2.reporter.brave.ZipkinSpanHandler;
+
+/**
+ * Measures recording a span and handing it to {@link ZipkinSpanHandler} backed by an {@link
+ * AsyncReporter} with the Dropwizard reporter metrics, as done by {@code ReportingZipkinFactory}.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(2)
+public class SpanReporterBenchmarks {
+
+  static final zipkin2.Span CLIENT_SPAN =
+      zipkin2.Span.newBuilder()
+          .traceId("7180c278b62e8f6a216a2aea45d08fc9")
+          .parentId("6b221d5bc9e6496c")
+          .id("5b4185666d50f68b")
+          .name("get")
+          .kind(zipkin2.Span.Kind.CLIENT)
+          .localEndpoint(Endpoint.newBuilder().serviceName("frontend").ip("127.0.0.1").build())
+          .remoteEndpoint(Endpoint.newBuilder().serviceName("backend").ip("192.168.99.101").build())
+          .timestamp(1472470996199000L)
+          .duration(207000L)
+          .putTag("http.path", "/api")
+          .build();
+
+  @Param({"0.0", "0.01", "1.0"})
+  public float sampleRate;
+
+  private AsyncReporter<zipkin2.Span> reporter;
+  private Tracing tracing;
+  private Tracer tracer;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    reporter =
+        AsyncReporter.builder(new NoopSender())
+            .metrics(new DropwizardReporterMetrics(new MetricRegistry()))
+            .build();
+    tracing =
+        Tracing.newBuilder()
+            .sampler(Sampler.create(sampleRate))
+            .addSpanHandler(ZipkinSpanHandler.create(reporter))
+            .build();
+    tracer = tracing.tracer();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    tracing.close();
+    reporter.close();
+  }
+
+  @Benchmark
+  public void report() {
+    reporter.report(CLIENT_SPAN);
+  }
+
+  @Benchmark
+  public void startFinishSpan() {
+    final Span span = tracer.nextSpan().name("get /api").kind(Span.Kind.SERVER).start();
+    span.tag("http.path", "/api");
+    span.finish();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include(".*" + SpanReporterBenchmarks.class.getSimpleName() + ".*")
+            .addProfiler("gc")
+            .build();
+
+    new Runner(opt).run();
+  }
+}
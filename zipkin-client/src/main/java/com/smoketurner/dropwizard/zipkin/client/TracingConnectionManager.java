@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.client;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Records on the client span in scope how long the request waited to lease a connection from the
+ * pool, and whether the leased connection was reused or had to be opened. The time spent opening a
+ * new connection, including the TLS handshake, is marked by the {@code http.connect} and {@code
+ * http.connected} annotations.
+ */
+class TracingConnectionManager implements HttpClientConnectionManager {
+
+  static final String CONNECTION_TAG = "http.connection";
+  static final String LEASE_ANNOTATION = "http.pool.lease";
+  static final String LEASED_ANNOTATION = "http.pool.leased";
+  static final String CONNECT_ANNOTATION = "http.connect";
+  static final String CONNECTED_ANNOTATION = "http.connected";
+
+  private final HttpClientConnectionManager delegate;
+  private final Tracing tracing;
+  private final Tracer tracer;
+
+  /**
+   * Constructor
+   *
+   * @param delegate Connection manager to lease connections from
+   * @param tracing Tracing instance
+   */
+  TracingConnectionManager(final HttpClientConnectionManager delegate, final Tracing tracing) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.tracing = Objects.requireNonNull(tracing);
+    this.tracer = tracing.tracer();
+  }
+
+  @Nullable
+  private Span currentSpan() {
+    final Span span = tracer.currentSpan();
+    return span == null || span.isNoop() ? null : span;
+  }
+
+  private long currentTimeMicroseconds(final Span span) {
+    return tracing.clock(span.context()).currentTimeMicroseconds();
+  }
+
+  @Override
+  public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+    final ConnectionRequest request = delegate.requestConnection(route, state);
+    final Span span = currentSpan();
+    if (span == null) {
+      return request;
+    }
+    return new ConnectionRequest() {
+      @Override
+      public HttpClientConnection get(final long timeout, final TimeUnit unit)
+          throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+        span.annotate(currentTimeMicroseconds(span), LEASE_ANNOTATION);
+        final HttpClientConnection connection = request.get(timeout, unit);
+        span.annotate(currentTimeMicroseconds(span), LEASED_ANNOTATION);
+        span.tag(CONNECTION_TAG, connection.isOpen() ? "reused" : "new");
+        return connection;
+      }
+
+      @Override
+      public boolean cancel() {
+        return request.cancel();
+      }
+    };
+  }
+
+  @Override
+  public void releaseConnection(
+      final HttpClientConnection conn,
+      final Object newState,
+      final long validDuration,
+      final TimeUnit timeUnit) {
+    delegate.releaseConnection(conn, newState, validDuration, timeUnit);
+  }
+
+  @Override
+  public void connect(
+      final HttpClientConnection conn,
+      final HttpRoute route,
+      final int connectTimeout,
+      final HttpContext context)
+      throws IOException {
+    final Span span = currentSpan();
+    if (span == null) {
+      delegate.connect(conn, route, connectTimeout, context);
+      return;
+    }
+    span.annotate(currentTimeMicroseconds(span), CONNECT_ANNOTATION);
+    delegate.connect(conn, route, connectTimeout, context);
+    span.annotate(currentTimeMicroseconds(span), CONNECTED_ANNOTATION);
+  }
+
+  @Override
+  public void upgrade(
+      final HttpClientConnection conn, final HttpRoute route, final HttpContext context)
+      throws IOException {
+    delegate.upgrade(conn, route, context);
+  }
+
+  @Override
+  public void routeComplete(
+      final HttpClientConnection conn, final HttpRoute route, final HttpContext context)
+      throws IOException {
+    delegate.routeComplete(conn, route, context);
+  }
+
+  @Override
+  public void closeIdleConnections(final long idletime, final TimeUnit unit) {
+    delegate.closeIdleConnections(idletime, unit);
+  }
+
+  @Override
+  public void closeExpiredConnections() {
+    delegate.closeExpiredConnections();
+  }
+
+  @Override
+  public void shutdown() {
+    delegate.shutdown();
+  }
+}
@@ -16,18 +16,33 @@
 package com.smoketurner.dropwizard.zipkin.client;
 
 import brave.http.HttpTracing;
-import brave.httpclient.TracingHttpClientBuilder;
 import brave.jaxrs2.TracingClientFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
-import io.dropwizard.client.HttpClientBuilder;
 import io.dropwizard.client.JerseyClientBuilder;
 import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.setup.Environment;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
 import javax.ws.rs.client.Client;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
 
+/**
+ * A {@link JerseyClientBuilder} whose clients record a client span for each request.
+ *
+ * <p>Requests sent through the default Apache connector are traced by {@link
+ * ZipkinHttpClientBuilder}. When another connector is configured with {@link
+ * #using(ConnectorProvider)}, a {@link TracingClientFilter} is registered instead. The executor
+ * running {@code async()} and {@code rx()} invocations propagates the trace context of the calling
+ * thread, so those requests are traced as children of the span that made them.
+ */
 public class ZipkinClientBuilder extends JerseyClientBuilder {
   private final Environment environment;
   private HttpTracing httpTracing;
+  private final ZipkinHttpClientBuilder apacheHttpClientBuilder;
+  private JerseyClientConfiguration configuration = new JerseyClientConfiguration();
+  private boolean hasExecutorService;
+  private boolean hasConnectorProvider;
 
   /**
    * Constructor
@@ -39,13 +54,8 @@ public class ZipkinClientBuilder extends JerseyClientBuilder {
     super(environment);
     this.environment = environment;
     this.httpTracing = httpTracing;
-    setApacheHttpClientBuilder(
-        new HttpClientBuilder(environment) {
-          @Override
-          protected org.apache.http.impl.client.HttpClientBuilder createBuilder() {
-            return TracingHttpClientBuilder.create(httpTracing);
-          }
-        });
+    this.apacheHttpClientBuilder = new ZipkinHttpClientBuilder(environment, httpTracing);
+    setApacheHttpClientBuilder(apacheHttpClientBuilder);
   }
 
   @Override
@@ -55,10 +65,54 @@ public class ZipkinClientBuilder extends JerseyClientBuilder {
       if (!Strings.isNullOrEmpty(remoteServiceName)) {
         httpTracing = httpTracing.clientOf(remoteServiceName);
       }
+      apacheHttpClientBuilder.serviceName(remoteServiceName);
     }
+    this.configuration = configuration;
     return super.using(configuration);
   }
 
+  @Override
+  public JerseyClientBuilder using(ExecutorService executorService) {
+    hasExecutorService = true;
+    return super.using(wrap(executorService));
+  }
+
+  @Override
+  public JerseyClientBuilder using(ExecutorService executorService, ObjectMapper objectMapper) {
+    hasExecutorService = true;
+    return super.using(wrap(executorService), objectMapper);
+  }
+
+  @Override
+  public JerseyClientBuilder using(ConnectorProvider connectorProvider) {
+    hasConnectorProvider = true;
+    return super.using(connectorProvider);
+  }
+
+  @Override
+  public Client build(String name) {
+    if (!hasExecutorService) {
+      // same executor Dropwizard would create, built here so it can propagate the trace context
+      using(
+          environment
+              .lifecycle()
+              .executorService("jersey-client-" + name + "-%d")
+              .minThreads(configuration.getMinThreads())
+              .maxThreads(configuration.getMaxThreads())
+              .workQueue(new ArrayBlockingQueue<>(configuration.getWorkQueueSize()))
+              .build());
+    }
+    final Client client = super.build(name);
+    if (hasConnectorProvider) {
+      client.register(TracingClientFilter.create(httpTracing));
+    }
+    return client;
+  }
+
+  private ExecutorService wrap(ExecutorService executorService) {
+    return httpTracing.tracing().currentTraceContext().executorService(executorService);
+  }
+
   /**
    * Build a new Jersey Client that is instrumented for Zipkin
    *
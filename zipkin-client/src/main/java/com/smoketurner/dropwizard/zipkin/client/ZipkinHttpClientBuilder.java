@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.client;
+
+import brave.http.HttpTracing;
+import brave.httpclient.TracingHttpClientBuilder;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.httpclient.InstrumentedHttpClientConnectionManager;
+import com.google.common.base.Strings;
+import io.dropwizard.client.ConfiguredCloseableHttpClient;
+import io.dropwizard.client.HttpClientBuilder;
+import io.dropwizard.setup.Environment;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nullable;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * An {@link HttpClientBuilder} whose clients are traced by {@link TracingHttpClientBuilder}. Each
+ * client span also records the connection pool lease, see {@link TracingConnectionManager}, and the
+ * pool is exposed as {@code tracing.client.<serviceName>.pool.leased}, {@code available} and {@code
+ * pending} gauges.
+ */
+public class ZipkinHttpClientBuilder extends HttpClientBuilder {
+
+  static final String METRIC_PREFIX = "tracing.client";
+
+  private final MetricRegistry metrics;
+  private HttpTracing httpTracing;
+  @Nullable private String serviceName;
+
+  /**
+   * Connection manager of the client being created by the calling thread. {@link
+   * HttpClientBuilder#createClient} only hands it to {@link #customizeBuilder} by setting it on the
+   * builder, so it is passed along for the duration of that call and is never shared between
+   * threads building clients concurrently.
+   */
+  private final ThreadLocal<InstrumentedHttpClientConnectionManager> creating = new ThreadLocal<>();
+
+  /**
+   * Constructor
+   *
+   * @param environment Environment
+   * @param httpTracing HttpTracing instance
+   */
+  public ZipkinHttpClientBuilder(final Environment environment, final HttpTracing httpTracing) {
+    super(environment);
+    this.metrics = environment.metrics();
+    this.httpTracing = Objects.requireNonNull(httpTracing);
+  }
+
+  /**
+   * Sets the remote service name of the client spans, which also names the pool gauges. Defaults to
+   * the name of the client.
+   *
+   * @param serviceName the service name this client will call
+   * @return this builder
+   */
+  public ZipkinHttpClientBuilder serviceName(@Nullable final String serviceName) {
+    this.serviceName = serviceName;
+    if (!Strings.isNullOrEmpty(serviceName)) {
+      httpTracing = httpTracing.clientOf(serviceName);
+    }
+    return this;
+  }
+
+  @Override
+  protected org.apache.http.impl.client.HttpClientBuilder createBuilder() {
+    return TracingHttpClientBuilder.create(httpTracing);
+  }
+
+  @Override
+  protected ConfiguredCloseableHttpClient createClient(
+      final org.apache.http.impl.client.HttpClientBuilder builder,
+      final InstrumentedHttpClientConnectionManager manager,
+      final String clientName) {
+    final String prefix =
+        MetricRegistry.name(
+            METRIC_PREFIX, Strings.isNullOrEmpty(serviceName) ? clientName : serviceName, "pool");
+    registerGauge(MetricRegistry.name(prefix, "leased"), manager, PoolStats::getLeased);
+    registerGauge(MetricRegistry.name(prefix, "available"), manager, PoolStats::getAvailable);
+    registerGauge(MetricRegistry.name(prefix, "pending"), manager, PoolStats::getPending);
+
+    // customizeBuilder() is called by super.createClient() once the manager is set on the builder
+    creating.set(manager);
+    try {
+      return super.createClient(builder, manager, clientName);
+    } finally {
+      creating.remove();
+    }
+  }
+
+  @Override
+  protected org.apache.http.impl.client.HttpClientBuilder customizeBuilder(
+      final org.apache.http.impl.client.HttpClientBuilder builder) {
+    final InstrumentedHttpClientConnectionManager manager = creating.get();
+    if (manager != null) {
+      builder.setConnectionManager(new TracingConnectionManager(manager, httpTracing.tracing()));
+    }
+    return super.customizeBuilder(builder);
+  }
+
+  private void registerGauge(
+      final String name,
+      final InstrumentedHttpClientConnectionManager manager,
+      final ToIntFunction<PoolStats> stat) {
+    metrics.gauge(name, () -> (Gauge<Integer>) () -> stat.applyAsInt(manager.getTotalStats()));
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.ScopedSpan;
+import brave.Span;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.http.HttpTracing;
+import brave.propagation.ThreadLocalCurrentTraceContext;
+import brave.propagation.TraceContext;
+import com.codahale.metrics.Gauge;
+import com.sun.net.httpserver.HttpServer;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZipkinClientBuilderTest {
+
+  private final List<MutableSpan> spans = new CopyOnWriteArrayList<>();
+  private final BlockingQueue<String> traceparents = new LinkedBlockingQueue<>();
+  private final Tracing tracing =
+      Tracing.newBuilder()
+          .currentTraceContext(ThreadLocalCurrentTraceContext.create())
+          .addSpanHandler(
+              new SpanHandler() {
+                @Override
+                public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                  spans.add(span);
+                  return true;
+                }
+              })
+          .build();
+  private final Environment environment = new Environment("test");
+  private final ZipkinClientConfiguration configuration = new ZipkinClientConfiguration();
+  private HttpServer server;
+  private Client client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          traceparents.add(String.valueOf(exchange.getRequestHeaders().getFirst("X-B3-TraceId")));
+          exchange.sendResponseHeaders(200, 2);
+          exchange.getResponseBody().write(new byte[] {'o', 'k'});
+          exchange.close();
+        });
+    server.start();
+    configuration.setServiceName("backend");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.close();
+    }
+    for (LifeCycle managed : environment.lifecycle().getManagedObjects()) {
+      managed.stop();
+    }
+    server.stop(0);
+    tracing.close();
+  }
+
+  private WebTarget target(final ZipkinClientBuilder builder) {
+    client = builder.using(configuration).build("test");
+    return client.target("http://127.0.0.1:" + server.getAddress().getPort() + "/api");
+  }
+
+  private void assertClientSpanOf(final ScopedSpan parent) throws Exception {
+    assertThat(traceparents.poll(5, TimeUnit.SECONDS)).isEqualTo(parent.context().traceIdString());
+
+    final MutableSpan span = spans.get(0);
+    assertThat(span.kind()).isEqualTo(Span.Kind.CLIENT);
+    assertThat(span.remoteServiceName()).isEqualTo("backend");
+    assertThat(span.traceId()).isEqualTo(parent.context().traceIdString());
+    assertThat(span.parentId()).isEqualTo(parent.context().spanIdString());
+  }
+
+  @Test
+  public void testAsyncInvocationIsChildOfCaller() throws Exception {
+    final WebTarget target =
+        target(new ZipkinClientBuilder(environment, HttpTracing.create(tracing)));
+
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    try {
+      final Response response = target.request().async().get().get(5, TimeUnit.SECONDS);
+      assertThat(response.getStatus()).isEqualTo(200);
+    } finally {
+      parent.finish();
+    }
+
+    assertClientSpanOf(parent);
+  }
+
+  @Test
+  public void testRxInvocationIsChildOfCaller() throws Exception {
+    final WebTarget target =
+        target(new ZipkinClientBuilder(environment, HttpTracing.create(tracing)));
+
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    try {
+      final Response response =
+          target.request().rx().get().toCompletableFuture().get(5, TimeUnit.SECONDS);
+      assertThat(response.getStatus()).isEqualTo(200);
+    } finally {
+      parent.finish();
+    }
+
+    assertClientSpanOf(parent);
+  }
+
+  @Test
+  public void testOtherConnectorIsTraced() throws Exception {
+    final ZipkinClientBuilder builder =
+        new ZipkinClientBuilder(environment, HttpTracing.create(tracing));
+    builder.using(new HttpUrlConnectorProvider());
+    final WebTarget target = target(builder);
+
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    try {
+      final Response response = target.request().async().get().get(5, TimeUnit.SECONDS);
+      assertThat(response.getStatus()).isEqualTo(200);
+    } finally {
+      parent.finish();
+    }
+
+    assertClientSpanOf(parent);
+  }
+
+  @Test
+  public void testRecordsConnectionLease() throws Exception {
+    configuration.setKeepAlive(Duration.minutes(1));
+    final WebTarget target =
+        target(new ZipkinClientBuilder(environment, HttpTracing.create(tracing)));
+
+    for (int i = 0; i < 2; i++) {
+      try (Response response = target.request().get()) {
+        assertThat(response.getStatus()).isEqualTo(200);
+      }
+    }
+
+    assertThat(spans).hasSize(2);
+    final MutableSpan opened = spans.get(0);
+    assertThat(opened.tag(TracingConnectionManager.CONNECTION_TAG)).isEqualTo("new");
+    assertThat(annotations(opened))
+        .containsExactly(
+            TracingConnectionManager.LEASE_ANNOTATION,
+            TracingConnectionManager.LEASED_ANNOTATION,
+            TracingConnectionManager.CONNECT_ANNOTATION,
+            TracingConnectionManager.CONNECTED_ANNOTATION);
+
+    final MutableSpan reused = spans.get(1);
+    assertThat(reused.tag(TracingConnectionManager.CONNECTION_TAG)).isEqualTo("reused");
+    assertThat(annotations(reused))
+        .containsExactly(
+            TracingConnectionManager.LEASE_ANNOTATION, TracingConnectionManager.LEASED_ANNOTATION);
+
+    final SortedMap<String, Gauge> gauges = environment.metrics().getGauges();
+    assertThat(gauges.get("tracing.client.backend.pool.leased").getValue()).isEqualTo(0);
+    assertThat(gauges.get("tracing.client.backend.pool.available").getValue()).isEqualTo(1);
+    assertThat(gauges.get("tracing.client.backend.pool.pending").getValue()).isEqualTo(0);
+  }
+
+  private static List<String> annotations(final MutableSpan span) {
+    final List<String> annotations = new ArrayList<>();
+    for (int i = 0; i < span.annotationCount(); i++) {
+      annotations.add(span.annotationValueAt(i));
+    }
+    return annotations;
+  }
+}
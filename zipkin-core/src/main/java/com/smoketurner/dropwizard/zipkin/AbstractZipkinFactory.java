@@ -30,19 +30,48 @@ import brave.sampler.Sampler;
 import brave.sampler.SamplerFunction;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import io.dropwizard.lifecycle.Managed;
+import com.smoketurner.dropwizard.zipkin.async.AsyncTracingApplicationEventListener;
+import com.smoketurner.dropwizard.zipkin.async.TracingManagedAsyncExecutorProvider;
+import com.smoketurner.dropwizard.zipkin.handler.RecentTracesFactory;
+import com.smoketurner.dropwizard.zipkin.handler.SpanBudgetFactory;
+import com.smoketurner.dropwizard.zipkin.handler.SpanMetricsFactory;
+import com.smoketurner.dropwizard.zipkin.handler.TailSamplingFactory;
+import com.smoketurner.dropwizard.zipkin.managed.TracingShutdownManager;
+import com.smoketurner.dropwizard.zipkin.sampler.IgnoredAnnotationsApplicationEventListener;
+import com.smoketurner.dropwizard.zipkin.sampler.LoadShedder;
+import com.smoketurner.dropwizard.zipkin.sampler.ResourceMethodSampler;
+import com.smoketurner.dropwizard.zipkin.sampler.ResourceMethodSamplingApplicationEventListener;
+import com.smoketurner.dropwizard.zipkin.sampler.SamplerFactory;
+import com.smoketurner.dropwizard.zipkin.sampler.SwitchableSampler;
+import com.smoketurner.dropwizard.zipkin.servlets.RouteApplicationEventListener;
+import com.smoketurner.dropwizard.zipkin.servlets.TracingFilter;
+import com.smoketurner.dropwizard.zipkin.tasks.ExportTask;
+import com.smoketurner.dropwizard.zipkin.tasks.SamplerTask;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
 import io.dropwizard.util.Strings;
+import io.dropwizard.validation.MinDuration;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.servlet.DispatcherType;
+import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+import zipkin2.reporter.brave.ZipkinSpanHandler;
 
 /**
+ * @see AsyncHttpZipkinFactory
+ * @see CompositeZipkinFactory
  * @see ConsoleZipkinFactory
  * @see EmptyZipkinFactory
+ * @see FileZipkinFactory
  * @see HttpZipkinFactory
  * @see KafkaZipkinFactory
  */
@@ -50,6 +79,17 @@ public abstract class AbstractZipkinFactory implements ZipkinFactory {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractZipkinFactory.class);
 
+  /** Prefix of the metrics of the admin tasks changing the sampler and pausing the export. */
+  public static final String TASK_METRIC_PREFIX = "tracing.control";
+
+  /** Where incoming requests are traced. */
+  public enum ServerTracing {
+    /** Trace the requests handled by Jersey resources, with a Jersey event listener. */
+    JERSEY,
+    /** Trace every request handled by Jetty, with a servlet filter. */
+    FILTER
+  }
+
   private boolean enabled = true;
 
   @Nullable private String serviceName;
@@ -64,8 +104,28 @@ public abstract class AbstractZipkinFactory implements ZipkinFactory {
   @Max(1)
   private float sampleRate = 1.0f;
 
+  @Valid @Nullable private SamplerFactory samplerFactory;
+
   @Nullable private Sampler sampler = null;
 
+  @Valid @Nullable private TailSamplingFactory tailSampling;
+
+  @Valid @Nullable private SpanMetricsFactory spanMetrics;
+
+  @Valid @Nullable private SpanBudgetFactory spanBudget;
+
+  @Valid @Nullable private RecentTracesFactory recentTraces;
+
+  @NotNull private ServerTracing serverTracing = ServerTracing.JERSEY;
+
+  private boolean traceAdmin = false;
+
+  @NotNull
+  @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS)
+  private Duration shutdownTimeout = Duration.seconds(5);
+
+  @Nullable private TracingShutdownManager shutdownManager;
+
   @Deprecated @Nullable private HttpClientParser clientParser;
   @Nullable private HttpRequestParser clientRequestParser;
   @Nullable private HttpResponseParser clientResponseParser;
@@ -131,12 +191,30 @@ public abstract class AbstractZipkinFactory implements ZipkinFactory {
     this.sampleRate = sampleRate;
   }
 
+  @Nullable
+  @JsonProperty("sampler")
+  public SamplerFactory getSamplerFactory() {
+    return samplerFactory;
+  }
+
+  /**
+   * @param samplerFactory how to sample traces, which takes precedence over {@link
+   *     #setSampleRate(float)}
+   */
+  @JsonProperty("sampler")
+  public void setSamplerFactory(@Nullable SamplerFactory samplerFactory) {
+    this.samplerFactory = samplerFactory;
+  }
+
   @JsonIgnore
   public Sampler getSampler() {
-    if (sampler == null) {
-      return Sampler.create(sampleRate);
+    if (sampler != null) {
+      return sampler;
+    }
+    if (samplerFactory != null) {
+      return samplerFactory.build();
     }
-    return sampler;
+    return Sampler.create(sampleRate);
   }
 
   @JsonIgnore
@@ -144,6 +222,124 @@ public abstract class AbstractZipkinFactory implements ZipkinFactory {
     this.sampler = sampler;
   }
 
+  /**
+   * Build the sampler of new traces, like {@link #getSampler()}, registering its metrics.
+   *
+   * @param environment Environment
+   * @return Sampler instance
+   */
+  protected Sampler buildSampler(final Environment environment) {
+    if (sampler != null) {
+      return sampler;
+    }
+    if (samplerFactory != null) {
+      return samplerFactory.build(environment.metrics());
+    }
+    return Sampler.create(sampleRate);
+  }
+
+  @Nullable
+  @JsonProperty
+  public TailSamplingFactory getTailSampling() {
+    return tailSampling;
+  }
+
+  /**
+   * @param tailSampling how to keep failed and slow traces which were not sampled, or null to only
+   *     keep sampled traces
+   */
+  @JsonProperty
+  public void setTailSampling(@Nullable TailSamplingFactory tailSampling) {
+    this.tailSampling = tailSampling;
+  }
+
+  @Nullable
+  @JsonProperty
+  public SpanMetricsFactory getSpanMetrics() {
+    return spanMetrics;
+  }
+
+  /**
+   * @param spanMetrics how to record metrics from every server and client span, whether or not it
+   *     is sampled, or null to not record them
+   */
+  @JsonProperty
+  public void setSpanMetrics(@Nullable SpanMetricsFactory spanMetrics) {
+    this.spanMetrics = spanMetrics;
+  }
+
+  @Nullable
+  @JsonProperty
+  public SpanBudgetFactory getSpanBudget() {
+    return spanBudget;
+  }
+
+  /**
+   * @param spanBudget limits on the tags, annotations and size of the reported spans, or null to
+   *     report them unchanged
+   */
+  @JsonProperty
+  public void setSpanBudget(@Nullable SpanBudgetFactory spanBudget) {
+    this.spanBudget = spanBudget;
+  }
+
+  @Nullable
+  @JsonProperty
+  public RecentTracesFactory getRecentTraces() {
+    return recentTraces;
+  }
+
+  /**
+   * @param recentTraces how to keep the recent traces in memory and serve them from the admin port,
+   *     or null to not keep them
+   */
+  @JsonProperty
+  public void setRecentTraces(@Nullable RecentTracesFactory recentTraces) {
+    this.recentTraces = recentTraces;
+  }
+
+  @JsonProperty
+  public ServerTracing getServerTracing() {
+    return serverTracing;
+  }
+
+  /**
+   * @param serverTracing whether to trace the requests handled by Jersey, or every request handled
+   *     by Jetty including the time spent before it is dispatched
+   */
+  @JsonProperty
+  public void setServerTracing(ServerTracing serverTracing) {
+    this.serverTracing = serverTracing;
+  }
+
+  @JsonProperty
+  public boolean isTraceAdmin() {
+    return traceAdmin;
+  }
+
+  /**
+   * @param traceAdmin whether to also trace the requests of the admin connectors, when tracing with
+   *     a servlet filter
+   */
+  @JsonProperty
+  public void setTraceAdmin(boolean traceAdmin) {
+    this.traceAdmin = traceAdmin;
+  }
+
+  @JsonProperty
+  public Duration getShutdownTimeout() {
+    return shutdownTimeout;
+  }
+
+  /**
+   * @param shutdownTimeout how long to wait for the spans recorded before shutdown to be sent,
+   *     after which the reporters still closing are abandoned
+   */
+  @JsonProperty
+  public void setShutdownTimeout(Duration shutdownTimeout) {
+    this.shutdownTimeout = shutdownTimeout;
+  }
+
   @JsonProperty
   public boolean getSupportsJoin() {
     return supportsJoin;
@@ -248,6 +444,17 @@ public abstract class AbstractZipkinFactory implements ZipkinFactory {
     this.serverSampler = sampler;
   }
 
+  /**
+   * Build a new {@link SpanHandler} sending spans to the given reporter, which also reports the
+   * unsampled spans kept by tail sampling if it is enabled.
+   *
+   * @param reporter Reporter of the spans
+   * @return SpanHandler instance
+   */
+  protected SpanHandler buildZipkinSpanHandler(final Reporter<Span> reporter) {
+    return ZipkinSpanHandler.newBuilder(reporter).alwaysReportSpans(tailSampling != null).build();
+  }
+
   /**
    * Build a new {@link HttpTracing} instance for interfacing with Zipkin
    *
@@ -257,17 +464,59 @@ public abstract class AbstractZipkinFactory implements ZipkinFactory {
    */
   protected Optional<HttpTracing> buildTracing(
       final Environment environment, final SpanHandler zipkinSpanHandler) {
+    return buildTracing(environment, zipkinSpanHandler, null);
+  }
+
+  /**
+   * Build a new {@link HttpTracing} instance for interfacing with Zipkin, which stops sampling new
+   * traces while the given load shedder is shedding
+   *
+   * @param environment Environment
+   * @param zipkinSpanHandler how to send spans to Zipkin
+   * @param loadShedder shedder of new traces, or null to always sample them
+   * @return HttpTracing instance
+   */
+  protected Optional<HttpTracing> buildTracing(
+      final Environment environment,
+      final SpanHandler zipkinSpanHandler,
+      @Nullable final LoadShedder loadShedder) {
+
+    final SpanHandler spanHandler;
+    if (tailSampling != null && zipkinSpanHandler != SpanHandler.NOOP) {
+      spanHandler = tailSampling.build(zipkinSpanHandler, environment.metrics());
+    } else {
+      spanHandler = zipkinSpanHandler;
+    }
+
+    // the sampler can be swapped and tracing paused at runtime with admin tasks
+    final SwitchableSampler switchableSampler = new SwitchableSampler(buildSampler(environment));
+    environment
+        .admin()
+        .addTask(new SamplerTask(switchableSampler, environment.metrics(), TASK_METRIC_PREFIX));
 
     final Tracing.Builder tracingBuilder =
         Tracing.newBuilder()
-            .sampler(getSampler())
+            .sampler(loadShedder == null ? switchableSampler : loadShedder.wrap(switchableSampler))
             .supportsJoin(supportsJoin)
             .traceId128Bit(traceId128Bit)
             .currentTraceContext(
                 ThreadLocalCurrentTraceContext.newBuilder()
                     .addScopeDecorator(MDCScopeDecorator.get())
-                    .build())
-            .addSpanHandler(zipkinSpanHandler);
+                    .build());
+
+    // span metrics see every span as recorded, then the budget trims it before it is exported
+    if (spanMetrics != null) {
+      tracingBuilder.addSpanHandler(spanMetrics.build(environment.metrics()));
+    }
+    if (spanBudget != null) {
+      tracingBuilder.addSpanHandler(spanBudget.build(environment.metrics()));
+    }
+    if (recentTraces != null) {
+      tracingBuilder.addSpanHandler(recentTraces.build(environment));
+    }
+    if (spanHandler != SpanHandler.NOOP) {
+      tracingBuilder.addSpanHandler(spanHandler);
+    }
 
     if (!Strings.isNullOrEmpty(serviceName)) {
       tracingBuilder.localServiceName(serviceName);
@@ -279,7 +528,16 @@ public abstract class AbstractZipkinFactory implements ZipkinFactory {
     if (!Strings.isNullOrEmpty(serviceHost)) tracingBuilder.localIp(serviceHost);
     if (servicePort != null) tracingBuilder.localPort(servicePort);
 
+    // record every trace, so tail sampling can decide once the local root finishes and span
+    // metrics or recent traces cover all requests
+    if (spanHandler != zipkinSpanHandler
+        || spanMetrics != null
+        || (recentTraces != null && recentTraces.isIncludeUnsampled())) {
+      tracingBuilder.alwaysSampleLocal();
+    }
+
     final Tracing tracing = tracingBuilder.build();
+    environment.admin().addTask(new ExportTask(tracing, environment.metrics(), TASK_METRIC_PREFIX));
 
     LOGGER.info("Registering Zipkin {}", tracing);
 
@@ -290,28 +548,88 @@ public abstract class AbstractZipkinFactory implements ZipkinFactory {
     if (serverRequestParser != null) httpTracingBuilder.serverRequestParser(serverRequestParser);
     if (serverResponseParser != null) httpTracingBuilder.serverResponseParser(serverResponseParser);
     if (serverParser != null) httpTracingBuilder.serverParser(serverParser);
-    if (clientSampler != null) httpTracingBuilder.clientSampler(clientSampler);
-    if (serverSampler != null) httpTracingBuilder.serverSampler(serverSampler);
+    if (clientSampler != null) {
+      httpTracingBuilder.clientSampler(
+          loadShedder == null ? clientSampler : loadShedder.wrapHttpSampler(clientSampler));
+    }
+    Optional<SamplerFunction<HttpRequest>> httpServerSampler = Optional.ofNullable(serverSampler);
+    if (!httpServerSampler.isPresent() && samplerFactory != null) {
+      httpServerSampler = samplerFactory.buildServerSampler();
+    }
+    // @Traced and @NotTraced resource methods take precedence over the other server samplers
+    final ResourceMethodSampler resourceMethodSampler =
+        new ResourceMethodSampler(httpServerSampler.orElse(null));
+    if (serverTracing == ServerTracing.JERSEY) {
+      httpServerSampler = Optional.of(resourceMethodSampler);
+    }
+    // the rules and annotations still apply while the sampler is swapped, as requests they do not
+    // sample are left to the sampler of the tracer
+    httpServerSampler
+        .map(sampler -> loadShedder == null ? sampler : loadShedder.wrapHttpSampler(sampler))
+        .ifPresent(httpTracingBuilder::serverSampler);
 
     final HttpTracing httpTracing = httpTracingBuilder.build();
 
     // Register the tracing feature for client and server requests
-    environment.jersey().register(TracingApplicationEventListener.create(httpTracing));
+    if (serverTracing == ServerTracing.FILTER) {
+      registerTracingFilter(environment, httpTracing);
+      environment.jersey().register(new RouteApplicationEventListener());
+      environment.jersey().register(new IgnoredAnnotationsApplicationEventListener());
+    } else {
+      environment
+          .jersey()
+          .register(
+              new AsyncTracingApplicationEventListener(
+                  new ResourceMethodSamplingApplicationEventListener(
+                      TracingApplicationEventListener.create(httpTracing),
+                      resourceMethodSampler,
+                      tracing),
+                  tracing.currentTraceContext()));
+    }
     environment
-        .lifecycle()
-        .manage(
-            new Managed() {
-              @Override
-              public void start() {
-                // nothing to start
-              }
-
-              @Override
-              public void stop() {
-                tracing.close();
-              }
-            });
+        .jersey()
+        .register(new TracingManagedAsyncExecutorProvider(tracing.currentTraceContext()));
+    getShutdownManager(environment).setTracing(tracing);
 
     return Optional.of(httpTracing);
   }
+
+  /**
+   * Get the manager shutting down tracing and the reporters of this factory within {@link
+   * #getShutdownTimeout()}, registering it with the environment on first use.
+   *
+   * @param environment Environment
+   * @return TracingShutdownManager instance
+   */
+  protected synchronized TracingShutdownManager getShutdownManager(final Environment environment) {
+    if (shutdownManager == null) {
+      shutdownManager =
+          new TracingShutdownManager(
+              shutdownTimeout.toNanoseconds(), TimeUnit.NANOSECONDS, environment.metrics());
+      environment.lifecycle().manage(shutdownManager);
+      environment.lifecycle().addLifeCycleListener(shutdownManager);
+    }
+    return shutdownManager;
+  }
+
+  /**
+   * Trace every request of the application, and of the admin connectors if {@link #isTraceAdmin()},
+   * from the time Jetty began the request.
+   *
+   * @param environment Environment
+   * @param httpTracing HTTP tracing instance
+   */
+  private void registerTracingFilter(final Environment environment, final HttpTracing httpTracing) {
+    final TracingFilter filter = new TracingFilter(httpTracing);
+    environment
+        .servlets()
+        .addFilter("zipkin-tracing", filter)
+        .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+    if (traceAdmin) {
+      environment
+          .admin()
+          .addFilter("zipkin-tracing", filter)
+          .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+    }
+  }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.smoketurner.dropwizard.zipkin.sender.AsyncSender;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import okhttp3.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.reporter.ReporterMetrics;
+import zipkin2.reporter.Sender;
+import zipkin2.reporter.okhttp3.OkHttpSender;
+
+/**
+ * Sends spans to an HTTP collector using a pooled, keep-alive OkHttp client. Messages are gzipped
+ * and sent asynchronously, with at most {@code maxRequests} in flight, so that the latency to the
+ * collector does not limit the reporter throughput. HTTP/2 is negotiated over TLS, or can be used
+ * in cleartext with {@code http2PriorKnowledge}.
+ */
+@JsonTypeName("http-async")
+public class AsyncHttpZipkinFactory extends HttpZipkinFactory {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncHttpZipkinFactory.class);
+
+  @NotNull
+  @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS)
+  private Duration writeTimeout = Duration.seconds(10);
+
+  @Min(1)
+  private int maxRequests = 64;
+
+  private boolean compressionEnabled = true;
+
+  private boolean http2PriorKnowledge = false;
+
+  @JsonProperty
+  public Duration getWriteTimeout() {
+    return writeTimeout;
+  }
+
+  @JsonProperty
+  public void setWriteTimeout(Duration writeTimeout) {
+    this.writeTimeout = writeTimeout;
+  }
+
+  @JsonProperty
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  /**
+   * @param maxRequests maximum number of messages being sent to the collector at the same time
+   */
+  @JsonProperty
+  public void setMaxRequests(int maxRequests) {
+    this.maxRequests = maxRequests;
+  }
+
+  @JsonProperty
+  public boolean isCompressionEnabled() {
+    return compressionEnabled;
+  }
+
+  /**
+   * @param compressionEnabled whether to gzip messages sent to the collector
+   */
+  @JsonProperty
+  public void setCompressionEnabled(boolean compressionEnabled) {
+    this.compressionEnabled = compressionEnabled;
+  }
+
+  @JsonProperty
+  public boolean isHttp2PriorKnowledge() {
+    return http2PriorKnowledge;
+  }
+
+  /**
+   * @param http2PriorKnowledge whether to use cleartext HTTP/2 without an HTTP/1.1 upgrade
+   */
+  @JsonProperty
+  public void setHttp2PriorKnowledge(boolean http2PriorKnowledge) {
+    this.http2PriorKnowledge = http2PriorKnowledge;
+  }
+
+  @Override
+  protected Sender buildSender(final Environment environment) {
+    final OkHttpSender.Builder builder =
+        OkHttpSender.newBuilder()
+            .endpoint(resolveEndpoint())
+            .encoding(getEncoding())
+            .compressionEnabled(compressionEnabled)
+            .maxRequests(maxRequests)
+            .connectTimeout(Math.toIntExact(getConnectTimeout().toMilliseconds()))
+            .readTimeout(Math.toIntExact(getReadTimeout().toMilliseconds()))
+            .writeTimeout(Math.toIntExact(writeTimeout.toMilliseconds()));
+    if (getMessageMaxBytes() != null) {
+      builder.messageMaxBytes(Math.toIntExact(getMessageMaxBytes().toBytes()));
+    }
+    if (http2PriorKnowledge) {
+      builder.clientBuilder().protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+    }
+
+    LOGGER.info("Sending spans asynchronously to HTTP collector at: {}", getBaseUrl());
+
+    return builder.build();
+  }
+
+  /** Send messages asynchronously, recording failed messages in the reporter metrics. */
+  @Override
+  protected Sender decorateSender(
+      final Environment environment, final Sender sender, final ReporterMetrics metrics) {
+    return new AsyncSender(
+        super.decorateSender(environment, sender, metrics),
+        maxRequests,
+        getCloseTimeout().toNanoseconds(),
+        metrics,
+        environment.metrics(),
+        getMetricPrefix());
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin;
+
+import brave.handler.SpanHandler;
+import brave.http.HttpTracing;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.smoketurner.dropwizard.zipkin.handler.FailoverSpanHandler;
+import com.smoketurner.dropwizard.zipkin.handler.FanOutSpanHandler;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+import io.dropwizard.validation.ValidationMethod;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.Span;
+import zipkin2.reporter.AsyncReporter;
+
+/**
+ * Sends spans to several reporting collectors. Each collector has its own reporter, queue and
+ * sender, so a slow collector does not back-pressure the others. In {@code fan-out} mode, every
+ * span is sent to every collector. In {@code failover} mode, spans are sent to the first collector
+ * whose check succeeds and whose drop rate does not exceed {@code maxDropRate}.
+ *
+ * <p>Only the reporting settings of the child collectors are used: sampling and service settings
+ * are taken from this factory. The health settings of each child collector ({@code maxQueueFill},
+ * {@code maxDropRate} and the collector check) apply to its own health check, while failover uses
+ * the {@code maxDropRate} of this factory. Load shedding watches the queue of a single reporter, so
+ * it cannot be set on the child collectors.
+ */
+@JsonTypeName("composite")
+public class CompositeZipkinFactory extends AbstractZipkinFactory {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CompositeZipkinFactory.class);
+
+  public enum Mode {
+    FAN_OUT,
+    FAILOVER
+  }
+
+  @NotNull private Mode mode = Mode.FAN_OUT;
+
+  @Valid @NotEmpty private List<ReportingZipkinFactory> collectors = new ArrayList<>();
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+  private Duration checkInterval = Duration.seconds(5);
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double maxDropRate = 0.1;
+
+  @NotEmpty private String metricPrefix = "tracing.composite";
+
+  @JsonProperty
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * @param mode whether to send spans to every collector (fan-out) or to the first healthy one
+   *     (failover)
+   */
+  @JsonProperty
+  public void setMode(Mode mode) {
+    this.mode = mode;
+  }
+
+  @JsonProperty
+  public List<ReportingZipkinFactory> getCollectors() {
+    return collectors;
+  }
+
+  /**
+   * @param collectors reporting collectors, in order of preference for failover, each with a
+   *     distinct metricPrefix
+   */
+  @JsonProperty
+  public void setCollectors(List<ReportingZipkinFactory> collectors) {
+    this.collectors = collectors;
+  }
+
+  @JsonProperty
+  public Duration getCheckInterval() {
+    return checkInterval;
+  }
+
+  /**
+   * @param checkInterval how often to check the health of the collectors in failover mode
+   */
+  @JsonProperty
+  public void setCheckInterval(Duration checkInterval) {
+    this.checkInterval = checkInterval;
+  }
+
+  @JsonProperty
+  public double getMaxDropRate() {
+    return maxDropRate;
+  }
+
+  /**
+   * @param maxDropRate share of spans dropped over the last minute beyond which a collector fails
+   *     over to the next one
+   */
+  @JsonProperty
+  public void setMaxDropRate(double maxDropRate) {
+    this.maxDropRate = maxDropRate;
+  }
+
+  @JsonProperty
+  public String getMetricPrefix() {
+    return metricPrefix;
+  }
+
+  @JsonProperty
+  public void setMetricPrefix(String metricPrefix) {
+    this.metricPrefix = metricPrefix;
+  }
+
+  @ValidationMethod(message = "collectors must each have a distinct metricPrefix")
+  public boolean isMetricPrefixUnique() {
+    final Set<String> prefixes = new HashSet<>();
+    return collectors == null
+        || collectors.stream().allMatch(collector -> prefixes.add(collector.getMetricPrefix()));
+  }
+
+  @ValidationMethod(message = "collectors must not set loadShedding")
+  public boolean isLoadSheddingUnset() {
+    return collectors == null
+        || collectors.stream().allMatch(collector -> collector.getLoadShedding() == null);
+  }
+
+  /**
+   * Build a new {@link HttpTracing} instance for interfacing with Zipkin
+   *
+   * @param environment Environment
+   * @return HttpTracing instance
+   */
+  @Override
+  public Optional<HttpTracing> build(final Environment environment) {
+    if (!isEnabled()) {
+      LOGGER.warn("Zipkin tracing is disabled");
+      return Optional.empty();
+    }
+
+    final List<SpanHandler> handlers = new ArrayList<>();
+    final List<FailoverSpanHandler.Target> targets = new ArrayList<>();
+    for (ReportingZipkinFactory collector : collectors) {
+      if (!collector.isEnabled()) {
+        LOGGER.warn("Collector {} is disabled", collector.getMetricPrefix());
+        continue;
+      }
+      final DropwizardReporterMetrics metrics = collector.buildReporterMetrics(environment);
+      // the reporters of all collectors are closed within the shutdown timeout of the composite
+      final AsyncReporter<Span> reporter =
+          collector.buildManagedReporter(environment, metrics, getShutdownManager(environment));
+      final SpanHandler handler = buildZipkinSpanHandler(reporter);
+      handlers.add(handler);
+      targets.add(
+          new FailoverSpanHandler.Target(collector.getMetricPrefix(), handler, reporter, metrics));
+    }
+
+    if (handlers.isEmpty()) {
+      LOGGER.warn("All collectors are disabled");
+      return buildTracing(environment, SpanHandler.NOOP);
+    }
+
+    if (mode == Mode.FAN_OUT) {
+      LOGGER.info("Sending spans to {} collectors", handlers.size());
+      return buildTracing(environment, new FanOutSpanHandler(handlers));
+    }
+
+    final FailoverSpanHandler failover =
+        new FailoverSpanHandler(targets, maxDropRate, environment.metrics(), metricPrefix);
+    final ScheduledExecutorService executor =
+        environment.lifecycle().scheduledExecutorService("zipkin-failover-%d", true).build();
+    executor.scheduleWithFixedDelay(
+        failover::checkHealth,
+        checkInterval.toMilliseconds(),
+        checkInterval.toMilliseconds(),
+        TimeUnit.MILLISECONDS);
+
+    LOGGER.info("Sending spans to the first healthy of {} collectors", targets.size());
+    return buildTracing(environment, failover);
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin;
+
+import com.codahale.metrics.Clock;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.smoketurner.dropwizard.zipkin.sender.FileSender;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDataSize;
+import io.dropwizard.validation.MinDuration;
+import io.dropwizard.validation.ValidationMethod;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+/**
+ * Writes spans to rolling local files, for a log shipping agent to send them to Zipkin.
+ *
+ * @see FileSender
+ */
+@JsonTypeName("file")
+public class FileZipkinFactory extends ReportingZipkinFactory {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileZipkinFactory.class);
+
+  /** Maximum size of a message when {@link #getMessageMaxBytes()} is not set. */
+  public static final int DEFAULT_MESSAGE_MAX_BYTES = 5 * 1024 * 1024;
+
+  @NotEmpty private String directory = "";
+
+  @NotEmpty private String filePrefix = "spans";
+
+  @NotNull
+  @MinDataSize(1)
+  private DataSize maxFileSize = DataSize.mebibytes(100);
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.SECONDS)
+  private Duration rollInterval = Duration.minutes(5);
+
+  private boolean compress = false;
+
+  @Min(1)
+  private int maxFiles = 10;
+
+  @Nullable
+  @MinDataSize(1)
+  private DataSize maxTotalSize;
+
+  @JsonProperty
+  public String getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @param directory directory of the span files, which must not be shared with another reporter
+   */
+  @JsonProperty
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  @JsonProperty
+  public String getFilePrefix() {
+    return filePrefix;
+  }
+
+  /**
+   * @param filePrefix prefix of the span file names
+   */
+  @JsonProperty
+  public void setFilePrefix(String filePrefix) {
+    this.filePrefix = filePrefix;
+  }
+
+  @JsonProperty
+  public DataSize getMaxFileSize() {
+    return maxFileSize;
+  }
+
+  /**
+   * @param maxFileSize size beyond which a span file is rolled
+   */
+  @JsonProperty
+  public void setMaxFileSize(DataSize maxFileSize) {
+    this.maxFileSize = maxFileSize;
+  }
+
+  @JsonProperty
+  public Duration getRollInterval() {
+    return rollInterval;
+  }
+
+  /**
+   * @param rollInterval age beyond which a span file is rolled
+   */
+  @JsonProperty
+  public void setRollInterval(Duration rollInterval) {
+    this.rollInterval = rollInterval;
+  }
+
+  @JsonProperty
+  public boolean isCompress() {
+    return compress;
+  }
+
+  /**
+   * @param compress whether to gzip the span files
+   */
+  @JsonProperty
+  public void setCompress(boolean compress) {
+    this.compress = compress;
+  }
+
+  @JsonProperty
+  public int getMaxFiles() {
+    return maxFiles;
+  }
+
+  /**
+   * @param maxFiles maximum number of rolled span files to keep
+   */
+  @JsonProperty
+  public void setMaxFiles(int maxFiles) {
+    this.maxFiles = maxFiles;
+  }
+
+  @Nullable
+  @JsonProperty
+  public DataSize getMaxTotalSize() {
+    return maxTotalSize;
+  }
+
+  /**
+   * @param maxTotalSize maximum size of the rolled span files to keep, or null for no limit
+   */
+  @JsonProperty
+  public void setMaxTotalSize(@Nullable DataSize maxTotalSize) {
+    this.maxTotalSize = maxTotalSize;
+  }
+
+  @ValidationMethod(message = "span files only support JSON or PROTO3 encoding")
+  public boolean isEncodingValid() {
+    return getEncoding() == Encoding.JSON || getEncoding() == Encoding.PROTO3;
+  }
+
+  @Override
+  protected Sender buildSender(final Environment environment) {
+    final int messageMaxBytes =
+        getMessageMaxBytes() == null
+            ? DEFAULT_MESSAGE_MAX_BYTES
+            : Math.toIntExact(getMessageMaxBytes().toBytes());
+    final FileSender sender;
+    try {
+      sender =
+          new FileSender(
+              Paths.get(directory),
+              filePrefix,
+              getEncoding(),
+              messageMaxBytes,
+              maxFileSize.toBytes(),
+              rollInterval.toMilliseconds(),
+              TimeUnit.MILLISECONDS,
+              compress,
+              maxFiles,
+              maxTotalSize == null ? 0L : maxTotalSize.toBytes(),
+              Clock.defaultClock(),
+              environment.metrics(),
+              getMetricPrefix());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open span directory " + directory, e);
+    }
+
+    LOGGER.info("Writing spans to files in: {}", directory);
+
+    return sender;
+  }
+}
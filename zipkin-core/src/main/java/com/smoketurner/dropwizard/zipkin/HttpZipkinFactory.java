@@ -15,18 +15,17 @@
  */
 package com.smoketurner.dropwizard.zipkin;
 
-import brave.http.HttpTracing;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import io.dropwizard.setup.Environment;
 import io.dropwizard.util.Duration;
 import io.dropwizard.validation.MinDuration;
 import java.net.URI;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import zipkin2.reporter.Sender;
 import zipkin2.reporter.urlconnection.URLConnectionSender;
 
 @JsonTypeName("http")
@@ -74,11 +73,21 @@ public class HttpZipkinFactory extends ReportingZipkinFactory {
     this.endpoint = endpoint;
   }
 
+  @JsonProperty
+  public Duration getConnectTimeout() {
+    return connectTimeout;
+  }
+
   @JsonProperty
   public void setConnectTimeout(Duration connectTimeout) {
     this.connectTimeout = connectTimeout;
   }
 
+  @JsonProperty
+  public Duration getReadTimeout() {
+    return readTimeout;
+  }
+
   @JsonProperty
   public void setReadTimeout(Duration readTimeout) {
     this.readTimeout = readTimeout;
@@ -98,28 +107,22 @@ public class HttpZipkinFactory extends ReportingZipkinFactory {
     return endpointURI.toString();
   }
 
-  /**
-   * Build a new {@link HttpTracing} instance for interfacing with Zipkin
-   *
-   * @param environment Environment
-   * @return HttpTracing instance
-   */
   @Override
-  public Optional<HttpTracing> build(final Environment environment) {
-    if (!isEnabled()) {
-      LOGGER.warn("Zipkin tracing is disabled");
-      return Optional.empty();
-    }
+  protected Sender buildSender(final Environment environment) {
     String resolvedEndpoint = resolveEndpoint();
-    final URLConnectionSender sender =
+    final URLConnectionSender.Builder builder =
         URLConnectionSender.newBuilder()
             .endpoint(resolvedEndpoint)
+            .encoding(getEncoding())
             .readTimeout(Math.toIntExact(readTimeout.toMilliseconds()))
-            .connectTimeout(Math.toIntExact(connectTimeout.toMilliseconds()))
-            .build();
+            .connectTimeout(Math.toIntExact(connectTimeout.toMilliseconds()));
+    if (getMessageMaxBytes() != null) {
+      builder.messageMaxBytes(Math.toIntExact(getMessageMaxBytes().toBytes()));
+    }
+    final URLConnectionSender sender = builder.build();
 
     LOGGER.info("Sending spans to HTTP collector at: {}", baseUrl);
 
-    return buildTracing(environment, sender);
+    return sender;
   }
 }
@@ -15,16 +15,18 @@
  */
 package com.smoketurner.dropwizard.zipkin;
 
-import brave.http.HttpTracing;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.validation.ValidationMethod;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotEmpty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import zipkin2.reporter.Sender;
 import zipkin2.reporter.kafka.KafkaSender;
 
 @JsonTypeName("kafka")
@@ -32,6 +34,11 @@ public class KafkaZipkinFactory extends ReportingZipkinFactory {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(KafkaZipkinFactory.class);
 
+  private static final String MAX_REQUEST_SIZE = "max.request.size";
+
+  /** Default {@code max.request.size} of the Kafka producer, which KafkaSender does not raise. */
+  static final int DEFAULT_MAX_REQUEST_SIZE = 1024 * 1024;
+
   @NotEmpty private String bootstrapServers = "";
 
   @NotEmpty private String topic = "zipkin";
@@ -68,28 +75,63 @@ public class KafkaZipkinFactory extends ReportingZipkinFactory {
     this.overrides = overrides;
   }
 
+  @ValidationMethod(
+      message =
+          "messageMaxBytes must not exceed the Kafka max.request.size, 1MiB unless overridden")
+  public boolean isMessageMaxBytesValid() {
+    try {
+      resolveMessageMaxBytes();
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
   /**
-   * Build a new {@link HttpTracing} instance for interfacing with Zipkin
+   * Resolve the message size limit from {@link #getMessageMaxBytes()} and the {@code
+   * max.request.size} of the producer, its override or the Kafka default of 1MiB, which must agree
+   * as the producer rejects larger messages.
    *
-   * @param environment Environment
-   * @return Brave instance
+   * @return the message size limit, or null to use the sender's default
+   * @throws IllegalArgumentException if messageMaxBytes exceeds max.request.size
    */
-  @Override
-  public Optional<HttpTracing> build(final Environment environment) {
-    if (!isEnabled()) {
-      LOGGER.warn("Zipkin tracing is disabled");
-      return Optional.empty();
+  @Nullable
+  protected Integer resolveMessageMaxBytes() {
+    final String maxRequestSize = overrides.get(MAX_REQUEST_SIZE);
+    final DataSize messageMaxBytes = getMessageMaxBytes();
+    final int maxRequestBytes =
+        maxRequestSize == null ? DEFAULT_MAX_REQUEST_SIZE : Integer.parseInt(maxRequestSize.trim());
+    if (messageMaxBytes == null) {
+      return maxRequestSize == null ? null : maxRequestBytes;
+    }
+    if (messageMaxBytes.toBytes() > maxRequestBytes) {
+      throw new IllegalArgumentException(
+          String.format(
+              "messageMaxBytes (%d) exceeds the Kafka %s of %d bytes%s",
+              messageMaxBytes.toBytes(),
+              MAX_REQUEST_SIZE,
+              maxRequestBytes,
+              maxRequestSize == null ? ", set a larger one in the overrides" : ""));
     }
+    return Math.toIntExact(messageMaxBytes.toBytes());
+  }
 
-    final KafkaSender sender =
+  @Override
+  protected Sender buildSender(final Environment environment) {
+    final KafkaSender.Builder builder =
         KafkaSender.newBuilder()
             .bootstrapServers(bootstrapServers)
             .topic(topic)
-            .overrides(overrides)
-            .build();
+            .encoding(getEncoding())
+            .overrides(overrides);
+    final Integer messageMaxBytes = resolveMessageMaxBytes();
+    if (messageMaxBytes != null) {
+      builder.messageMaxBytes(messageMaxBytes);
+    }
+    final KafkaSender sender = builder.build();
 
     LOGGER.info("Sending spans to Kafka topic \"{}\" at: {}", topic, bootstrapServers);
 
-    return buildTracing(environment, sender);
+    return sender;
   }
 }
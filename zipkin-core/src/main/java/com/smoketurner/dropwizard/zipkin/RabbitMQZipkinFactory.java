@@ -15,18 +15,17 @@
  */
 package com.smoketurner.dropwizard.zipkin;
 
-import brave.http.HttpTracing;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import io.dropwizard.setup.Environment;
 import io.dropwizard.util.Duration;
 import io.dropwizard.validation.MinDuration;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import zipkin2.reporter.Sender;
 import zipkin2.reporter.amqp.RabbitMQSender;
 
 @JsonTypeName("amqp")
@@ -108,31 +107,24 @@ public class RabbitMQZipkinFactory extends ReportingZipkinFactory {
     this.connectionTimeout = timeout;
   }
 
-  /**
-   * Build a new {@link HttpTracing} instance for interfacing with Zipkin
-   *
-   * @param environment Environment
-   * @return Brave instance
-   */
   @Override
-  public Optional<HttpTracing> build(@NotNull final Environment environment) {
-    if (!isEnabled()) {
-      LOGGER.warn("Zipkin tracing is disabled");
-      return Optional.empty();
-    }
-
-    final RabbitMQSender sender =
+  protected Sender buildSender(final Environment environment) {
+    final RabbitMQSender.Builder builder =
         RabbitMQSender.newBuilder()
             .addresses(addresses)
             .queue(queue)
+            .encoding(getEncoding())
             .connectionTimeout((int) connectionTimeout.toMilliseconds())
             .username(username)
             .password(password)
-            .virtualHost(virtualHost)
-            .build();
+            .virtualHost(virtualHost);
+    if (getMessageMaxBytes() != null) {
+      builder.messageMaxBytes(Math.toIntExact(getMessageMaxBytes().toBytes()));
+    }
+    final RabbitMQSender sender = builder.build();
 
     LOGGER.info("Sending spans to RabbitMQ queue \"{}\" at: {}", queue, addresses);
 
-    return buildTracing(environment, sender);
+    return sender;
   }
 }
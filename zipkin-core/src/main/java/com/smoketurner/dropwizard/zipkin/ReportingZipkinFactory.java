@@ -17,24 +17,97 @@ package com.smoketurner.dropwizard.zipkin;
 
 import brave.http.HttpTracing;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.dropwizard.zipkin.health.CollectorProbe;
+import com.smoketurner.dropwizard.zipkin.health.ReporterHealthCheck;
 import com.smoketurner.dropwizard.zipkin.managed.ReporterManager;
+import com.smoketurner.dropwizard.zipkin.managed.TracingShutdownManager;
 import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import com.smoketurner.dropwizard.zipkin.sampler.LoadShedder;
+import com.smoketurner.dropwizard.zipkin.sampler.LoadSheddingFactory;
+import com.smoketurner.dropwizard.zipkin.sender.SpillFactory;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.DataSizeUnit;
 import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MaxDataSize;
+import io.dropwizard.validation.MinDataSize;
 import io.dropwizard.validation.MinDuration;
+import io.dropwizard.validation.ValidationMethod;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import zipkin2.Span;
+import zipkin2.codec.Encoding;
 import zipkin2.reporter.AsyncReporter;
+import zipkin2.reporter.ReporterMetrics;
 import zipkin2.reporter.Sender;
-import zipkin2.reporter.brave.ZipkinSpanHandler;
 
 public abstract class ReportingZipkinFactory extends AbstractZipkinFactory {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReportingZipkinFactory.class);
+
   @NotNull
   @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS)
   private Duration reportTimeout = Duration.seconds(1);
 
+  @NotNull
+  @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS)
+  private Duration closeTimeout = Duration.seconds(1);
+
+  @Min(1)
+  private int queuedMaxSpans = 10000;
+
+  @Nullable
+  @MinDataSize(1)
+  @MaxDataSize(value = Integer.MAX_VALUE, unit = DataSizeUnit.BYTES)
+  private DataSize queuedMaxBytes;
+
+  @Nullable
+  @MinDataSize(1)
+  @MaxDataSize(value = Integer.MAX_VALUE, unit = DataSizeUnit.BYTES)
+  private DataSize messageMaxBytes;
+
+  @NotNull private Encoding encoding = Encoding.JSON;
+
+  @NotEmpty private String metricPrefix = DropwizardReporterMetrics.DEFAULT_PREFIX;
+
+  @Valid @Nullable private SpillFactory spill;
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double maxQueueFill = 0.9;
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double maxDropRate = 0.1;
+
+  private boolean healthCheckCritical = false;
+
+  @Valid @Nullable private LoadSheddingFactory loadShedding;
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+  private Duration checkInterval = Duration.seconds(30);
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+  private Duration checkMinBackoff = Duration.seconds(1);
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+  private Duration checkMaxBackoff = Duration.minutes(1);
+
   @JsonProperty
   public void setReportTimeout(Duration reportTimeout) {
     this.reportTimeout = reportTimeout;
@@ -45,15 +118,420 @@ public abstract class ReportingZipkinFactory extends AbstractZipkinFactory {
     return reportTimeout;
   }
 
-  protected Optional<HttpTracing> buildTracing(final Environment environment, Sender sender) {
-    final AsyncReporter<Span> reporter =
+  @JsonProperty
+  public Duration getCloseTimeout() {
+    return closeTimeout;
+  }
+
+  /**
+   * @param closeTimeout how long to block for in-flight spans to be sent on shutdown
+   */
+  @JsonProperty
+  public void setCloseTimeout(Duration closeTimeout) {
+    this.closeTimeout = closeTimeout;
+  }
+
+  @JsonProperty
+  public int getQueuedMaxSpans() {
+    return queuedMaxSpans;
+  }
+
+  /**
+   * @param queuedMaxSpans maximum number of spans waiting to be sent
+   */
+  @JsonProperty
+  public void setQueuedMaxSpans(int queuedMaxSpans) {
+    this.queuedMaxSpans = queuedMaxSpans;
+  }
+
+  @Nullable
+  @JsonProperty
+  public DataSize getQueuedMaxBytes() {
+    return queuedMaxBytes;
+  }
+
+  /**
+   * @param queuedMaxBytes maximum size of the spans waiting to be sent (defaults to 1% of heap)
+   */
+  @JsonProperty
+  public void setQueuedMaxBytes(@Nullable DataSize queuedMaxBytes) {
+    this.queuedMaxBytes = queuedMaxBytes;
+  }
+
+  @Nullable
+  @JsonProperty
+  public DataSize getMessageMaxBytes() {
+    return messageMaxBytes;
+  }
+
+  /**
+   * @param messageMaxBytes maximum size of a message sent to the collector (defaults to the limit
+   *     of the sender)
+   */
+  @JsonProperty
+  public void setMessageMaxBytes(@Nullable DataSize messageMaxBytes) {
+    this.messageMaxBytes = messageMaxBytes;
+  }
+
+  @JsonProperty
+  public Encoding getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * @param encoding encoding of the spans sent to the collector, JSON or PROTO3
+   */
+  @JsonProperty
+  public void setEncoding(Encoding encoding) {
+    this.encoding = encoding;
+  }
+
+  @JsonProperty
+  public String getMetricPrefix() {
+    return metricPrefix;
+  }
+
+  /**
+   * @param metricPrefix prefix of the reporter metrics, which must be unique per reporter when
+   *     several reporters run in the same JVM
+   */
+  @JsonProperty
+  public void setMetricPrefix(String metricPrefix) {
+    this.metricPrefix = metricPrefix;
+  }
+
+  @Nullable
+  @JsonProperty
+  public SpillFactory getSpill() {
+    return spill;
+  }
+
+  /**
+   * @param spill configuration of the disk-backed queue of the messages which could not be sent, or
+   *     null to drop them
+   */
+  @JsonProperty
+  public void setSpill(@Nullable SpillFactory spill) {
+    this.spill = spill;
+  }
+
+  @JsonProperty
+  public double getMaxQueueFill() {
+    return maxQueueFill;
+  }
+
+  /**
+   * @param maxQueueFill ratio of the reporter queue in use beyond which the reporter is unhealthy
+   */
+  @JsonProperty
+  public void setMaxQueueFill(double maxQueueFill) {
+    this.maxQueueFill = maxQueueFill;
+  }
+
+  @JsonProperty
+  public double getMaxDropRate() {
+    return maxDropRate;
+  }
+
+  /**
+   * @param maxDropRate share of the spans dropped over the last minute beyond which the reporter is
+   *     unhealthy
+   */
+  @JsonProperty
+  public void setMaxDropRate(double maxDropRate) {
+    this.maxDropRate = maxDropRate;
+  }
+
+  @JsonProperty
+  public boolean isHealthCheckCritical() {
+    return healthCheckCritical;
+  }
+
+  /**
+   * @param healthCheckCritical whether an unhealthy reporter fails its health check, or only
+   *     reports that it is degraded while staying healthy
+   */
+  @JsonProperty
+  public void setHealthCheckCritical(boolean healthCheckCritical) {
+    this.healthCheckCritical = healthCheckCritical;
+  }
+
+  @Nullable
+  @JsonProperty
+  public LoadSheddingFactory getLoadShedding() {
+    return loadShedding;
+  }
+
+  /**
+   * @param loadShedding when to stop sampling new traces because the reporter queue is saturated,
+   *     or null to always sample them
+   */
+  @JsonProperty
+  public void setLoadShedding(@Nullable LoadSheddingFactory loadShedding) {
+    this.loadShedding = loadShedding;
+  }
+
+  @JsonProperty
+  public Duration getCheckInterval() {
+    return checkInterval;
+  }
+
+  /**
+   * @param checkInterval how often to check whether the collector is still reachable
+   */
+  @JsonProperty
+  public void setCheckInterval(Duration checkInterval) {
+    this.checkInterval = checkInterval;
+  }
+
+  @JsonProperty
+  public Duration getCheckMinBackoff() {
+    return checkMinBackoff;
+  }
+
+  /**
+   * @param checkMinBackoff how long to wait before checking an unreachable collector again, doubled
+   *     on each failed check
+   */
+  @JsonProperty
+  public void setCheckMinBackoff(Duration checkMinBackoff) {
+    this.checkMinBackoff = checkMinBackoff;
+  }
+
+  @JsonProperty
+  public Duration getCheckMaxBackoff() {
+    return checkMaxBackoff;
+  }
+
+  /**
+   * @param checkMaxBackoff maximum time to wait between checks of an unreachable collector
+   */
+  @JsonProperty
+  public void setCheckMaxBackoff(Duration checkMaxBackoff) {
+    this.checkMaxBackoff = checkMaxBackoff;
+  }
+
+  @ValidationMethod(message = "checkMinBackoff must not be greater than checkMaxBackoff")
+  public boolean isCheckBackoffValid() {
+    return checkMinBackoff.compareTo(checkMaxBackoff) <= 0;
+  }
+
+  /**
+   * Ratio of the reporter queue in use as of the last flush, by number of spans or by size when
+   * {@link #getQueuedMaxBytes()} is set.
+   *
+   * @param metrics Metrics of the reporter
+   * @return the ratio of the queue in use, between 0.0 and 1.0
+   */
+  protected double getQueueFill(final DropwizardReporterMetrics metrics) {
+    double fill = metrics.getQueuedSpans() / (double) queuedMaxSpans;
+    if (queuedMaxBytes != null) {
+      fill = Math.max(fill, metrics.getQueuedBytes() / (double) queuedMaxBytes.toBytes());
+    }
+    return Math.min(fill, 1.0);
+  }
+
+  /**
+   * Build the metrics of the reporter, named after {@link #getMetricPrefix()}.
+   *
+   * @param environment Environment
+   * @return DropwizardReporterMetrics instance
+   */
+  protected DropwizardReporterMetrics buildReporterMetrics(final Environment environment) {
+    return new DropwizardReporterMetrics(environment.metrics(), metricPrefix);
+  }
+
+  /**
+   * Build a new {@link AsyncReporter} sending spans through the given sender, after checking that
+   * the sender uses the configured encoding.
+   *
+   * @param sender Sender built with {@link #getEncoding()} and {@link #getMessageMaxBytes()}
+   * @param metrics Metrics of the reporter
+   * @return AsyncReporter instance
+   */
+  protected AsyncReporter<Span> buildReporter(final Sender sender, final ReporterMetrics metrics) {
+    if (sender.encoding() != encoding) {
+      throw new IllegalArgumentException(
+          String.format("Sender encoding %s does not match %s", sender.encoding(), encoding));
+    }
+
+    final AsyncReporter.Builder builder =
         AsyncReporter.builder(sender)
-            .metrics(new DropwizardReporterMetrics(environment.metrics()))
+            .metrics(metrics)
             .messageTimeout(reportTimeout.toNanoseconds(), TimeUnit.NANOSECONDS)
-            .build();
+            .closeTimeout(closeTimeout.toNanoseconds(), TimeUnit.NANOSECONDS)
+            .queuedMaxSpans(queuedMaxSpans);
+    if (messageMaxBytes != null) {
+      builder.messageMaxBytes(Math.toIntExact(messageMaxBytes.toBytes()));
+    }
+    if (queuedMaxBytes != null) {
+      builder.queuedMaxBytes(Math.toIntExact(queuedMaxBytes.toBytes()));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Wrap the given sender so that messages it fails to send are spilled to disk, if a spill
+   * directory is configured.
+   *
+   * @param environment Environment
+   * @param sender Sender of the reporter
+   * @return the spilling sender, or the given sender if spilling is not configured
+   */
+  protected Sender buildSpillingSender(final Environment environment, final Sender sender) {
+    if (spill == null) {
+      return sender;
+    }
+    try {
+      final ScheduledExecutorService executor =
+          environment.lifecycle().scheduledExecutorService("zipkin-spill-replay-%d", true).build();
+      return spill.build(sender, executor, environment.metrics(), metricPrefix);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open spill directory " + spill.getDirectory(), e);
+    }
+  }
+
+  /**
+   * Build the sender of this collector, using {@link #getEncoding()} and {@link
+   * #getMessageMaxBytes()}.
+   *
+   * @param environment Environment
+   * @return Sender instance
+   */
+  protected abstract Sender buildSender(Environment environment);
+
+  /**
+   * Wrap the sender built by {@link #buildSender(Environment)} before it is used by the reporter.
+   *
+   * @param environment Environment
+   * @param sender Sender of this collector
+   * @param metrics Metrics of the reporter, for senders reporting their own failures
+   * @return the sender to use in the reporter
+   */
+  protected Sender decorateSender(
+      final Environment environment, final Sender sender, final ReporterMetrics metrics) {
+    return buildSpillingSender(environment, sender);
+  }
 
-    environment.lifecycle().manage(new ReporterManager(reporter, sender));
+  /**
+   * Build a new {@link AsyncReporter} for this collector, whose lifecycle is managed by the
+   * environment.
+   *
+   * @param environment Environment
+   * @param metrics Metrics of the reporter
+   * @return AsyncReporter instance
+   */
+  public AsyncReporter<Span> buildManagedReporter(
+      final Environment environment, final DropwizardReporterMetrics metrics) {
+    return buildManagedReporter(environment, metrics, getShutdownManager(environment));
+  }
+
+  /**
+   * Build a new {@link AsyncReporter} for this collector, which is started and shut down by the
+   * given manager.
+   *
+   * @param environment Environment
+   * @param metrics Metrics of the reporter
+   * @param shutdownManager Manager of the reporter lifecycle
+   * @return AsyncReporter instance
+   */
+  public AsyncReporter<Span> buildManagedReporter(
+      final Environment environment,
+      final DropwizardReporterMetrics metrics,
+      final TracingShutdownManager shutdownManager) {
+    final Sender sender = decorateSender(environment, buildSender(environment), metrics);
+    return buildManagedReporter(environment, sender, metrics, shutdownManager);
+  }
+
+  private AsyncReporter<Span> buildManagedReporter(
+      final Environment environment,
+      final Sender sender,
+      final DropwizardReporterMetrics metrics,
+      final TracingShutdownManager shutdownManager) {
+    final AsyncReporter<Span> reporter = buildReporter(sender, metrics);
+
+    final CollectorProbe probe =
+        new CollectorProbe(
+            reporter,
+            checkMinBackoff.toNanoseconds(),
+            checkMaxBackoff.toNanoseconds(),
+            checkInterval.toNanoseconds(),
+            TimeUnit.NANOSECONDS,
+            environment.metrics(),
+            metricPrefix);
+    final ScheduledExecutorService executor =
+        environment.lifecycle().scheduledExecutorService("zipkin-collector-check-%d", true).build();
+
+    shutdownManager.manage(new ReporterManager(reporter, sender, metrics, probe, executor));
+    environment
+        .healthChecks()
+        .register(
+            metricPrefix,
+            new ReporterHealthCheck(
+                probe,
+                metrics,
+                () -> getQueueFill(metrics),
+                maxQueueFill,
+                maxDropRate,
+                healthCheckCritical));
+
+    return reporter;
+  }
+
+  /**
+   * Build a new {@link HttpTracing} instance for interfacing with Zipkin
+   *
+   * @param environment Environment
+   * @return HttpTracing instance
+   */
+  @Override
+  public Optional<HttpTracing> build(final Environment environment) {
+    if (!isEnabled()) {
+      LOGGER.warn("Zipkin tracing is disabled");
+      return Optional.empty();
+    }
+
+    final DropwizardReporterMetrics metrics = buildReporterMetrics(environment);
+    final AsyncReporter<Span> reporter = buildManagedReporter(environment, metrics);
+
+    return buildTracing(
+        environment, buildZipkinSpanHandler(reporter), buildLoadShedder(environment, metrics));
+  }
+
+  /**
+   * Build the shedder of new traces watching the queue of the reporter, if load shedding is
+   * configured.
+   *
+   * @param environment Environment
+   * @param metrics Metrics of the reporter
+   * @return LoadShedder instance, or null if load shedding is not configured
+   */
+  @Nullable
+  protected LoadShedder buildLoadShedder(
+      final Environment environment, final DropwizardReporterMetrics metrics) {
+    if (loadShedding == null) {
+      return null;
+    }
+    return loadShedding.build(environment, () -> getQueueFill(metrics), metricPrefix);
+  }
+
+  /**
+   * Build a new {@link HttpTracing} instance reporting spans through the given sender
+   *
+   * @param environment Environment
+   * @param sender Sender built with {@link #getEncoding()} and {@link #getMessageMaxBytes()}
+   * @return HttpTracing instance
+   */
+  protected Optional<HttpTracing> buildTracing(final Environment environment, Sender sender) {
+    final DropwizardReporterMetrics metrics = buildReporterMetrics(environment);
+    final AsyncReporter<Span> reporter =
+        buildManagedReporter(
+            environment,
+            decorateSender(environment, sender, metrics),
+            metrics,
+            getShutdownManager(environment));
 
-    return buildTracing(environment, ZipkinSpanHandler.create(reporter));
+    return buildTracing(
+        environment, buildZipkinSpanHandler(reporter), buildLoadShedder(environment, metrics));
   }
 }
@@ -15,20 +15,33 @@
  */
 package com.smoketurner.dropwizard.zipkin;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 import brave.http.HttpTracing;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Strings;
+import com.smoketurner.dropwizard.zipkin.async.TracingExecutorService;
+import com.smoketurner.dropwizard.zipkin.async.TracingScheduledExecutorService;
 import io.dropwizard.Configuration;
 import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.lifecycle.setup.ExecutorServiceBuilder;
+import io.dropwizard.lifecycle.setup.ScheduledExecutorServiceBuilder;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.Nullable;
 
 public abstract class ZipkinBundle<C extends Configuration>
     implements ConfiguredBundle<C>, ZipkinConfiguration<C> {
 
+  public static final String EXECUTOR_METRIC_PREFIX = "tracing.executor";
+
   private final String serviceName;
   private HttpTracing tracing;
+  @Nullable private MetricRegistry metrics;
 
   /**
    * Constructor
@@ -51,9 +64,66 @@ public abstract class ZipkinBundle<C extends Configuration>
       braveConfig.setServiceName(serviceName);
     }
     tracing = braveConfig.build(environment).orElse(null);
+    metrics = environment.metrics();
   }
 
   public Optional<HttpTracing> getHttpTracing() {
     return Optional.ofNullable(tracing);
   }
+
+  /**
+   * Build a managed executor whose tasks run in the trace context of the thread submitting them.
+   * The time tasks wait in its queue is recorded in the {@code tracing.executor.<name>.queue-wait}
+   * timer and, in the child span each task runs in, between the start of the span and its {@code
+   * task.start} annotation.
+   *
+   * <p>For example: {@code
+   * bundle.executorService(environment.lifecycle().executorService("fan-out-%d"), "fan-out")}
+   *
+   * @param builder Builder of the managed executor, from {@code environment.lifecycle()}
+   * @param name Name of the executor in the metrics and task spans
+   * @return ExecutorService instance, which is not traced if tracing is disabled
+   */
+  public ExecutorService executorService(final ExecutorServiceBuilder builder, final String name) {
+    final MetricRegistry registry = getMetrics();
+    final ExecutorService executor = builder.build();
+    if (tracing == null) {
+      return executor;
+    }
+    return new TracingExecutorService(
+        executor,
+        tracing.tracing(),
+        registry.timer(name(EXECUTOR_METRIC_PREFIX, name, "queue-wait")),
+        name);
+  }
+
+  /**
+   * Build a managed scheduled executor whose tasks run in the trace context of the thread
+   * scheduling them. How late delayed tasks and each run of periodic tasks start is recorded in the
+   * {@code tracing.executor.<name>.queue-wait} timer.
+   *
+   * @param builder Builder of the managed executor, from {@code environment.lifecycle()}
+   * @param name Name of the executor in the metrics and task spans
+   * @return ScheduledExecutorService instance, which is not traced if tracing is disabled
+   */
+  public ScheduledExecutorService scheduledExecutorService(
+      final ScheduledExecutorServiceBuilder builder, final String name) {
+    final MetricRegistry registry = getMetrics();
+    final ScheduledExecutorService executor = builder.build();
+    if (tracing == null) {
+      return executor;
+    }
+    return new TracingScheduledExecutorService(
+        executor,
+        tracing.tracing(),
+        registry.timer(name(EXECUTOR_METRIC_PREFIX, name, "queue-wait")),
+        name);
+  }
+
+  private MetricRegistry getMetrics() {
+    if (metrics == null) {
+      throw new IllegalStateException("Executors can only be built once the bundle has run");
+    }
+    return metrics;
+  }
 }
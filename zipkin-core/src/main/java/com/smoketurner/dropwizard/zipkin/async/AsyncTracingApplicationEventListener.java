@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.async;
+
+import brave.propagation.CurrentTraceContext;
+import brave.propagation.CurrentTraceContext.Scope;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import javax.annotation.Nullable;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Wraps the Brave {@link ApplicationEventListener} so that the trace context scopes of a request
+ * are closed on the thread which opened them, whichever thread completes the request.
+ *
+ * <p>Brave only treats {@code @Suspended} and {@code @ManagedAsync} resource methods as
+ * asynchronous, so for other methods the server span stays in scope until the response is written,
+ * which for a {@code CompletionStage} happens on the thread completing it. Brave then closes the
+ * scope of the request thread on the completing thread, which overwrites the context of that
+ * thread. This listener opens a scope on the request thread before Brave does and closes it there
+ * once the request thread is done with the request, and it runs the events delivered on another
+ * thread within a scope of that thread's own context, so that each thread gets back the context it
+ * had before.
+ */
+public class AsyncTracingApplicationEventListener implements ApplicationEventListener {
+
+  private final ApplicationEventListener delegate;
+  private final CurrentTraceContext currentTraceContext;
+
+  /**
+   * Constructor
+   *
+   * @param delegate Brave TracingApplicationEventListener
+   * @param currentTraceContext trace context of the application
+   */
+  public AsyncTracingApplicationEventListener(
+      final ApplicationEventListener delegate, final CurrentTraceContext currentTraceContext) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.currentTraceContext = Objects.requireNonNull(currentTraceContext);
+  }
+
+  @Override
+  public void onEvent(ApplicationEvent event) {
+    delegate.onEvent(event);
+  }
+
+  @Override
+  @Nullable
+  public RequestEventListener onRequest(RequestEvent event) {
+    // restores the context of the request thread, whatever Brave leaves in scope on it
+    final Scope requestScope = currentTraceContext.newScope(currentTraceContext.get());
+    final RequestEventListener listener;
+    try {
+      listener = delegate.onRequest(event);
+    } catch (RuntimeException | Error e) {
+      requestScope.close();
+      throw e;
+    }
+    if (listener == null) {
+      requestScope.close();
+      return null;
+    }
+    return new ScopeClosingRequestEventListener(listener, requestScope);
+  }
+
+  static boolean returnsCompletionStage(@Nullable ResourceMethod method) {
+    return method != null
+        && !method.isSuspendDeclared()
+        && !method.isManagedAsyncDeclared()
+        && CompletionStage.class.isAssignableFrom(method.getInvocable().getRawResponseType());
+  }
+
+  static boolean isAsyncDeclared(@Nullable ResourceMethod method) {
+    return method != null && (method.isSuspendDeclared() || method.isManagedAsyncDeclared());
+  }
+
+  /**
+   * @return whether the request thread is done with the request once the given event is handled
+   */
+  static boolean isRequestThreadDone(RequestEvent event) {
+    switch (event.getType()) {
+      case REQUEST_MATCHED:
+        return isAsyncDeclared(event.getUriInfo().getMatchedResourceMethod());
+      case RESOURCE_METHOD_FINISHED:
+        return returnsCompletionStage(event.getUriInfo().getMatchedResourceMethod());
+      case FINISHED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  final class ScopeClosingRequestEventListener implements RequestEventListener {
+    private final RequestEventListener delegate;
+    private final Thread requestThread = Thread.currentThread();
+    @Nullable private Scope requestScope;
+
+    ScopeClosingRequestEventListener(RequestEventListener delegate, Scope requestScope) {
+      this.delegate = delegate;
+      this.requestScope = requestScope;
+    }
+
+    @Override
+    public void onEvent(RequestEvent event) {
+      if (Thread.currentThread() == requestThread) {
+        try {
+          delegate.onEvent(event);
+        } finally {
+          if (requestScope != null && isRequestThreadDone(event)) {
+            requestScope.close();
+            requestScope = null;
+          }
+        }
+      } else if (event.getType() == RequestEvent.Type.FINISHED) {
+        // CurrentTraceContext.wrap() would not restore a context equal to the current one, so an
+        // explicit scope restores the context of this thread after Brave closes the request scope
+        try (Scope ignored = currentTraceContext.newScope(currentTraceContext.get())) {
+          delegate.onEvent(event);
+        }
+      } else {
+        // resource methods run by @ManagedAsync keep the server span in scope between events
+        delegate.onEvent(event);
+      }
+    }
+  }
+}
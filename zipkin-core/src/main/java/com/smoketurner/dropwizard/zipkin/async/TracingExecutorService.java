@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.async;
+
+import brave.Tracing;
+import brave.propagation.CurrentTraceContext;
+import brave.propagation.CurrentTraceContext.Scope;
+import brave.propagation.TraceContext;
+import com.codahale.metrics.Timer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link ExecutorService} whose tasks run in the trace context of the thread which submitted
+ * them. The time each task waits in the queue is recorded in the {@code queueWait} timer and, when
+ * the submitting span is recorded, each task runs in a child span named after the executor. The
+ * child span starts when the task was submitted, and its {@code task.start} annotation marks when
+ * the task left the queue and started to run. The submitting span is never modified once the task
+ * was submitted, as it has usually finished by the time the task runs.
+ */
+public class TracingExecutorService implements ExecutorService {
+
+  /** Annotation of the task spans marking the end of the wait in the queue. */
+  static final String START_ANNOTATION = "task.start";
+
+  private final ExecutorService delegate;
+  private final Tracing tracing;
+  private final CurrentTraceContext currentTraceContext;
+  private final Timer queueWait;
+  private final String name;
+
+  /**
+   * Constructor
+   *
+   * @param delegate ExecutorService running the tasks
+   * @param tracing Tracing of the application
+   * @param queueWait Timer of the time tasks wait in the queue
+   * @param name Name of the executor, used as the name of the task spans
+   */
+  public TracingExecutorService(
+      final ExecutorService delegate,
+      final Tracing tracing,
+      final Timer queueWait,
+      final String name) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.tracing = Objects.requireNonNull(tracing);
+    this.currentTraceContext = tracing.currentTraceContext();
+    this.queueWait = Objects.requireNonNull(queueWait);
+    this.name = Objects.requireNonNull(name);
+  }
+
+  /**
+   * @return the trace context of the tasks
+   */
+  protected CurrentTraceContext getCurrentTraceContext() {
+    return currentTraceContext;
+  }
+
+  /**
+   * @return the timer of the time tasks wait in the queue
+   */
+  protected Timer getQueueWait() {
+    return queueWait;
+  }
+
+  Runnable wrap(final Runnable task) {
+    return wrap(task, System.nanoTime());
+  }
+
+  /**
+   * @param task task to run in the current trace context
+   * @param due {@link System#nanoTime()} from which the task is waiting to run
+   * @return the wrapped task
+   */
+  Runnable wrap(final Runnable task, final long due) {
+    final TraceContext context = currentTraceContext.get();
+    return () -> {
+      final brave.Span span = startSpan(context, due);
+      try (Scope scope = currentTraceContext.maybeScope(span == null ? context : span.context())) {
+        task.run();
+      } catch (RuntimeException | Error e) {
+        if (span != null) {
+          span.error(e);
+        }
+        throw e;
+      } finally {
+        if (span != null) {
+          span.finish();
+        }
+      }
+    };
+  }
+
+  <T> Callable<T> wrap(final Callable<T> task) {
+    return wrap(task, System.nanoTime());
+  }
+
+  /**
+   * @param task task to run in the current trace context
+   * @param due {@link System#nanoTime()} from which the task is waiting to run
+   * @return the wrapped task
+   */
+  <T> Callable<T> wrap(final Callable<T> task, final long due) {
+    final TraceContext context = currentTraceContext.get();
+    return () -> {
+      final brave.Span span = startSpan(context, due);
+      try (Scope scope = currentTraceContext.maybeScope(span == null ? context : span.context())) {
+        return task.call();
+      } catch (Exception | Error e) {
+        if (span != null) {
+          span.error(e);
+        }
+        throw e;
+      } finally {
+        if (span != null) {
+          span.finish();
+        }
+      }
+    };
+  }
+
+  private <T> List<Callable<T>> wrap(final Collection<? extends Callable<T>> tasks) {
+    final List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+    for (Callable<T> task : tasks) {
+      wrapped.add(wrap(task));
+    }
+    return wrapped;
+  }
+
+  /**
+   * Record the time a task waited to run and, if its trace is recorded, start its span back when
+   * the task was due and annotate that it starts running now. The span is only created once the
+   * task runs, so that tasks which never run do not leave unfinished spans behind.
+   *
+   * @return the span of the task, or null if its trace is not recorded
+   */
+  @Nullable
+  private brave.Span startSpan(@Nullable TraceContext context, long due) {
+    final long waitNanos = Math.max(0L, System.nanoTime() - due);
+    queueWait.update(waitNanos, TimeUnit.NANOSECONDS);
+    if (!isRecorded(context)) {
+      return null;
+    }
+    final brave.Span span = tracing.tracer().newChild(context).name(name);
+    final long now = tracing.clock(span.context()).currentTimeMicroseconds();
+    span.start(now - TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    span.annotate(now, START_ANNOTATION);
+    return span;
+  }
+
+  private static boolean isRecorded(@Nullable TraceContext context) {
+    return context != null && (Boolean.TRUE.equals(context.sampled()) || context.sampledLocal());
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    delegate.execute(wrap(command));
+  }
+
+  @Override
+  public Future<?> submit(Runnable task) {
+    return delegate.submit(wrap(task));
+  }
+
+  @Override
+  public <T> Future<T> submit(Runnable task, T result) {
+    return delegate.submit(wrap(task), result);
+  }
+
+  @Override
+  public <T> Future<T> submit(Callable<T> task) {
+    return delegate.submit(wrap(task));
+  }
+
+  @Override
+  public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+      throws InterruptedException {
+    return delegate.invokeAll(wrap(tasks));
+  }
+
+  @Override
+  public <T> List<Future<T>> invokeAll(
+      Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    return delegate.invokeAll(wrap(tasks), timeout, unit);
+  }
+
+  @Override
+  public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+      throws InterruptedException, ExecutionException {
+    return delegate.invokeAny(wrap(tasks));
+  }
+
+  @Override
+  public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    return delegate.invokeAny(wrap(tasks), timeout, unit);
+  }
+
+  @Override
+  public void shutdown() {
+    delegate.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return delegate.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return delegate.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return delegate.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return delegate.awaitTermination(timeout, unit);
+  }
+
+  @Override
+  public String toString() {
+    return "TracingExecutorService{" + delegate + "}";
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.async;
+
+import brave.propagation.CurrentTraceContext;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import org.glassfish.jersey.server.ManagedAsyncExecutor;
+import org.glassfish.jersey.spi.ThreadPoolExecutorProvider;
+
+/**
+ * Replaces the Jersey executor of {@code @ManagedAsync} resource methods with one whose tasks run
+ * in the trace context of the thread which submitted them, so that child spans and the MDC follow
+ * the request onto the executor threads.
+ *
+ * <p>The same executor can be injected into resources with {@code @Inject @ManagedAsyncExecutor
+ * ExecutorService} to resume an {@code AsyncResponse} or to complete a returned {@code
+ * CompletionStage} without losing the trace context.
+ */
+@ManagedAsyncExecutor
+public class TracingManagedAsyncExecutorProvider extends ThreadPoolExecutorProvider {
+
+  private final CurrentTraceContext currentTraceContext;
+  private volatile ExecutorService executorService;
+
+  /**
+   * Constructor
+   *
+   * @param currentTraceContext trace context of the application
+   */
+  public TracingManagedAsyncExecutorProvider(final CurrentTraceContext currentTraceContext) {
+    super("zipkin-managed-async-executor");
+    this.currentTraceContext = Objects.requireNonNull(currentTraceContext);
+  }
+
+  @Override
+  public ExecutorService getExecutorService() {
+    ExecutorService result = executorService;
+    if (result == null) {
+      synchronized (this) {
+        result = executorService;
+        if (result == null) {
+          result = currentTraceContext.executorService(super.getExecutorService());
+          executorService = result;
+        }
+      }
+    }
+    return result;
+  }
+}
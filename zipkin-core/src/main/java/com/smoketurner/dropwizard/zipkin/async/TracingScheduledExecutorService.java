@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.async;
+
+import brave.Tracing;
+import com.codahale.metrics.Timer;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ScheduledExecutorService} whose tasks run in the trace context of the thread which
+ * submitted them. The {@code queueWait} timer records how late each task started after its delay
+ * and, for periodic tasks, how late each run started after the time it was due. Delayed tasks run
+ * in a child span like the tasks of a {@link TracingExecutorService}, while periodic tasks only
+ * inherit the trace context, so that they do not add spans to the trace which scheduled them for as
+ * long as they run.
+ *
+ * @see TracingExecutorService
+ */
+public class TracingScheduledExecutorService extends TracingExecutorService
+    implements ScheduledExecutorService {
+
+  private final ScheduledExecutorService delegate;
+
+  /**
+   * Constructor
+   *
+   * @param delegate ScheduledExecutorService running the tasks
+   * @param tracing Tracing of the application
+   * @param queueWait Timer of the time tasks wait in the queue
+   * @param name Name of the executor, used as the name of the task spans
+   */
+  public TracingScheduledExecutorService(
+      final ScheduledExecutorService delegate,
+      final Tracing tracing,
+      final Timer queueWait,
+      final String name) {
+    super(delegate, tracing, queueWait, name);
+    this.delegate = Objects.requireNonNull(delegate);
+  }
+
+  private Runnable wrapPeriodic(
+      final Runnable task,
+      final long initialDelay,
+      final long period,
+      final TimeUnit unit,
+      final boolean fixedRate) {
+    final Runnable wrapped = getCurrentTraceContext().wrap(task);
+    final Timer queueWait = getQueueWait();
+    final long periodNanos = unit.toNanos(period);
+    return new Runnable() {
+      /** When the next run is due, only accessed by the run in progress. */
+      private long due = System.nanoTime() + unit.toNanos(initialDelay);
+
+      @Override
+      public void run() {
+        final long started = System.nanoTime();
+        queueWait.update(Math.max(0L, started - due), TimeUnit.NANOSECONDS);
+        try {
+          wrapped.run();
+        } finally {
+          due = fixedRate ? due + periodNanos : System.nanoTime() + periodNanos;
+        }
+      }
+    };
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return delegate.schedule(wrap(command, System.nanoTime() + unit.toNanos(delay)), delay, unit);
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    return delegate.schedule(wrap(callable, System.nanoTime() + unit.toNanos(delay)), delay, unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(
+      Runnable command, long initialDelay, long period, TimeUnit unit) {
+    return delegate.scheduleAtFixedRate(
+        wrapPeriodic(command, initialDelay, period, unit, true), initialDelay, period, unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(
+      Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    return delegate.scheduleWithFixedDelay(
+        wrapPeriodic(command, initialDelay, delay, unit, false), initialDelay, delay, unit);
+  }
+
+  @Override
+  public String toString() {
+    return "TracingScheduledExecutorService{" + delegate + "}";
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.CheckResult;
+import zipkin2.Component;
+
+/**
+ * A {@link SpanHandler} passing spans to the first of its targets which is healthy. A target is
+ * healthy when its reporter check succeeds and the share of spans it dropped over the last minute
+ * does not exceed {@code maxDropRate}. Health is evaluated by {@link #checkHealth()}, which is
+ * expected to be called periodically, so the request path only reads the active target.
+ */
+public class FailoverSpanHandler extends SpanHandler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FailoverSpanHandler.class);
+
+  private final List<Target> targets;
+  private final double maxDropRate;
+  private final boolean handlesAbandoned;
+  private final Meter switches;
+
+  private volatile Target active;
+
+  /**
+   * Constructor
+   *
+   * @param targets targets in order of preference
+   * @param maxDropRate share of spans dropped by a target over the last minute beyond which it is
+   *     unhealthy
+   * @param registry Metric Registry
+   * @param prefix Prefix for the metric names
+   */
+  public FailoverSpanHandler(
+      final List<Target> targets,
+      final double maxDropRate,
+      final MetricRegistry registry,
+      final String prefix) {
+    if (targets.isEmpty()) {
+      throw new IllegalArgumentException("targets is empty");
+    }
+    this.targets = new ArrayList<>(targets);
+    this.maxDropRate = maxDropRate;
+    this.handlesAbandoned = targets.stream().anyMatch(target -> target.handler.handlesAbandoned());
+    this.active = this.targets.get(0);
+    this.switches = registry.meter(name(prefix, "failover", "switches"));
+    registry.gauge(name(prefix, "failover", "active"), () -> (Gauge<Integer>) this::getActiveIndex);
+  }
+
+  /**
+   * @return the index of the target spans are currently passed to
+   */
+  public int getActiveIndex() {
+    return targets.indexOf(active);
+  }
+
+  /** Switch to the first healthy target, staying on the active one if none is healthy. */
+  public void checkHealth() {
+    for (Target target : targets) {
+      if (isHealthy(target)) {
+        final Target previous = active;
+        if (previous != target) {
+          active = target;
+          switches.mark();
+          LOGGER.warn("Failing over spans from {} to {}", previous.name, target.name);
+        }
+        return;
+      }
+    }
+    LOGGER.error("No healthy span reporter, still reporting to {}", active.name);
+  }
+
+  private boolean isHealthy(Target target) {
+    final CheckResult result;
+    try {
+      result = target.component.check();
+    } catch (RuntimeException e) {
+      return false;
+    }
+    if (!result.ok()) {
+      return false;
+    }
+    return target.metrics.getDropRate() <= maxDropRate;
+  }
+
+  @Override
+  public boolean begin(TraceContext context, MutableSpan span, TraceContext parent) {
+    return active.handler.begin(context, span, parent);
+  }
+
+  @Override
+  public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    return active.handler.end(context, span, cause);
+  }
+
+  @Override
+  public boolean handlesAbandoned() {
+    return handlesAbandoned;
+  }
+
+  @Override
+  public String toString() {
+    return "FailoverSpanHandler" + targets;
+  }
+
+  /** A span handler along with the reporter it sends to and the metrics of that reporter. */
+  public static final class Target {
+    final String name;
+    final SpanHandler handler;
+    final Component component;
+    final DropwizardReporterMetrics metrics;
+
+    /**
+     * Constructor
+     *
+     * @param name Name of the target, for logging
+     * @param handler SpanHandler of the target
+     * @param component Reporter or sender to check the health of
+     * @param metrics Metrics of the reporter
+     */
+    public Target(
+        final String name,
+        final SpanHandler handler,
+        final Component component,
+        final DropwizardReporterMetrics metrics) {
+      this.name = Objects.requireNonNull(name);
+      this.handler = Objects.requireNonNull(handler);
+      this.component = Objects.requireNonNull(component);
+      this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
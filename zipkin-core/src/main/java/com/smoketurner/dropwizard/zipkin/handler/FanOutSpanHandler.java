@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link SpanHandler} passing every span to each of its handlers. Each handler is expected to
+ * hand spans to its own reporter queue without blocking, so that a slow handler does not delay the
+ * others.
+ */
+public class FanOutSpanHandler extends SpanHandler {
+
+  private final SpanHandler[] handlers;
+  private final boolean handlesAbandoned;
+
+  /**
+   * Constructor
+   *
+   * @param handlers SpanHandlers to pass spans to
+   */
+  public FanOutSpanHandler(final List<SpanHandler> handlers) {
+    if (handlers.isEmpty()) {
+      throw new IllegalArgumentException("handlers is empty");
+    }
+    this.handlers = handlers.toArray(new SpanHandler[0]);
+    this.handlesAbandoned = handlers.stream().anyMatch(SpanHandler::handlesAbandoned);
+  }
+
+  @Override
+  public boolean begin(TraceContext context, MutableSpan span, TraceContext parent) {
+    for (SpanHandler handler : handlers) {
+      handler.begin(context, span, parent);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    for (SpanHandler handler : handlers) {
+      handler.end(context, span, cause);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean handlesAbandoned() {
+    return handlesAbandoned;
+  }
+
+  @Override
+  public String toString() {
+    return "FanOutSpanHandler" + Arrays.toString(handlers);
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.Span;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link SpanHandler} recording the duration and errors of every server and client span in
+ * Dropwizard metrics, whether or not the trace is sampled. Metrics are keyed by span kind, span
+ * name, {@code http.route} tag and remote service name, and named {@code
+ * <prefix>.<kind>.<name>[.<route>][.<remoteService>].requests} (a timer) and {@code ...errors} (a
+ * meter).
+ *
+ * <p>Each part of the name is sanitized: runs of characters other than letters, digits, {@code _}
+ * and {@code -} are replaced by a single {@code _}, and leading or trailing ones are dropped, so
+ * that {@code /users/{id}} is recorded as {@code users_id}. Spans whose parts sanitize to the same
+ * name share their metrics and count as a single key.
+ *
+ * <p>The number of keys is bounded by {@code maxKeys}: once reached, spans with a new key are
+ * recorded under {@code <prefix>.<kind>.other}, so that high-cardinality span names cannot grow the
+ * registry without bound.
+ *
+ * <p>Tracing must record every trace locally, with {@code Tracing.Builder.alwaysSampleLocal()}.
+ */
+public class MetricsSpanHandler extends SpanHandler {
+
+  private static final String OTHER = "other";
+  private static final String NONE = "";
+
+  private final MetricRegistry registry;
+  private final String prefix;
+  private final int maxKeys;
+  // metrics by sanitized name, which are the keys counted against maxKeys
+  private final ConcurrentMap<String, SpanMetrics> metrics = new ConcurrentHashMap<>();
+  // metrics by raw span name, route and remote service name, looked up without allocating
+  private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, SpanMetrics>>>
+      server = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, SpanMetrics>>>
+      client = new ConcurrentHashMap<>();
+  private final AtomicInteger keys = new AtomicInteger();
+  private final AtomicInteger cached = new AtomicInteger();
+  private final SpanMetrics serverOther;
+  private final SpanMetrics clientOther;
+
+  /**
+   * Constructor
+   *
+   * @param registry Metric Registry
+   * @param prefix Prefix for the metric names
+   * @param maxKeys maximum number of distinct keys
+   */
+  public MetricsSpanHandler(final MetricRegistry registry, final String prefix, final int maxKeys) {
+    if (maxKeys < 1) {
+      throw new IllegalArgumentException("maxKeys < 1: " + maxKeys);
+    }
+    this.registry = Objects.requireNonNull(registry);
+    this.prefix = Objects.requireNonNull(prefix);
+    this.maxKeys = maxKeys;
+    this.serverOther = newMetrics(name(prefix, "server", OTHER));
+    this.clientOther = newMetrics(name(prefix, "client", OTHER));
+  }
+
+  /**
+   * @return the number of distinct keys being recorded
+   */
+  public int getKeys() {
+    return keys.get();
+  }
+
+  @Override
+  public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    final Span.Kind kind = span.kind();
+    if (cause == Cause.ABANDONED || (kind != Span.Kind.SERVER && kind != Span.Kind.CLIENT)) {
+      return true;
+    }
+    final long start = span.startTimestamp();
+    final long finish = span.finishTimestamp();
+    if (start == 0L || finish == 0L) {
+      return true;
+    }
+
+    final SpanMetrics spanMetrics =
+        metrics(
+            kind,
+            nonNull(span.name()),
+            nonNull(span.tag("http.route")),
+            nonNull(span.remoteServiceName()));
+    spanMetrics.requests.update(finish - start, TimeUnit.MICROSECONDS);
+    if (span.error() != null || span.tag("error") != null) {
+      spanMetrics.errors.mark();
+    }
+    return true;
+  }
+
+  private SpanMetrics metrics(Span.Kind kind, String name, String route, String remoteService) {
+    final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, SpanMetrics>>> byName =
+        kind == Span.Kind.SERVER ? server : client;
+    final ConcurrentMap<String, ConcurrentMap<String, SpanMetrics>> byRoute = byName.get(name);
+    if (byRoute != null) {
+      final ConcurrentMap<String, SpanMetrics> byRemoteService = byRoute.get(route);
+      if (byRemoteService != null) {
+        final SpanMetrics existing = byRemoteService.get(remoteService);
+        if (existing != null) {
+          return existing;
+        }
+      }
+    }
+
+    final SpanMetrics found = metrics(metricName(kind, name, route, remoteService));
+    if (found == null) {
+      return kind == Span.Kind.SERVER ? serverOther : clientOther;
+    }
+    // several raw keys may share a sanitized name, so bound them as well
+    if (cached.incrementAndGet() > 2 * maxKeys) {
+      cached.decrementAndGet();
+      return found;
+    }
+    final SpanMetrics previous =
+        byName
+            .computeIfAbsent(name, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(route, k -> new ConcurrentHashMap<>())
+            .putIfAbsent(remoteService, found);
+    if (previous != null) {
+      cached.decrementAndGet();
+    }
+    return found;
+  }
+
+  @Nullable
+  private SpanMetrics metrics(String metricName) {
+    final SpanMetrics existing = metrics.get(metricName);
+    if (existing != null || keys.get() >= maxKeys) {
+      return existing;
+    }
+    return metrics.computeIfAbsent(
+        metricName,
+        k -> {
+          if (keys.incrementAndGet() > maxKeys) {
+            keys.decrementAndGet();
+            return null;
+          }
+          return newMetrics(k);
+        });
+  }
+
+  private String metricName(Span.Kind kind, String name, String route, String remoteService) {
+    final String sanitized = sanitize(name);
+    return name(
+        prefix,
+        kind.name().toLowerCase(Locale.ROOT),
+        sanitized.isEmpty() ? "unknown" : sanitized,
+        sanitize(route),
+        sanitize(remoteService));
+  }
+
+  private SpanMetrics newMetrics(String name) {
+    return new SpanMetrics(
+        registry.timer(name(name, "requests")), registry.meter(name(name, "errors")));
+  }
+
+  /**
+   * Replaces each run of characters other than letters, digits, {@code _} and {@code -} by a single
+   * {@code _}, dropping leading and trailing ones.
+   *
+   * @param value Value to sanitize
+   * @return the sanitized value, which may be empty
+   */
+  static String sanitize(String value) {
+    final StringBuilder builder = new StringBuilder(value.length());
+    boolean separator = false;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if ((c >= 'a' && c <= 'z')
+          || (c >= 'A' && c <= 'Z')
+          || (c >= '0' && c <= '9')
+          || c == '_'
+          || c == '-') {
+        if (separator && builder.length() > 0) {
+          builder.append('_');
+        }
+        separator = false;
+        builder.append(c);
+      } else {
+        separator = true;
+      }
+    }
+    return builder.toString();
+  }
+
+  private static String nonNull(@Nullable String value) {
+    return value == null ? NONE : value;
+  }
+
+  @Override
+  public String toString() {
+    return "MetricsSpanHandler{" + prefix + "}";
+  }
+
+  private static final class SpanMetrics {
+    final Timer requests;
+    final Meter errors;
+
+    SpanMetrics(Timer requests, Meter errors) {
+      this.requests = requests;
+      this.errors = errors;
+    }
+  }
+}
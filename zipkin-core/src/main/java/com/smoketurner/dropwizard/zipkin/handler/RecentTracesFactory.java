@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.dropwizard.zipkin.servlets.RecentTracesServlet;
+import io.dropwizard.setup.Environment;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+
+/**
+ * Configuration of the in-memory buffer of the recent spans, served from the admin port.
+ *
+ * @see RecentTracesSpanHandler
+ * @see RecentTracesServlet
+ */
+public class RecentTracesFactory {
+
+  @Min(1)
+  private int maxSpans = 10000;
+
+  private boolean includeUnsampled = false;
+
+  @NotEmpty private String path = "/api/v2/*";
+
+  @JsonProperty
+  public int getMaxSpans() {
+    return maxSpans;
+  }
+
+  /**
+   * @param maxSpans number of spans kept in memory, beyond which the oldest are overwritten
+   */
+  @JsonProperty
+  public void setMaxSpans(int maxSpans) {
+    this.maxSpans = maxSpans;
+  }
+
+  @JsonProperty
+  public boolean isIncludeUnsampled() {
+    return includeUnsampled;
+  }
+
+  /**
+   * @param includeUnsampled whether to keep the spans of every request, including the traces which
+   *     are not sampled
+   */
+  @JsonProperty
+  public void setIncludeUnsampled(boolean includeUnsampled) {
+    this.includeUnsampled = includeUnsampled;
+  }
+
+  @JsonProperty
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @param path mapping of the servlet on the admin port
+   */
+  @JsonProperty
+  public void setPath(String path) {
+    this.path = path;
+  }
+
+  /**
+   * Build a new {@link RecentTracesSpanHandler} and serve its traces from the admin port.
+   *
+   * @param environment Environment
+   * @return RecentTracesSpanHandler instance
+   */
+  public RecentTracesSpanHandler build(final Environment environment) {
+    final RecentTracesSpanHandler handler = new RecentTracesSpanHandler(maxSpans, includeUnsampled);
+    environment
+        .admin()
+        .addServlet(
+            "zipkin-recent-traces", new RecentTracesServlet(handler, environment.getObjectMapper()))
+        .addMapping(path);
+    return handler;
+  }
+}
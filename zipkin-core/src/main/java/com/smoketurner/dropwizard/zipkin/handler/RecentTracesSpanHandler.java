@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+import zipkin2.Span;
+import zipkin2.reporter.brave.ZipkinSpanHandler;
+
+/**
+ * A {@link SpanHandler} keeping the last {@code maxSpans} spans in memory, so that the recent
+ * traces of an instance can be inspected without a collector.
+ *
+ * <p>Spans are converted to Zipkin spans and written to a fixed-size ring buffer: writers claim a
+ * slot with an atomic increment and overwrite the oldest span, without locking. Queries scan a
+ * snapshot of the buffer, so they are meant for debugging rather than for frequent polling.
+ */
+public class RecentTracesSpanHandler extends SpanHandler {
+
+  private final AtomicReferenceArray<Span> spans;
+  private final AtomicLong writes = new AtomicLong();
+  private final SpanHandler converter;
+
+  /**
+   * Constructor
+   *
+   * @param maxSpans number of spans kept in memory
+   * @param includeUnsampled whether to keep the spans recorded locally but not sampled
+   */
+  public RecentTracesSpanHandler(final int maxSpans, final boolean includeUnsampled) {
+    if (maxSpans < 1) {
+      throw new IllegalArgumentException("maxSpans < 1: " + maxSpans);
+    }
+    this.spans = new AtomicReferenceArray<>(maxSpans);
+    this.converter =
+        ZipkinSpanHandler.newBuilder(this::store).alwaysReportSpans(includeUnsampled).build();
+  }
+
+  @Override
+  public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    return converter.end(context, span, cause);
+  }
+
+  void store(Span span) {
+    final int slot = (int) (writes.getAndIncrement() % spans.length());
+    spans.set(slot, span);
+  }
+
+  /**
+   * @return the spans currently in memory, from the most recent to the oldest
+   */
+  public List<Span> getSpans() {
+    final long end = writes.get();
+    final int count = (int) Math.min(end, spans.length());
+    final List<Span> result = new ArrayList<>(count);
+    for (long i = end - 1; i >= end - count; i--) {
+      final Span span = spans.get((int) (i % spans.length()));
+      if (span != null) {
+        result.add(span);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Find the spans of a trace.
+   *
+   * @param traceId the trace ID, normalized like {@link Span#traceId()}
+   * @return the spans of the trace, or empty if none are in memory
+   */
+  public Optional<List<Span>> getTrace(final String traceId) {
+    final List<Span> trace = new ArrayList<>();
+    for (Span span : getSpans()) {
+      if (span.traceId().equals(traceId)) {
+        trace.add(span);
+      }
+    }
+    if (trace.isEmpty()) {
+      return Optional.empty();
+    }
+    trace.sort(Comparator.comparingLong(Span::timestampAsLong));
+    return Optional.of(trace);
+  }
+
+  /**
+   * Find the most recent traces having a span matching the given filter.
+   *
+   * @param filter which spans to look for
+   * @param limit maximum number of traces
+   * @return the matching traces, from the most recent to the oldest
+   */
+  public List<List<Span>> getTraces(final Predicate<Span> filter, final int limit) {
+    // spans are iterated from the most recent, so traces are inserted by their last span
+    final Map<String, List<Span>> traces = new LinkedHashMap<>();
+    final List<String> matching = new ArrayList<>();
+    for (Span span : getSpans()) {
+      traces.computeIfAbsent(span.traceId(), id -> new ArrayList<>()).add(span);
+      if (matching.size() < limit && !matching.contains(span.traceId()) && filter.test(span)) {
+        matching.add(span.traceId());
+      }
+    }
+
+    final List<List<Span>> result = new ArrayList<>(matching.size());
+    for (String traceId : matching) {
+      final List<Span> trace = traces.get(traceId);
+      trace.sort(Comparator.comparingLong(Span::timestampAsLong));
+      result.add(trace);
+    }
+    return result;
+  }
+
+  /**
+   * @return the local service names of the spans in memory
+   */
+  public SortedSet<String> getServiceNames() {
+    final SortedSet<String> names = new TreeSet<>();
+    for (Span span : getSpans()) {
+      addIfPresent(names, span.localServiceName());
+    }
+    return names;
+  }
+
+  /**
+   * @param serviceName local service name
+   * @return the names of the spans of the given service
+   */
+  public SortedSet<String> getSpanNames(final String serviceName) {
+    final SortedSet<String> names = new TreeSet<>();
+    for (Span span : getSpans()) {
+      if (serviceName.equals(span.localServiceName())) {
+        addIfPresent(names, span.name());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * @param serviceName local service name
+   * @return the remote service names called by the given service
+   */
+  public SortedSet<String> getRemoteServiceNames(final String serviceName) {
+    final SortedSet<String> names = new TreeSet<>();
+    for (Span span : getSpans()) {
+      if (serviceName.equals(span.localServiceName())) {
+        addIfPresent(names, span.remoteServiceName());
+      }
+    }
+    return names;
+  }
+
+  private static void addIfPresent(SortedSet<String> names, @Nullable String name) {
+    if (name != null) {
+      names.add(name);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RecentTracesSpanHandler{maxSpans=" + spans.length() + "}";
+  }
+}
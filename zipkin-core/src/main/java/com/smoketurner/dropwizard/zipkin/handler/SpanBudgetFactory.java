@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.DataSizeUnit;
+import io.dropwizard.validation.MaxDataSize;
+import io.dropwizard.validation.MinDataSize;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration of the size budget of each span, applied before the spans are reported.
+ *
+ * @see SpanBudgetSpanHandler
+ */
+public class SpanBudgetFactory {
+
+  @Min(0)
+  private int maxTags = 64;
+
+  @Min(1)
+  private int maxValueLength = 2048;
+
+  @Min(0)
+  private int maxAnnotations = 64;
+
+  @NotNull
+  @MinDataSize(value = SpanBudgetSpanHandler.BASE_SIZE, unit = DataSizeUnit.BYTES)
+  @MaxDataSize(value = Integer.MAX_VALUE, unit = DataSizeUnit.BYTES)
+  private DataSize maxSpanSize = DataSize.kibibytes(32);
+
+  @NotEmpty private String metricPrefix = "tracing.budget";
+
+  @JsonProperty
+  public int getMaxTags() {
+    return maxTags;
+  }
+
+  /**
+   * @param maxTags maximum number of tags of a span, beyond which tags are dropped
+   */
+  @JsonProperty
+  public void setMaxTags(int maxTags) {
+    this.maxTags = maxTags;
+  }
+
+  @JsonProperty
+  public int getMaxValueLength() {
+    return maxValueLength;
+  }
+
+  /**
+   * @param maxValueLength maximum length of a tag or annotation value, beyond which it is truncated
+   */
+  @JsonProperty
+  public void setMaxValueLength(int maxValueLength) {
+    this.maxValueLength = maxValueLength;
+  }
+
+  @JsonProperty
+  public int getMaxAnnotations() {
+    return maxAnnotations;
+  }
+
+  /**
+   * @param maxAnnotations maximum number of annotations of a span, beyond which annotations are
+   *     dropped
+   */
+  @JsonProperty
+  public void setMaxAnnotations(int maxAnnotations) {
+    this.maxAnnotations = maxAnnotations;
+  }
+
+  @JsonProperty
+  public DataSize getMaxSpanSize() {
+    return maxSpanSize;
+  }
+
+  /**
+   * @param maxSpanSize maximum estimated size of a span, beyond which its last tags and annotations
+   *     are dropped
+   */
+  @JsonProperty
+  public void setMaxSpanSize(DataSize maxSpanSize) {
+    this.maxSpanSize = maxSpanSize;
+  }
+
+  @JsonProperty
+  public String getMetricPrefix() {
+    return metricPrefix;
+  }
+
+  @JsonProperty
+  public void setMetricPrefix(String metricPrefix) {
+    this.metricPrefix = metricPrefix;
+  }
+
+  /**
+   * Build a new {@link SpanBudgetSpanHandler}.
+   *
+   * @param registry Metric Registry
+   * @return SpanBudgetSpanHandler instance
+   */
+  public SpanBudgetSpanHandler build(final MetricRegistry registry) {
+    return new SpanBudgetSpanHandler(
+        maxTags,
+        maxValueLength,
+        maxAnnotations,
+        Math.toIntExact(maxSpanSize.toBytes()),
+        registry,
+        metricPrefix);
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link SpanHandler} keeping spans within a size budget before they are encoded, so that a few
+ * huge tags cannot inflate the reported bytes or get whole messages dropped by the sender. It must
+ * be added before the handlers reporting the spans.
+ *
+ * <p>Tag and annotation values longer than {@code maxValueLength} characters are truncated. Tags
+ * beyond {@code maxTags}, annotations beyond {@code maxAnnotations}, and the tags then annotations
+ * which would make the estimated size of the span exceed {@code maxSpanSize} are dropped, in order.
+ * The size is estimated from the length of the strings, which is cheap and exact for ASCII; spans
+ * within budget are only scanned once and are not modified.
+ */
+public class SpanBudgetSpanHandler extends SpanHandler {
+
+  /** Estimated size of the IDs, timestamps, kind and endpoint addresses of a span. */
+  static final int BASE_SIZE = 256;
+
+  /** Estimated size of the quotes and separators of a tag. */
+  static final int TAG_OVERHEAD = 6;
+
+  /** Estimated size of the timestamp and field names of an annotation. */
+  static final int ANNOTATION_OVERHEAD = 40;
+
+  private final int maxTags;
+  private final int maxValueLength;
+  private final int maxAnnotations;
+  private final int maxSpanSize;
+  private final Meter spansTrimmed;
+  private final Meter tagsDropped;
+  private final Meter tagsTruncated;
+  private final Meter annotationsDropped;
+  private final Meter annotationsTruncated;
+
+  /**
+   * Constructor
+   *
+   * @param maxTags maximum number of tags of a span
+   * @param maxValueLength maximum length of a tag or annotation value
+   * @param maxAnnotations maximum number of annotations of a span
+   * @param maxSpanSize maximum estimated size of a span, in bytes
+   * @param registry Metric Registry
+   * @param prefix Prefix for the metric names
+   */
+  public SpanBudgetSpanHandler(
+      final int maxTags,
+      final int maxValueLength,
+      final int maxAnnotations,
+      final int maxSpanSize,
+      final MetricRegistry registry,
+      final String prefix) {
+    if (maxTags < 0) {
+      throw new IllegalArgumentException("maxTags < 0: " + maxTags);
+    }
+    if (maxValueLength < 1) {
+      throw new IllegalArgumentException("maxValueLength < 1: " + maxValueLength);
+    }
+    if (maxAnnotations < 0) {
+      throw new IllegalArgumentException("maxAnnotations < 0: " + maxAnnotations);
+    }
+    if (maxSpanSize < BASE_SIZE) {
+      throw new IllegalArgumentException("maxSpanSize < " + BASE_SIZE + ": " + maxSpanSize);
+    }
+    this.maxTags = maxTags;
+    this.maxValueLength = maxValueLength;
+    this.maxAnnotations = maxAnnotations;
+    this.maxSpanSize = maxSpanSize;
+    this.spansTrimmed = registry.meter(name(prefix, "spans", "trimmed"));
+    this.tagsDropped = registry.meter(name(prefix, "tags", "dropped"));
+    this.tagsTruncated = registry.meter(name(prefix, "tags", "truncated"));
+    this.annotationsDropped = registry.meter(name(prefix, "annotations", "dropped"));
+    this.annotationsTruncated = registry.meter(name(prefix, "annotations", "truncated"));
+  }
+
+  @Override
+  public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    final int baseSize =
+        BASE_SIZE
+            + length(span.name())
+            + length(span.localServiceName())
+            + length(span.remoteServiceName());
+
+    // fast path: a single scan without allocation for the spans within budget
+    boolean withinBudget = span.tagCount() <= maxTags && span.annotationCount() <= maxAnnotations;
+    int size = baseSize;
+    for (int i = 0, count = span.tagCount(); i < count; i++) {
+      final String value = span.tagValueAt(i);
+      withinBudget &= value.length() <= maxValueLength;
+      size += span.tagKeyAt(i).length() + value.length() + TAG_OVERHEAD;
+    }
+    for (int i = 0, count = span.annotationCount(); i < count; i++) {
+      final String value = span.annotationValueAt(i);
+      withinBudget &= value.length() <= maxValueLength;
+      size += value.length() + ANNOTATION_OVERHEAD;
+    }
+    if (withinBudget && size <= maxSpanSize) {
+      return true;
+    }
+
+    final Trimmer trimmer = new Trimmer(baseSize);
+    span.forEachTag((MutableSpan.TagUpdater) trimmer);
+    span.forEachAnnotation((MutableSpan.AnnotationUpdater) trimmer);
+
+    spansTrimmed.mark();
+    if (trimmer.tagsDropped > 0) tagsDropped.mark(trimmer.tagsDropped);
+    if (trimmer.tagsTruncated > 0) tagsTruncated.mark(trimmer.tagsTruncated);
+    if (trimmer.annotationsDropped > 0) annotationsDropped.mark(trimmer.annotationsDropped);
+    if (trimmer.annotationsTruncated > 0) annotationsTruncated.mark(trimmer.annotationsTruncated);
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "SpanBudgetSpanHandler{maxSpanSize=" + maxSpanSize + "}";
+  }
+
+  private static int length(@Nullable String value) {
+    return value == null ? 0 : value.length();
+  }
+
+  /** Truncate the value without splitting a surrogate pair. */
+  String truncate(String value) {
+    if (value.length() <= maxValueLength) {
+      return value;
+    }
+    int end = maxValueLength;
+    if (Character.isHighSurrogate(value.charAt(end - 1))) {
+      end--;
+    }
+    return value.substring(0, end);
+  }
+
+  /** Keeps the tags then the annotations of a span, in order, while they fit in the budget. */
+  private final class Trimmer implements MutableSpan.TagUpdater, MutableSpan.AnnotationUpdater {
+    int size;
+    int tags;
+    int annotations;
+    int tagsDropped;
+    int tagsTruncated;
+    int annotationsDropped;
+    int annotationsTruncated;
+
+    Trimmer(int size) {
+      this.size = size;
+    }
+
+    @Override
+    @Nullable
+    public String update(String key, String value) {
+      final String truncated = truncate(value);
+      final int entrySize = key.length() + truncated.length() + TAG_OVERHEAD;
+      if (tags >= maxTags || size + entrySize > maxSpanSize) {
+        tagsDropped++;
+        return null;
+      }
+      if (truncated != value) {
+        tagsTruncated++;
+      }
+      tags++;
+      size += entrySize;
+      return truncated;
+    }
+
+    @Override
+    @Nullable
+    public String update(long timestamp, String value) {
+      final String truncated = truncate(value);
+      final int entrySize = truncated.length() + ANNOTATION_OVERHEAD;
+      if (annotations >= maxAnnotations || size + entrySize > maxSpanSize) {
+        annotationsDropped++;
+        return null;
+      }
+      if (truncated != value) {
+        annotationsTruncated++;
+      }
+      annotations++;
+      size += entrySize;
+      return truncated;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+
+/**
+ * Configuration of the metrics recorded from every server and client span, regardless of sampling.
+ *
+ * @see MetricsSpanHandler
+ */
+public class SpanMetricsFactory {
+
+  @NotEmpty private String metricPrefix = "tracing.spans";
+
+  @Min(1)
+  private int maxKeys = 1000;
+
+  @JsonProperty
+  public String getMetricPrefix() {
+    return metricPrefix;
+  }
+
+  @JsonProperty
+  public void setMetricPrefix(String metricPrefix) {
+    this.metricPrefix = metricPrefix;
+  }
+
+  @JsonProperty
+  public int getMaxKeys() {
+    return maxKeys;
+  }
+
+  /**
+   * @param maxKeys maximum number of distinct span name, route and remote service combinations,
+   *     beyond which spans are recorded under {@code other}
+   */
+  @JsonProperty
+  public void setMaxKeys(int maxKeys) {
+    this.maxKeys = maxKeys;
+  }
+
+  /**
+   * Build a new {@link MetricsSpanHandler} registering its metrics in the given registry.
+   *
+   * @param registry Metric Registry
+   * @return MetricsSpanHandler instance
+   */
+  public MetricsSpanHandler build(final MetricRegistry registry) {
+    return new MetricsSpanHandler(registry, metricPrefix, maxKeys);
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import brave.handler.SpanHandler;
+import brave.sampler.BoundarySampler;
+import brave.sampler.Sampler;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+import io.dropwizard.validation.ValidationMethod;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration of the local tail sampling of traces, which keeps every failed or slow trace and a
+ * fraction of the others.
+ *
+ * @see TailSamplingSpanHandler
+ */
+public class TailSamplingFactory {
+
+  @NotNull
+  @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS)
+  private Duration latencyThreshold = Duration.seconds(1);
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private float probability = 0.01f;
+
+  @Min(1)
+  private int maxSpansPerTrace = 1000;
+
+  @Min(1)
+  private int maxBufferedSpans = 10000;
+
+  @NotEmpty private String metricPrefix = "tracing.tail";
+
+  @JsonProperty
+  public Duration getLatencyThreshold() {
+    return latencyThreshold;
+  }
+
+  /**
+   * @param latencyThreshold duration of the local root span from which a trace is always kept
+   */
+  @JsonProperty
+  public void setLatencyThreshold(Duration latencyThreshold) {
+    this.latencyThreshold = latencyThreshold;
+  }
+
+  @JsonProperty
+  public float getProbability() {
+    return probability;
+  }
+
+  /**
+   * @param probability probability of keeping a trace which neither failed nor was slow
+   */
+  @JsonProperty
+  public void setProbability(float probability) {
+    this.probability = probability;
+  }
+
+  @JsonProperty
+  public int getMaxSpansPerTrace() {
+    return maxSpansPerTrace;
+  }
+
+  @JsonProperty
+  public void setMaxSpansPerTrace(int maxSpansPerTrace) {
+    this.maxSpansPerTrace = maxSpansPerTrace;
+  }
+
+  @JsonProperty
+  public int getMaxBufferedSpans() {
+    return maxBufferedSpans;
+  }
+
+  /**
+   * @param maxBufferedSpans maximum number of spans buffered for all traces, beyond which the
+   *     oldest trace is evicted
+   */
+  @JsonProperty
+  public void setMaxBufferedSpans(int maxBufferedSpans) {
+    this.maxBufferedSpans = maxBufferedSpans;
+  }
+
+  @JsonProperty
+  public String getMetricPrefix() {
+    return metricPrefix;
+  }
+
+  @JsonProperty
+  public void setMetricPrefix(String metricPrefix) {
+    this.metricPrefix = metricPrefix;
+  }
+
+  @ValidationMethod(message = "maxBufferedSpans must not be less than maxSpansPerTrace")
+  public boolean isMaxBufferedSpansValid() {
+    return maxBufferedSpans >= maxSpansPerTrace;
+  }
+
+  /**
+   * Build a new {@link TailSamplingSpanHandler} passing the kept spans to the given handler.
+   *
+   * @param delegate SpanHandler reporting unsampled spans
+   * @param registry Metric Registry
+   * @return TailSamplingSpanHandler instance
+   */
+  public TailSamplingSpanHandler build(final SpanHandler delegate, final MetricRegistry registry) {
+    // the trace ID based sampler keeps the same traces across services doing tail sampling
+    final Sampler sampler =
+        probability <= 0.0f
+            ? Sampler.NEVER_SAMPLE
+            : BoundarySampler.create(Math.max(probability, 0.0001f));
+    return new TailSamplingSpanHandler(
+        delegate,
+        sampler,
+        latencyThreshold.toMicroseconds(),
+        TimeUnit.MICROSECONDS,
+        maxSpansPerTrace,
+        maxBufferedSpans,
+        registry,
+        metricPrefix);
+  }
+}
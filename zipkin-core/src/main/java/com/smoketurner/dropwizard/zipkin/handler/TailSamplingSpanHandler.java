@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link SpanHandler} which decides whether to keep a trace once its local root span finishes,
+ * rather than when it starts. Spans of traces which were not sampled by the head sampler are
+ * buffered per local root, then passed to the delegate only if one of them failed, if the local
+ * root took at least {@code latencyThreshold}, or if the trace ID falls within {@code sampler}.
+ * Spans of traces sampled by the head sampler are passed through unbuffered.
+ *
+ * <p>Buffer memory is hard-capped: once {@code maxBufferedSpans} spans are buffered, the oldest
+ * trace is evicted and its spans are dropped, and a trace never buffers more than {@code
+ * maxSpansPerTrace} spans. Evicting a trace records a decision to drop it, so that a partial trace
+ * is never kept without its evicted spans. Spans which finish after their local root, or after
+ * their trace was evicted, follow the decision made for it while it is still remembered.
+ *
+ * <p>Tracing must record every trace locally, with {@code Tracing.Builder.alwaysSampleLocal()}, and
+ * the delegate must report unsampled spans, as done by {@code
+ * ZipkinSpanHandler.newBuilder(reporter).alwaysReportSpans(true)}.
+ */
+public class TailSamplingSpanHandler extends SpanHandler {
+
+  private final SpanHandler delegate;
+  private final Sampler sampler;
+  private final long latencyThresholdMicros;
+  private final int maxSpansPerTrace;
+  private final int maxBufferedSpans;
+
+  private final Map<Long, TraceBuffer> buffers = new LinkedHashMap<>();
+  private final Map<Long, Boolean> decisions;
+  private final AtomicInteger bufferedSpans = new AtomicInteger();
+
+  private final Meter kept;
+  private final Meter dropped;
+  private final Meter evicted;
+  private final Meter spansDropped;
+
+  /**
+   * Constructor
+   *
+   * @param delegate SpanHandler of the kept spans
+   * @param sampler Sampler of the traces which neither failed nor were slow
+   * @param latencyThreshold duration of the local root from which a trace is always kept
+   * @param unit unit of the latency threshold
+   * @param maxSpansPerTrace maximum number of spans buffered for a trace
+   * @param maxBufferedSpans maximum number of spans buffered for all traces
+   * @param registry Metric Registry
+   * @param prefix Prefix for the metric names
+   */
+  public TailSamplingSpanHandler(
+      final SpanHandler delegate,
+      final Sampler sampler,
+      final long latencyThreshold,
+      final TimeUnit unit,
+      final int maxSpansPerTrace,
+      final int maxBufferedSpans,
+      final MetricRegistry registry,
+      final String prefix) {
+    if (maxSpansPerTrace < 1) {
+      throw new IllegalArgumentException("maxSpansPerTrace < 1: " + maxSpansPerTrace);
+    }
+    if (maxBufferedSpans < maxSpansPerTrace) {
+      throw new IllegalArgumentException("maxBufferedSpans < maxSpansPerTrace");
+    }
+    this.delegate = Objects.requireNonNull(delegate);
+    this.sampler = Objects.requireNonNull(sampler);
+    this.latencyThresholdMicros = unit.toMicros(latencyThreshold);
+    this.maxSpansPerTrace = maxSpansPerTrace;
+    this.maxBufferedSpans = maxBufferedSpans;
+
+    // remember as many decisions as there can be traces buffered
+    this.decisions =
+        new LinkedHashMap<Long, Boolean>() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > maxBufferedSpans;
+          }
+        };
+
+    this.kept = registry.meter(name(prefix, "traces", "kept"));
+    this.dropped = registry.meter(name(prefix, "traces", "dropped"));
+    this.evicted = registry.meter(name(prefix, "traces", "evicted"));
+    this.spansDropped = registry.meter(name(prefix, "spans", "dropped"));
+    registry.gauge(name(prefix, "spans", "buffered"), () -> (Gauge<Integer>) bufferedSpans::get);
+  }
+
+  /**
+   * @return the number of spans currently buffered
+   */
+  public int getBufferedSpans() {
+    return bufferedSpans.get();
+  }
+
+  @Override
+  public boolean begin(TraceContext context, MutableSpan span, TraceContext parent) {
+    return delegate.begin(context, span, parent);
+  }
+
+  @Override
+  public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+    if (cause == Cause.ABANDONED || Boolean.TRUE.equals(context.sampled())) {
+      return delegate.end(context, span, cause);
+    }
+
+    final Long localRootId = context.localRootId();
+    final List<Buffered> decided;
+    final Boolean decision;
+    synchronized (buffers) {
+      decision = decisions.get(localRootId);
+      if (decision != null) {
+        decided = null;
+      } else {
+        decided = buffer(localRootId, context, span, cause);
+      }
+    }
+
+    if (decision != null) {
+      // the local root has already finished
+      return decision ? delegate.end(context, span, cause) : true;
+    }
+    if (decided != null) {
+      kept.mark();
+      for (Buffered buffered : decided) {
+        delegate.end(buffered.context, buffered.span, buffered.cause);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Buffer a span, deciding whether to keep its trace if it is the local root. Must be called
+   * holding the lock on the buffers.
+   *
+   * @return the spans to keep, or null if the trace is still buffered or is dropped
+   */
+  @Nullable
+  private List<Buffered> buffer(
+      Long localRootId, TraceContext context, MutableSpan span, Cause cause) {
+
+    TraceBuffer buffer = buffers.get(localRootId);
+    if (buffer == null) {
+      buffer = new TraceBuffer();
+      buffers.put(localRootId, buffer);
+    }
+    if (buffer.spans.size() < maxSpansPerTrace) {
+      buffer.spans.add(new Buffered(context, span, cause));
+      bufferedSpans.incrementAndGet();
+    } else {
+      spansDropped.mark();
+    }
+    buffer.error |= isError(span);
+
+    if (!context.isLocalRoot()) {
+      evictIfFull();
+      return null;
+    }
+
+    buffers.remove(localRootId);
+    bufferedSpans.addAndGet(-buffer.spans.size());
+    final boolean keep = buffer.error || isSlow(span) || sampler.isSampled(context.traceId());
+    decisions.put(localRootId, keep);
+    if (!keep) {
+      dropped.mark();
+      return null;
+    }
+    return buffer.spans;
+  }
+
+  @Override
+  public boolean handlesAbandoned() {
+    return delegate.handlesAbandoned();
+  }
+
+  private void evictIfFull() {
+    final Iterator<Map.Entry<Long, TraceBuffer>> iterator = buffers.entrySet().iterator();
+    while (bufferedSpans.get() > maxBufferedSpans && iterator.hasNext()) {
+      final Map.Entry<Long, TraceBuffer> entry = iterator.next();
+      final TraceBuffer oldest = entry.getValue();
+      iterator.remove();
+      // drop the rest of the trace, including its local root
+      decisions.put(entry.getKey(), false);
+      bufferedSpans.addAndGet(-oldest.spans.size());
+      spansDropped.mark(oldest.spans.size());
+      evicted.mark();
+    }
+  }
+
+  private boolean isSlow(MutableSpan span) {
+    return span.startTimestamp() != 0L
+        && span.finishTimestamp() != 0L
+        && span.finishTimestamp() - span.startTimestamp() >= latencyThresholdMicros;
+  }
+
+  static boolean isError(MutableSpan span) {
+    return span.error() != null || span.tag("error") != null;
+  }
+
+  @Override
+  public String toString() {
+    return "TailSamplingSpanHandler{" + delegate + "}";
+  }
+
+  private static final class TraceBuffer {
+    final List<Buffered> spans = new ArrayList<>();
+    boolean error;
+  }
+
+  private static final class Buffered {
+    final TraceContext context;
+    final MutableSpan span;
+    final Cause cause;
+
+    Buffered(TraceContext context, MutableSpan span, Cause cause) {
+      this.context = context;
+      this.span = span;
+      this.cause = cause;
+    }
+  }
+}
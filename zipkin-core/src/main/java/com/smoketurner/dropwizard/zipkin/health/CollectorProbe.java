@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.health;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.CheckResult;
+import zipkin2.Component;
+
+/**
+ * Checks whether a collector can be reached on a background thread, so that neither startup nor
+ * health checks block on the tracing backend. Failed checks are retried with an exponential
+ * backoff, and successful ones are repeated at a fixed interval.
+ *
+ * <p>{@link #check()} returns the result of the last probe without contacting the collector.
+ */
+public final class CollectorProbe extends Component {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CollectorProbe.class);
+  private static final CheckResult NOT_CHECKED =
+      CheckResult.failed(new IllegalStateException("Collector was not checked yet"));
+
+  private final Component component;
+  private final long minBackoffNanos;
+  private final long maxBackoffNanos;
+  private final long intervalNanos;
+  private volatile CheckResult result = NOT_CHECKED;
+  private volatile int failures;
+  @Nullable private volatile ScheduledFuture<?> next;
+  private volatile boolean closed;
+
+  /**
+   * Constructor
+   *
+   * @param component reporter or sender whose check tells whether the collector is reachable
+   * @param minBackoff delay before retrying the first failed check
+   * @param maxBackoff maximum delay between failed checks
+   * @param interval delay between successful checks
+   * @param unit unit of the delays
+   * @param registry Metric Registry
+   * @param prefix Prefix for the metric names
+   */
+  public CollectorProbe(
+      final Component component,
+      final long minBackoff,
+      final long maxBackoff,
+      final long interval,
+      final TimeUnit unit,
+      final MetricRegistry registry,
+      final String prefix) {
+    if (minBackoff > maxBackoff) {
+      throw new IllegalArgumentException(
+          "minBackoff (" + minBackoff + ") > maxBackoff (" + maxBackoff + ")");
+    }
+    this.component = Objects.requireNonNull(component);
+    this.minBackoffNanos = unit.toNanos(minBackoff);
+    this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    this.intervalNanos = unit.toNanos(interval);
+    registry.gauge(
+        name(prefix, "collector", "reachable"), () -> (Gauge<Integer>) () -> isReachable() ? 1 : 0);
+    registry.gauge(name(prefix, "collector", "failures"), () -> (Gauge<Integer>) () -> failures);
+  }
+
+  /**
+   * Probe the collector right away on the given executor, then keep probing it until closed.
+   *
+   * @param executor executor running the probes
+   */
+  public void start(final ScheduledExecutorService executor) {
+    schedule(executor, 0L);
+  }
+
+  private void schedule(final ScheduledExecutorService executor, final long delayNanos) {
+    if (closed) {
+      return;
+    }
+    try {
+      next = executor.schedule(() -> schedule(executor, probe()), delayNanos, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // the executor is shutting down
+    }
+  }
+
+  /**
+   * Check the collector once and record the result.
+   *
+   * @return how long to wait before the next probe, in nanoseconds
+   */
+  public long probe() {
+    CheckResult current;
+    try {
+      current = component.check();
+    } catch (RuntimeException e) {
+      current = CheckResult.failed(e);
+    }
+
+    final CheckResult previous = result;
+    result = current;
+    if (current.ok()) {
+      failures = 0;
+      if (!previous.ok()) {
+        LOGGER.info("Successfully connected to Zipkin");
+      }
+      return intervalNanos;
+    }
+
+    final int attempt = ++failures;
+    final long backoff = backoffNanos(attempt);
+    if (previous.ok() || previous == NOT_CHECKED) {
+      LOGGER.error("Unable to connect to Zipkin destination", current.error());
+    } else {
+      LOGGER.debug(
+          "Zipkin destination still unreachable after {} attempts, retrying in {}ms",
+          attempt,
+          TimeUnit.NANOSECONDS.toMillis(backoff),
+          current.error());
+    }
+    return backoff;
+  }
+
+  private long backoffNanos(final int attempt) {
+    // doubles the delay on each attempt, without overflowing
+    final int shift = Math.min(attempt - 1, 62);
+    if (minBackoffNanos > maxBackoffNanos >> shift) {
+      return maxBackoffNanos;
+    }
+    return minBackoffNanos << shift;
+  }
+
+  /**
+   * @return true if the last probe reached the collector
+   */
+  public boolean isReachable() {
+    return result.ok();
+  }
+
+  /**
+   * @return number of probes which failed since the collector was last reached
+   */
+  public int getConsecutiveFailures() {
+    return failures;
+  }
+
+  /**
+   * @return the result of the last probe, which fails until the collector was first checked
+   */
+  @Override
+  public CheckResult check() {
+    return result;
+  }
+
+  /** Stop probing the collector. */
+  @Override
+  public void close() {
+    closed = true;
+    final ScheduledFuture<?> future = next;
+    if (future != null) {
+      future.cancel(false);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CollectorProbe{" + component + "}";
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import java.util.Objects;
+import java.util.function.DoubleSupplier;
+import zipkin2.CheckResult;
+import zipkin2.Component;
+
+/**
+ * Reports a span reporter as unhealthy when its collector cannot be reached, when its queue is
+ * nearly full, or when it dropped too many spans over the last minute.
+ *
+ * <p>A non-critical check reports these problems in its message and in its {@code degraded} detail
+ * but stays healthy, so that a tracing backend outage does not take healthy instances out of a load
+ * balancer.
+ */
+public class ReporterHealthCheck extends HealthCheck {
+
+  private final Component component;
+  private final DropwizardReporterMetrics metrics;
+  private final DoubleSupplier queueFill;
+  private final double maxQueueFill;
+  private final double maxDropRate;
+  private final boolean critical;
+
+  /**
+   * Constructor
+   *
+   * @param component reporter or sender whose check tells whether the collector is reachable
+   * @param metrics Metrics of the reporter
+   * @param queueFill ratio of the reporter queue in use, between 0.0 and 1.0
+   * @param maxQueueFill ratio of the queue in use beyond which the reporter is unhealthy
+   * @param maxDropRate share of the spans dropped over the last minute beyond which the reporter is
+   *     unhealthy
+   */
+  public ReporterHealthCheck(
+      final Component component,
+      final DropwizardReporterMetrics metrics,
+      final DoubleSupplier queueFill,
+      final double maxQueueFill,
+      final double maxDropRate) {
+    this(component, metrics, queueFill, maxQueueFill, maxDropRate, true);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param component reporter or sender whose check tells whether the collector is reachable
+   * @param metrics Metrics of the reporter
+   * @param queueFill ratio of the reporter queue in use, between 0.0 and 1.0
+   * @param maxQueueFill ratio of the queue in use beyond which the reporter is unhealthy
+   * @param maxDropRate share of the spans dropped over the last minute beyond which the reporter is
+   *     unhealthy
+   * @param critical whether an unhealthy reporter fails the check, or only marks it as degraded
+   */
+  public ReporterHealthCheck(
+      final Component component,
+      final DropwizardReporterMetrics metrics,
+      final DoubleSupplier queueFill,
+      final double maxQueueFill,
+      final double maxDropRate,
+      final boolean critical) {
+    this.component = Objects.requireNonNull(component);
+    this.metrics = Objects.requireNonNull(metrics);
+    this.queueFill = Objects.requireNonNull(queueFill);
+    this.maxQueueFill = maxQueueFill;
+    this.maxDropRate = maxDropRate;
+    this.critical = critical;
+  }
+
+  @Override
+  protected Result check() {
+    CheckResult result;
+    try {
+      result = component.check();
+    } catch (RuntimeException e) {
+      result = CheckResult.failed(e);
+    }
+    final double fill = queueFill.getAsDouble();
+    final double dropRate = metrics.getDropRate();
+
+    final ResultBuilder builder =
+        Result.builder()
+            .withDetail("reachable", result.ok())
+            .withDetail("queueFill", fill)
+            .withDetail("dropRate", dropRate);
+    if (!result.ok()) {
+      final Throwable error = result.error();
+      return unhealthy(
+          builder,
+          String.format(
+              "Unable to reach the collector: %s", error == null ? "unknown" : error.toString()));
+    }
+    if (fill > maxQueueFill) {
+      return unhealthy(builder, String.format("Reporter queue is %.0f%% full", fill * 100));
+    }
+    if (dropRate > maxDropRate) {
+      return unhealthy(
+          builder, String.format("Reporter dropped %.1f%% of the spans", dropRate * 100));
+    }
+    return builder.healthy().withDetail("degraded", false).build();
+  }
+
+  private Result unhealthy(ResultBuilder builder, String message) {
+    if (critical) {
+      return builder.unhealthy().withMessage(message).build();
+    }
+    return builder.healthy().withMessage(message).withDetail("degraded", true).build();
+  }
+}
@@ -15,44 +15,65 @@
  */
 package com.smoketurner.dropwizard.zipkin.managed;
 
+import com.smoketurner.dropwizard.zipkin.health.CollectorProbe;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
 import io.dropwizard.lifecycle.Managed;
 import java.util.Objects;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import zipkin2.CheckResult;
+import java.util.concurrent.ScheduledExecutorService;
 import zipkin2.reporter.AsyncReporter;
 import zipkin2.reporter.Sender;
 
 public class ReporterManager implements Managed {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(ReporterManager.class);
-
   private final AsyncReporter<?> reporter;
   private final Sender sender;
+  private final DropwizardReporterMetrics metrics;
+  private final CollectorProbe probe;
+  private final ScheduledExecutorService executor;
 
   /**
    * Constructor
    *
    * @param reporter Reporter to manage
    * @param sender Sender to manage
+   * @param metrics Metrics of the reporter
+   * @param probe Probe checking whether the collector of the reporter is reachable
+   * @param executor Executor running the probe
    */
-  public ReporterManager(final AsyncReporter<?> reporter, final Sender sender) {
+  public ReporterManager(
+      final AsyncReporter<?> reporter,
+      final Sender sender,
+      final DropwizardReporterMetrics metrics,
+      final CollectorProbe probe,
+      final ScheduledExecutorService executor) {
     this.reporter = Objects.requireNonNull(reporter);
     this.sender = Objects.requireNonNull(sender);
+    this.metrics = Objects.requireNonNull(metrics);
+    this.probe = Objects.requireNonNull(probe);
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+  /**
+   * @return Metrics of the reporter
+   */
+  public DropwizardReporterMetrics getMetrics() {
+    return metrics;
+  }
+
+  /** Send the spans queued by the reporter without waiting for its next flush. */
+  public void flush() {
+    reporter.flush();
   }
 
   @Override
   public void start() {
-    final CheckResult result = reporter.check();
-    if (!result.ok()) {
-      LOGGER.error("Unable to connect to Zipkin destination", result.error());
-    } else {
-      LOGGER.info("Successfully connected to Zipkin");
-    }
+    // the collector is checked in the background so that startup never waits on it
+    probe.start(executor);
   }
 
   @Override
   public void stop() throws Exception {
+    probe.close();
     // the reporter needs to be closed first so that it can report on
     // any dropped spans before closing the sender connection.
     reporter.close();
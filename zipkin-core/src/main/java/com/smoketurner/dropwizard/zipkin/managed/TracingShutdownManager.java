@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.managed;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.Tracing;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shuts tracing down within a deadline: once Jetty starts stopping, the reporters flush the spans
+ * they queued while in-flight requests complete; then {@link Tracing} is closed and the reporters
+ * and their senders are closed in parallel. Reporters still closing at the deadline are abandoned,
+ * so that a slow collector cannot hold up the shutdown.
+ *
+ * <p>Spans dropped or still queued at shutdown are logged and counted by the {@code
+ * <metricPrefix>.span.lost} counter of each reporter.
+ */
+public class TracingShutdownManager implements Managed, LifeCycle.Listener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TracingShutdownManager.class);
+
+  private final long timeoutNanos;
+  private final MetricRegistry registry;
+  private final List<Reporter> reporters = new CopyOnWriteArrayList<>();
+  private final Executor executor;
+  @Nullable private volatile Tracing tracing;
+
+  /**
+   * Constructor
+   *
+   * @param timeout how long to wait for the reporters and senders to close
+   * @param unit unit of the timeout
+   * @param registry Metric Registry
+   */
+  public TracingShutdownManager(
+      final long timeout, final TimeUnit unit, final MetricRegistry registry) {
+    this.timeoutNanos = unit.toNanos(timeout);
+    this.registry = Objects.requireNonNull(registry);
+    final AtomicInteger threads = new AtomicInteger();
+    // daemon threads, so that a reporter abandoned at the deadline does not keep the JVM running
+    this.executor =
+        task -> {
+          final Thread thread = new Thread(task, "zipkin-shutdown-" + threads.getAndIncrement());
+          thread.setDaemon(true);
+          thread.start();
+        };
+  }
+
+  /**
+   * @param tracing Tracing instance to close before the reporters
+   */
+  public void setTracing(final Tracing tracing) {
+    this.tracing = Objects.requireNonNull(tracing);
+  }
+
+  /**
+   * Manage the lifecycle of the given reporter.
+   *
+   * @param manager Reporter and sender to start and to close on shutdown
+   */
+  public void manage(final ReporterManager manager) {
+    reporters.add(new Reporter(manager, registry));
+  }
+
+  @Override
+  public void start() throws Exception {
+    for (Reporter reporter : reporters) {
+      reporter.manager.start();
+    }
+  }
+
+  /** Flush the reporters while Jetty waits for in-flight requests to complete. */
+  @Override
+  public void lifeCycleStopping(final LifeCycle event) {
+    if (!(event instanceof Server)) {
+      return;
+    }
+    for (Reporter reporter : reporters) {
+      reporter.markShutdown();
+      CompletableFuture.runAsync(reporter.manager::flush, executor);
+    }
+  }
+
+  @Override
+  public void stop() {
+    final long deadline = System.nanoTime() + timeoutNanos;
+
+    // stop recording spans, then drain what was already recorded
+    final Tracing current = tracing;
+    if (current != null) {
+      current.close();
+    }
+
+    final List<CompletableFuture<Void>> closing = new ArrayList<>(reporters.size());
+    for (Reporter reporter : reporters) {
+      reporter.markShutdown();
+      closing.add(CompletableFuture.runAsync(reporter::close, executor));
+    }
+
+    try {
+      CompletableFuture.allOf(closing.toArray(new CompletableFuture<?>[0]))
+          .get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // reported per reporter below
+    }
+
+    for (int i = 0; i < reporters.size(); i++) {
+      reporters.get(i).account(closing.get(i).isDone());
+    }
+  }
+
+  private static final class Reporter {
+    final ReporterManager manager;
+    final Counter lost;
+    private long droppedBefore = -1L;
+
+    Reporter(final ReporterManager manager, final MetricRegistry registry) {
+      this.manager = manager;
+      this.lost = registry.counter(name(manager.getMetrics().getPrefix(), "span", "lost"));
+    }
+
+    synchronized void markShutdown() {
+      if (droppedBefore < 0L) {
+        droppedBefore = manager.getMetrics().getSpansDropped().getCount();
+      }
+    }
+
+    void close() {
+      try {
+        manager.stop();
+      } catch (Exception e) {
+        LOGGER.warn("Unable to close reporter {}", manager.getMetrics().getPrefix(), e);
+      }
+    }
+
+    synchronized void account(final boolean closed) {
+      final String prefix = manager.getMetrics().getPrefix();
+      long count = manager.getMetrics().getSpansDropped().getCount() - droppedBefore;
+      if (!closed) {
+        // still queued: the reporter will drop them once its own close timeout expires
+        count += manager.getMetrics().getQueuedSpans();
+        LOGGER.warn("Reporter {} did not close before the shutdown deadline", prefix);
+      }
+      if (count > 0) {
+        lost.inc(count);
+        LOGGER.warn("Reporter {} lost {} spans at shutdown", prefix, count);
+      } else {
+        LOGGER.info("Reporter {} flushed all spans at shutdown", prefix);
+      }
+    }
+  }
+}
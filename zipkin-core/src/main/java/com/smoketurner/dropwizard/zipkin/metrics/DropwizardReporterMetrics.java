@@ -15,13 +15,53 @@
  */
 package com.smoketurner.dropwizard.zipkin.metrics;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
 import zipkin2.reporter.ReporterMetrics;
 
+/**
+ * {@link ReporterMetrics} backed by a Dropwizard {@link MetricRegistry}.
+ *
+ * <p>All metric handles are resolved once at construction so the {@code AsyncReporter} callbacks
+ * never perform a registry lookup. Dropped spans are broken down by cause: spans dropped while
+ * being queued (queue full, oversized or reporter closed) are counted under {@code
+ * span.dropped.queue}, and spans dropped because the sender failed are counted under {@code
+ * span.dropped.send} as well as under the simple name of the exception that caused the failure.
+ */
 public class DropwizardReporterMetrics implements ReporterMetrics {
 
+  public static final String DEFAULT_PREFIX = "tracing.reporter";
+
   private final MetricRegistry registry;
+  private final String prefix;
+
+  private final Meter messages;
+  private final Meter messagesDropped;
+  private final Histogram messageBytes;
+  private final Meter spans;
+  private final Histogram spanBytes;
+  private final Meter spansDropped;
+  private final Meter spansDroppedQueue;
+  private final Meter spansDroppedSend;
+
+  private final ConcurrentMap<Class<?>, DropCause> causes = new ConcurrentHashMap<>();
+
+  /**
+   * The {@code AsyncReporter} flush thread always reports a failed message immediately before the
+   * spans it contained, so the cause is parked here until the matching span drop arrives.
+   */
+  private final ThreadLocal<DropCause> pendingCause = new ThreadLocal<>();
+
+  private volatile int queuedSpans;
+  private volatile int queuedBytes;
 
   /**
    * Constructor
@@ -29,46 +69,146 @@ public class DropwizardReporterMetrics implements ReporterMetrics {
    * @param registry Metric Registry
    */
   public DropwizardReporterMetrics(final MetricRegistry registry) {
+    this(registry, DEFAULT_PREFIX);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param registry Metric Registry
+   * @param prefix Prefix for all metric names
+   */
+  public DropwizardReporterMetrics(final MetricRegistry registry, final String prefix) {
     this.registry = Objects.requireNonNull(registry);
+    this.prefix = Objects.requireNonNull(prefix);
+
+    messages = registry.meter(name(prefix, "message", "accepted"));
+    messagesDropped = registry.meter(name(prefix, "message", "dropped"));
+    messageBytes = registry.histogram(name(prefix, "message", "bytes"));
+    spans = registry.meter(name(prefix, "span", "accepted"));
+    spanBytes = registry.histogram(name(prefix, "span", "bytes"));
+    spansDropped = registry.meter(name(prefix, "span", "dropped"));
+    spansDroppedQueue = registry.meter(name(prefix, "span", "dropped", "queue"));
+    spansDroppedSend = registry.meter(name(prefix, "span", "dropped", "send"));
+
+    registry.gauge(name(prefix, "queued", "spans"), () -> (Gauge<Integer>) this::getQueuedSpans);
+    registry.gauge(name(prefix, "queued", "bytes"), () -> (Gauge<Integer>) this::getQueuedBytes);
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * @return the number of spans waiting in the reporter queue as of the last flush
+   */
+  public int getQueuedSpans() {
+    return queuedSpans;
+  }
+
+  /**
+   * @return the number of encoded bytes waiting in the reporter queue as of the last flush
+   */
+  public int getQueuedBytes() {
+    return queuedBytes;
+  }
+
+  /**
+   * @return the meter of all dropped spans, regardless of cause
+   */
+  public Meter getSpansDropped() {
+    return spansDropped;
+  }
+
+  /**
+   * @return the meter of all spans accepted by the reporter
+   */
+  public Meter getSpansAccepted() {
+    return spans;
+  }
+
+  /**
+   * @return the share of the spans dropped over the last minute, relative to the accepted spans
+   */
+  public double getDropRate() {
+    final double accepted = spans.getOneMinuteRate();
+    return accepted <= 0.0 ? 0.0 : spansDropped.getOneMinuteRate() / accepted;
   }
 
   @Override
   public void incrementMessages() {
-    registry.meter("tracing.reporter.message.accepted").mark();
+    messages.mark();
   }
 
   @Override
   public void incrementMessagesDropped(Throwable cause) {
-    registry.meter("tracing.reporter.message.dropped").mark();
+    messagesDropped.mark();
+    final DropCause dropCause = cause(cause);
+    dropCause.messages.mark();
+    pendingCause.set(dropCause);
   }
 
   @Override
   public void incrementSpans(int quantity) {
-    registry.meter("tracing.reporter.span.accepted").mark(quantity);
+    spans.mark(quantity);
   }
 
   @Override
   public void incrementSpanBytes(int quantity) {
-    registry.histogram("tracing.reporter.span.bytes").update(quantity);
+    spanBytes.update(quantity);
   }
 
   @Override
   public void incrementMessageBytes(int quantity) {
-    registry.histogram("tracing.reporter.message.bytes").update(quantity);
+    messageBytes.update(quantity);
   }
 
   @Override
   public void incrementSpansDropped(int quantity) {
-    registry.meter("tracing.reporter.span.dropped").mark(quantity);
+    spansDropped.mark(quantity);
+
+    final DropCause cause = pendingCause.get();
+    if (cause == null) {
+      spansDroppedQueue.mark(quantity);
+    } else {
+      pendingCause.remove();
+      spansDroppedSend.mark(quantity);
+      cause.spans.mark(quantity);
+    }
   }
 
   @Override
   public void updateQueuedSpans(int update) {
-    registry.meter("tracing.reporter.queued.span").mark();
+    queuedSpans = update;
   }
 
   @Override
   public void updateQueuedBytes(int update) {
-    registry.histogram("tracing.reporter.queued.bytes").update(update);
+    queuedBytes = update;
+  }
+
+  private DropCause cause(@Nullable Throwable cause) {
+    final Class<?> type = cause == null ? Throwable.class : cause.getClass();
+    final DropCause existing = causes.get(type);
+    if (existing != null) {
+      return existing;
+    }
+    return causes.computeIfAbsent(type, this::newCause);
+  }
+
+  private DropCause newCause(Class<?> type) {
+    final String name = name(prefix, "dropped", type.getSimpleName());
+    return new DropCause(
+        registry.meter(name(name, "messages")), registry.meter(name(name, "spans")));
+  }
+
+  private static final class DropCause {
+    final Meter messages;
+    final Meter spans;
+
+    DropCause(Meter messages, Meter spans) {
+      this.messages = messages;
+      this.spans = spans;
+    }
   }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.sampler.Sampler;
+import com.codahale.metrics.Clock;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Sampler} adjusting its probability to sample a target number of traces per second.
+ *
+ * <p>Requests are counted with a {@link LongAdder}. Once per interval, the first request past the
+ * deadline wins a compare-and-set and recomputes the probability from a moving average of the
+ * request rate; the other requests only read the current probability. Like Brave's {@code
+ * BoundarySampler}, the decision is made from the trace ID, so it takes no lock and allocates
+ * nothing.
+ */
+public final class AdaptiveSampler extends Sampler {
+
+  /** Weight of the last interval in the moving average of the request rate. */
+  static final double ALPHA = 0.5;
+
+  private final double tracesPerSecond;
+  private final long intervalNanos;
+  private final Clock clock;
+  private final LongAdder requests = new LongAdder();
+  private final AtomicLong nextAdjustment;
+  private volatile long lastAdjustment;
+  private volatile double requestRate = -1.0;
+  private volatile double probability;
+
+  /**
+   * Constructor
+   *
+   * @param tracesPerSecond target number of traces sampled per second
+   * @param interval how often to adjust the probability
+   * @param unit unit of the interval
+   * @param initialProbability probability used until the first adjustment
+   * @param clock Clock
+   */
+  public AdaptiveSampler(
+      final double tracesPerSecond,
+      final long interval,
+      final TimeUnit unit,
+      final double initialProbability,
+      final Clock clock) {
+    if (tracesPerSecond < 0.0) {
+      throw new IllegalArgumentException("tracesPerSecond < 0: " + tracesPerSecond);
+    }
+    if (interval <= 0) {
+      throw new IllegalArgumentException("interval <= 0: " + interval);
+    }
+    if (initialProbability < 0.0 || initialProbability > 1.0) {
+      throw new IllegalArgumentException(
+          "initialProbability should be between 0.0 and 1.0: " + initialProbability);
+    }
+    this.tracesPerSecond = tracesPerSecond;
+    this.intervalNanos = unit.toNanos(interval);
+    this.clock = Objects.requireNonNull(clock);
+    this.probability = initialProbability;
+    this.lastAdjustment = clock.getTick();
+    this.nextAdjustment = new AtomicLong(lastAdjustment + intervalNanos);
+  }
+
+  /**
+   * @return the probability currently applied to new traces
+   */
+  public double getProbability() {
+    return probability;
+  }
+
+  @Override
+  public boolean isSampled(long traceId) {
+    requests.increment();
+
+    final long now = clock.getTick();
+    final long next = nextAdjustment.get();
+    if (now - next >= 0 && nextAdjustment.compareAndSet(next, now + intervalNanos)) {
+      adjust(now);
+    }
+
+    final double p = probability;
+    if (p >= 1.0) {
+      return true;
+    }
+    if (p <= 0.0) {
+      return false;
+    }
+    final long t = traceId == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(traceId);
+    return t <= (long) (p * Long.MAX_VALUE);
+  }
+
+  /** Only called by the thread which won the compare-and-set of the next adjustment. */
+  private void adjust(long now) {
+    // increments racing with the reset are counted in the next interval
+    final long count = requests.sumThenReset();
+    final double elapsed = (now - lastAdjustment) / (double) TimeUnit.SECONDS.toNanos(1);
+    lastAdjustment = now;
+
+    final double rate = count / elapsed;
+    final double previous = requestRate;
+    final double average = previous < 0.0 ? rate : previous + ALPHA * (rate - previous);
+    requestRate = average;
+    probability = average <= tracesPerSecond ? 1.0 : tracesPerSecond / average;
+  }
+
+  @Override
+  public String toString() {
+    return "AdaptiveSampler{tracesPerSecond=" + tracesPerSecond + "}";
+  }
+}
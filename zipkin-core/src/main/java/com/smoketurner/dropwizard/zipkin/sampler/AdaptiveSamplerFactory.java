@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.sampler.Sampler;
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Samples a target number of traces per second, adjusting the probability as the traffic changes.
+ *
+ * @see AdaptiveSampler
+ */
+@JsonTypeName("adaptive")
+public class AdaptiveSamplerFactory implements SamplerFactory {
+
+  @DecimalMin("0.0")
+  private double tracesPerSecond = 10.0;
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+  private Duration adjustInterval = Duration.seconds(1);
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double initialProbability = 1.0;
+
+  @NotEmpty private String metricPrefix = "tracing.sampler";
+
+  @JsonProperty
+  public double getTracesPerSecond() {
+    return tracesPerSecond;
+  }
+
+  /**
+   * @param tracesPerSecond target number of traces sampled per second by this instance
+   */
+  @JsonProperty
+  public void setTracesPerSecond(double tracesPerSecond) {
+    this.tracesPerSecond = tracesPerSecond;
+  }
+
+  @JsonProperty
+  public Duration getAdjustInterval() {
+    return adjustInterval;
+  }
+
+  /**
+   * @param adjustInterval how often to adjust the probability to the measured request rate
+   */
+  @JsonProperty
+  public void setAdjustInterval(Duration adjustInterval) {
+    this.adjustInterval = adjustInterval;
+  }
+
+  @JsonProperty
+  public double getInitialProbability() {
+    return initialProbability;
+  }
+
+  /**
+   * @param initialProbability probability used until the request rate is first measured
+   */
+  @JsonProperty
+  public void setInitialProbability(double initialProbability) {
+    this.initialProbability = initialProbability;
+  }
+
+  @JsonProperty
+  public String getMetricPrefix() {
+    return metricPrefix;
+  }
+
+  /**
+   * @param metricPrefix prefix of the probability gauge
+   */
+  @JsonProperty
+  public void setMetricPrefix(String metricPrefix) {
+    this.metricPrefix = metricPrefix;
+  }
+
+  @Override
+  public Sampler build() {
+    return new AdaptiveSampler(
+        tracesPerSecond,
+        adjustInterval.toNanoseconds(),
+        TimeUnit.NANOSECONDS,
+        initialProbability,
+        Clock.defaultClock());
+  }
+
+  @Override
+  public Sampler build(MetricRegistry metrics) {
+    final AdaptiveSampler sampler = (AdaptiveSampler) build();
+    metrics.gauge(name(metricPrefix, "probability"), () -> (Gauge<Double>) sampler::getProbability);
+    return sampler;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.sampler.BoundarySampler;
+import brave.sampler.Sampler;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+
+/**
+ * Samples a percentage of traces based on their trace ID, so that every service using the same
+ * probability makes the same decision. Suited to high-traffic services, as it has no shared state.
+ */
+@JsonTypeName("boundary")
+public class BoundarySamplerFactory implements SamplerFactory {
+
+  @DecimalMin("0.0001")
+  @DecimalMax("1.0")
+  private float probability = 0.001f;
+
+  @JsonProperty
+  public float getProbability() {
+    return probability;
+  }
+
+  @JsonProperty
+  public void setProbability(float probability) {
+    this.probability = probability;
+  }
+
+  @Override
+  public Sampler build() {
+    return BoundarySampler.create(probability);
+  }
+}
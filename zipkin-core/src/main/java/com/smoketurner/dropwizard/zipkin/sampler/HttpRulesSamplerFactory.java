@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.http.HttpRequest;
+import brave.http.HttpRuleSampler;
+import brave.sampler.Sampler;
+import brave.sampler.SamplerFunction;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Samples incoming HTTP requests with the first matching rule, in order. Requests matching no rule,
+ * as well as traces not started by an incoming HTTP request, are sampled by {@code sampler}.
+ *
+ * <p>The rules are compiled into a {@link HttpRuleSampler} once at startup.
+ */
+@JsonTypeName("http")
+public class HttpRulesSamplerFactory implements SamplerFactory {
+
+  @Valid @NotNull private List<HttpSamplingRule> rules = new ArrayList<>();
+
+  @Valid @NotNull private SamplerFactory sampler = new ProbabilitySamplerFactory();
+
+  @JsonProperty
+  public List<HttpSamplingRule> getRules() {
+    return rules;
+  }
+
+  @JsonProperty
+  public void setRules(List<HttpSamplingRule> rules) {
+    this.rules = new ArrayList<>(rules);
+  }
+
+  @JsonProperty
+  public SamplerFactory getSampler() {
+    return sampler;
+  }
+
+  /**
+   * @param sampler sampler for requests matching no rule (defaults to sampling everything)
+   */
+  @JsonProperty
+  public void setSampler(SamplerFactory sampler) {
+    this.sampler = sampler;
+  }
+
+  @Override
+  public Sampler build() {
+    return sampler.build();
+  }
+
+  @Override
+  public Sampler build(MetricRegistry metrics) {
+    return sampler.build(metrics);
+  }
+
+  @Override
+  public Optional<SamplerFunction<HttpRequest>> buildServerSampler() {
+    if (rules.isEmpty()) {
+      return Optional.empty();
+    }
+
+    final HttpRuleSampler.Builder builder = HttpRuleSampler.newBuilder();
+    for (HttpSamplingRule rule : rules) {
+      builder.putRule(rule.buildMatcher(), rule.buildSampler());
+    }
+    return Optional.of(builder.build());
+  }
+}
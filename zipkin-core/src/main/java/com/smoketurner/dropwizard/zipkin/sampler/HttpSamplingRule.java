@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.http.HttpRequest;
+import brave.http.HttpRequestMatchers;
+import brave.sampler.Matcher;
+import brave.sampler.Matchers;
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.validation.ValidationMethod;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * A rule matching HTTP requests by method and path, and sampling them either by probability or by a
+ * number of traces per second.
+ */
+public class HttpSamplingRule {
+
+  @Nullable private String method;
+
+  @Nullable private String path;
+
+  @Nullable private String pattern;
+
+  @Nullable
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private Float probability;
+
+  @Nullable
+  @Min(0)
+  private Integer tracesPerSecond;
+
+  @Nullable
+  @JsonProperty
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * @param method HTTP method to match, or null to match any method
+   */
+  @JsonProperty
+  public void setMethod(@Nullable String method) {
+    this.method = method;
+  }
+
+  @Nullable
+  @JsonProperty
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @param path path prefix to match
+   */
+  @JsonProperty
+  public void setPath(@Nullable String path) {
+    this.path = path;
+  }
+
+  @Nullable
+  @JsonProperty
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * @param pattern path pattern to match
+   * @see PathPatternMatcher
+   */
+  @JsonProperty
+  public void setPattern(@Nullable String pattern) {
+    this.pattern = pattern;
+  }
+
+  @Nullable
+  @JsonProperty
+  public Float getProbability() {
+    return probability;
+  }
+
+  @JsonProperty
+  public void setProbability(@Nullable Float probability) {
+    this.probability = probability;
+  }
+
+  @Nullable
+  @JsonProperty
+  public Integer getTracesPerSecond() {
+    return tracesPerSecond;
+  }
+
+  @JsonProperty
+  public void setTracesPerSecond(@Nullable Integer tracesPerSecond) {
+    this.tracesPerSecond = tracesPerSecond;
+  }
+
+  @JsonIgnore
+  @ValidationMethod(
+      message = "must have a method, a path or a pattern, but not both a path and a pattern")
+  public boolean isMatcherValid() {
+    if (path != null && pattern != null) {
+      return false;
+    }
+    return (method != null && !method.isEmpty()) || path != null || pattern != null;
+  }
+
+  @JsonIgnore
+  @ValidationMethod(message = "must have either a probability or tracesPerSecond")
+  public boolean isSamplerValid() {
+    return (probability == null) != (tracesPerSecond == null);
+  }
+
+  @JsonIgnore
+  @ValidationMethod(message = "probability must be 0.0 or between 0.0001 and 1.0")
+  public boolean isProbabilityValid() {
+    return probability == null || Samplers.isValidProbability(probability);
+  }
+
+  /**
+   * Build the matcher selecting requests for this rule.
+   *
+   * @return a request matcher
+   */
+  public Matcher<HttpRequest> buildMatcher() {
+    final List<Matcher<HttpRequest>> matchers = new ArrayList<>(2);
+    if (method != null && !method.isEmpty()) {
+      matchers.add(HttpRequestMatchers.methodEquals(method));
+    }
+    if (path != null) {
+      matchers.add(HttpRequestMatchers.pathStartsWith(path));
+    }
+    if (pattern != null) {
+      matchers.add(PathPatternMatcher.compile(pattern));
+    }
+    if (matchers.isEmpty()) {
+      throw new IllegalStateException("Sampling rule needs a method, a path or a pattern");
+    }
+    return matchers.size() == 1 ? matchers.get(0) : Matchers.and(matchers);
+  }
+
+  /**
+   * Build the sampler applied to requests matching this rule.
+   *
+   * @return a sampler
+   */
+  public Sampler buildSampler() {
+    if (tracesPerSecond != null) {
+      return RateLimitingSampler.create(tracesPerSecond);
+    }
+    if (probability != null) {
+      return Samplers.probability(probability);
+    }
+    throw new IllegalStateException("Sampling rule needs a probability or tracesPerSecond");
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import javax.annotation.Nullable;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warns once Jersey started if any resource method is annotated with {@link Traced} or {@link
+ * NotTraced} while requests are traced by the servlet filter, which samples them before Jersey
+ * matched their resource method and therefore ignores the annotations.
+ */
+public class IgnoredAnnotationsApplicationEventListener implements ApplicationEventListener {
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(IgnoredAnnotationsApplicationEventListener.class);
+
+  @Override
+  public void onEvent(ApplicationEvent event) {
+    if (event.getType() == ApplicationEvent.Type.INITIALIZATION_APP_FINISHED) {
+      final ResourceMethodSampler sampler = new ResourceMethodSampler(null);
+      sampler.resolve(event.getResourceModel());
+      if (!sampler.isEmpty()) {
+        LOGGER.warn(
+            "Resource methods are annotated with @Traced or @NotTraced, which are ignored when "
+                + "requests are traced by the servlet filter; use serverTracing: jersey to apply them");
+      }
+    }
+  }
+
+  @Override
+  @Nullable
+  public RequestEventListener onRequest(RequestEvent event) {
+    return null;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.http.HttpRequest;
+import brave.sampler.Sampler;
+import brave.sampler.SamplerFunction;
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops sampling new traces while the reporter queue stays above a high-water mark, so that
+ * requests do not pay for recording and encoding spans which would be dropped. Shedding stops once
+ * the queue drains below the low-water mark.
+ *
+ * <p>The load is checked by {@link #check()} on a background thread; samplers wrapped by {@link
+ * #wrap(Sampler)} only read a volatile flag.
+ */
+public final class LoadShedder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadShedder.class);
+
+  private final DoubleSupplier load;
+  private final double highWaterMark;
+  private final double lowWaterMark;
+  private final long sustainNanos;
+  private final Clock clock;
+  private final Meter shed;
+  private volatile boolean shedding;
+
+  /** Tick at which the load went above the high-water mark, only used by {@link #check()}. */
+  private long aboveSince = -1L;
+
+  /**
+   * Constructor
+   *
+   * @param load ratio of the reporter queue in use, between 0.0 and 1.0
+   * @param highWaterMark load above which traces are shed, once it is sustained
+   * @param lowWaterMark load below which traces are sampled again
+   * @param sustain how long the load must stay above the high-water mark
+   * @param unit unit of the sustain duration
+   * @param clock Clock
+   * @param registry Metric Registry
+   * @param prefix Prefix for the metric names
+   */
+  public LoadShedder(
+      final DoubleSupplier load,
+      final double highWaterMark,
+      final double lowWaterMark,
+      final long sustain,
+      final TimeUnit unit,
+      final Clock clock,
+      final MetricRegistry registry,
+      final String prefix) {
+    if (lowWaterMark > highWaterMark) {
+      throw new IllegalArgumentException(
+          "lowWaterMark (" + lowWaterMark + ") > highWaterMark (" + highWaterMark + ")");
+    }
+    this.load = Objects.requireNonNull(load);
+    this.highWaterMark = highWaterMark;
+    this.lowWaterMark = lowWaterMark;
+    this.sustainNanos = unit.toNanos(sustain);
+    this.clock = Objects.requireNonNull(clock);
+    this.shed = registry.meter(name(prefix, "shed", "traces"));
+    registry.gauge(name(prefix, "shedding"), () -> (Gauge<Integer>) () -> shedding ? 1 : 0);
+  }
+
+  /**
+   * @return true if new traces are currently not sampled
+   */
+  public boolean isShedding() {
+    return shedding;
+  }
+
+  /** Check the load and start or stop shedding, from a single background thread. */
+  public void check() {
+    final double current = load.getAsDouble();
+    final long now = clock.getTick();
+
+    if (current <= lowWaterMark) {
+      aboveSince = -1L;
+      if (shedding) {
+        shedding = false;
+        LOGGER.info("Reporter load is down to {}%, sampling traces again", percent(current));
+      }
+    } else if (current < highWaterMark) {
+      // between the marks, keep the current state
+      aboveSince = -1L;
+    } else if (aboveSince < 0L) {
+      aboveSince = now;
+    }
+
+    if (!shedding && aboveSince >= 0L && now - aboveSince >= sustainNanos) {
+      shedding = true;
+      LOGGER.warn("Reporter load is at {}%, shedding new traces", percent(current));
+    }
+  }
+
+  private static long percent(double load) {
+    return Math.round(load * 100);
+  }
+
+  /**
+   * @param sampler sampler of new traces
+   * @return a sampler which does not sample while shedding, and otherwise defers to the given one
+   */
+  public Sampler wrap(final Sampler sampler) {
+    Objects.requireNonNull(sampler);
+    return new Sampler() {
+      @Override
+      public boolean isSampled(long traceId) {
+        if (shedding) {
+          shed.mark();
+          return false;
+        }
+        return sampler.isSampled(traceId);
+      }
+
+      @Override
+      public String toString() {
+        return "LoadSheddingSampler{" + sampler + "}";
+      }
+    };
+  }
+
+  /**
+   * @param sampler sampler of HTTP requests
+   * @return a sampler which does not sample while shedding, and otherwise defers to the given one
+   */
+  public SamplerFunction<HttpRequest> wrapHttpSampler(final SamplerFunction<HttpRequest> sampler) {
+    Objects.requireNonNull(sampler);
+    return new SamplerFunction<HttpRequest>() {
+      @Override
+      @Nullable
+      public Boolean trySample(HttpRequest request) {
+        if (shedding) {
+          shed.mark();
+          return Boolean.FALSE;
+        }
+        return sampler.trySample(request);
+      }
+
+      @Override
+      public String toString() {
+        return "LoadSheddingSampler{" + sampler + "}";
+      }
+    };
+  }
+}
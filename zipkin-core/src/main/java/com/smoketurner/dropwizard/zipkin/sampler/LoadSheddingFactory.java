@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import com.codahale.metrics.Clock;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+import io.dropwizard.validation.ValidationMethod;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration of the shedding of new traces while the reporter queue is saturated.
+ *
+ * @see LoadShedder
+ */
+public class LoadSheddingFactory {
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double highWaterMark = 0.8;
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double lowWaterMark = 0.5;
+
+  @NotNull
+  @MinDuration(value = 0, unit = TimeUnit.MILLISECONDS)
+  private Duration sustain = Duration.seconds(5);
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+  private Duration checkInterval = Duration.seconds(1);
+
+  @JsonProperty
+  public double getHighWaterMark() {
+    return highWaterMark;
+  }
+
+  /**
+   * @param highWaterMark ratio of the reporter queue in use above which new traces are shed
+   */
+  @JsonProperty
+  public void setHighWaterMark(double highWaterMark) {
+    this.highWaterMark = highWaterMark;
+  }
+
+  @JsonProperty
+  public double getLowWaterMark() {
+    return lowWaterMark;
+  }
+
+  /**
+   * @param lowWaterMark ratio of the reporter queue in use below which new traces are sampled again
+   */
+  @JsonProperty
+  public void setLowWaterMark(double lowWaterMark) {
+    this.lowWaterMark = lowWaterMark;
+  }
+
+  @JsonProperty
+  public Duration getSustain() {
+    return sustain;
+  }
+
+  /**
+   * @param sustain how long the queue must stay above the high-water mark before traces are shed
+   */
+  @JsonProperty
+  public void setSustain(Duration sustain) {
+    this.sustain = sustain;
+  }
+
+  @JsonProperty
+  public Duration getCheckInterval() {
+    return checkInterval;
+  }
+
+  /**
+   * @param checkInterval how often to check the reporter queue
+   */
+  @JsonProperty
+  public void setCheckInterval(Duration checkInterval) {
+    this.checkInterval = checkInterval;
+  }
+
+  @ValidationMethod(message = "lowWaterMark must not be greater than highWaterMark")
+  public boolean isLowWaterMarkValid() {
+    return lowWaterMark <= highWaterMark;
+  }
+
+  /**
+   * Build a new {@link LoadShedder} checking the load on a thread managed by the environment.
+   *
+   * @param environment Environment
+   * @param load ratio of the reporter queue in use
+   * @param prefix Prefix for the metric names
+   * @return LoadShedder instance
+   */
+  public LoadShedder build(
+      final Environment environment, final DoubleSupplier load, final String prefix) {
+    final LoadShedder shedder =
+        new LoadShedder(
+            load,
+            highWaterMark,
+            lowWaterMark,
+            sustain.toNanoseconds(),
+            TimeUnit.NANOSECONDS,
+            Clock.defaultClock(),
+            environment.metrics(),
+            prefix);
+    final ScheduledExecutorService executor =
+        environment.lifecycle().scheduledExecutorService("zipkin-load-shedding-%d", true).build();
+    executor.scheduleWithFixedDelay(
+        shedder::check,
+        checkInterval.toMilliseconds(),
+        checkInterval.toMilliseconds(),
+        TimeUnit.MILLISECONDS);
+    return shedder;
+  }
+}
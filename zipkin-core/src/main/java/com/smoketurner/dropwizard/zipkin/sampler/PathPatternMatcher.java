@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.http.HttpRequest;
+import brave.sampler.Matcher;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Matches the path of an HTTP request against a pattern compiled once at startup. The pattern is
+ * split into {@code /}-separated segments where {@code *} matches any single segment and a trailing
+ * {@code /**} matches any remaining segments, so matching is a single scan of the request path
+ * without regular expressions or allocation.
+ */
+public final class PathPatternMatcher implements Matcher<HttpRequest> {
+
+  private static final String ANY_SEGMENT = "*";
+  private static final String ANY_SUFFIX = "**";
+
+  private final String pattern;
+
+  /** literal segments, or {@code null} for a segment matching anything */
+  private final String[] segments;
+
+  private final boolean anySuffix;
+
+  private PathPatternMatcher(String pattern, String[] segments, boolean anySuffix) {
+    this.pattern = pattern;
+    this.segments = segments;
+    this.anySuffix = anySuffix;
+  }
+
+  /**
+   * Compile a path pattern such as {@code /users/*}{@code /orders} or {@code /admin/**}.
+   *
+   * @param pattern path pattern, which must start with {@code /}
+   * @return a matcher for the pattern
+   * @throws IllegalArgumentException if the pattern is invalid
+   */
+  public static PathPatternMatcher compile(final String pattern) {
+    Objects.requireNonNull(pattern, "pattern == null");
+    if (!pattern.startsWith("/")) {
+      throw new IllegalArgumentException("Path pattern must start with '/': " + pattern);
+    }
+
+    String[] segments = pattern.substring(1).split("/", -1);
+    boolean anySuffix = false;
+    if (ANY_SUFFIX.equals(segments[segments.length - 1])) {
+      anySuffix = true;
+      final String[] prefix = new String[segments.length - 1];
+      System.arraycopy(segments, 0, prefix, 0, prefix.length);
+      segments = prefix;
+    }
+    for (String segment : segments) {
+      if (segment.contains(ANY_SUFFIX)) {
+        throw new IllegalArgumentException("'**' is only allowed at the end: " + pattern);
+      }
+      if (segment.contains(ANY_SEGMENT) && !ANY_SEGMENT.equals(segment)) {
+        throw new IllegalArgumentException("'*' must match a whole segment: " + pattern);
+      }
+    }
+    for (int i = 0; i < segments.length; i++) {
+      if (ANY_SEGMENT.equals(segments[i])) {
+        segments[i] = null;
+      }
+    }
+    return new PathPatternMatcher(pattern, segments, anySuffix);
+  }
+
+  @Override
+  public boolean matches(HttpRequest request) {
+    return matchesPath(request.path());
+  }
+
+  boolean matchesPath(@Nullable String path) {
+    if (path == null) {
+      return false;
+    }
+
+    final int length = path.length();
+    int position = 0;
+    for (String segment : segments) {
+      if (position >= length || path.charAt(position) != '/') {
+        return false;
+      }
+      position++;
+      int end = path.indexOf('/', position);
+      if (end < 0) {
+        end = length;
+      }
+      if (segment == null) {
+        if (end == position) {
+          return false;
+        }
+      } else if (segment.length() != end - position
+          || !path.regionMatches(position, segment, 0, segment.length())) {
+        return false;
+      }
+      position = end;
+    }
+
+    // the remainder is either empty, a trailing slash or, with '/**', anything
+    return anySuffix
+        || position == length
+        || (position == length - 1 && path.charAt(position) == '/');
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof PathPatternMatcher)) {
+      return false;
+    }
+    return pattern.equals(((PathPatternMatcher) o).pattern);
+  }
+
+  @Override
+  public int hashCode() {
+    return pattern.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "PathPatternMatcher{" + pattern + "}";
+  }
+}
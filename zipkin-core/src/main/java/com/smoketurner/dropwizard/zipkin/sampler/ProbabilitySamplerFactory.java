@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.sampler.Sampler;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.validation.ValidationMethod;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+
+/**
+ * Samples a fixed percentage of traces, using Brave's {@code CountingSampler}, or its {@code
+ * BoundarySampler} below 1%.
+ */
+@JsonTypeName("probability")
+public class ProbabilitySamplerFactory implements SamplerFactory {
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private float probability = 1.0f;
+
+  @JsonProperty
+  public float getProbability() {
+    return probability;
+  }
+
+  @JsonProperty
+  public void setProbability(float probability) {
+    this.probability = probability;
+  }
+
+  @JsonIgnore
+  @ValidationMethod(message = "probability must be 0.0 or between 0.0001 and 1.0")
+  public boolean isProbabilityValid() {
+    return Samplers.isValidProbability(probability);
+  }
+
+  @Override
+  public Sampler build() {
+    return Samplers.probability(probability);
+  }
+}
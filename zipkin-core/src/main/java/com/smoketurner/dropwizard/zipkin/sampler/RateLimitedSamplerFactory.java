@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import javax.validation.constraints.Min;
+
+/** Samples at most a fixed number of traces per second. */
+@JsonTypeName("rate-limited")
+public class RateLimitedSamplerFactory implements SamplerFactory {
+
+  @Min(0)
+  private int tracesPerSecond = 10;
+
+  @JsonProperty
+  public int getTracesPerSecond() {
+    return tracesPerSecond;
+  }
+
+  @JsonProperty
+  public void setTracesPerSecond(int tracesPerSecond) {
+    this.tracesPerSecond = tracesPerSecond;
+  }
+
+  @Override
+  public Sampler build() {
+    return RateLimitingSampler.create(tracesPerSecond);
+  }
+}
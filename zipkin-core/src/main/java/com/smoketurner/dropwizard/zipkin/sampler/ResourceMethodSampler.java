@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.http.HttpRequest;
+import brave.sampler.Sampler;
+import brave.sampler.SamplerFunction;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.model.Invocable;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.model.ResourceModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples incoming requests according to the {@link Traced} and {@link NotTraced} annotations of
+ * the resource method matching them, falling back to the given sampler for resource methods without
+ * annotations.
+ *
+ * <p>The annotations are resolved once, from the resource model of the application when Jersey
+ * starts, into a table read by the resource method matched by Jersey. Resource methods are only
+ * matched once the request reached Jersey, so this sampler requires the server span to start after
+ * matching, as done by {@link ResourceMethodSamplingApplicationEventListener}.
+ */
+public final class ResourceMethodSampler implements SamplerFunction<HttpRequest> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResourceMethodSampler.class);
+
+  @Nullable private final SamplerFunction<HttpRequest> fallback;
+  private volatile Map<Method, Sampler> samplers = Collections.emptyMap();
+
+  /**
+   * Constructor
+   *
+   * @param fallback sampler of the requests matching no annotated resource method, or null to use
+   *     the sampler of the tracing instance
+   */
+  public ResourceMethodSampler(@Nullable final SamplerFunction<HttpRequest> fallback) {
+    this.fallback = fallback;
+  }
+
+  /**
+   * Resolve the annotations of the resource methods of the given model, from a single thread.
+   *
+   * @param model resource model of the application
+   */
+  public void resolve(final ResourceModel model) {
+    final Map<Method, Sampler> resolved = new HashMap<>(samplers);
+    for (Resource resource : model.getResources()) {
+      resolve(resource, resolved);
+    }
+    LOGGER.debug("Sampling {} resource methods from their annotations", resolved.size());
+    samplers = resolved;
+  }
+
+  private static void resolve(final Resource resource, final Map<Method, Sampler> resolved) {
+    for (ResourceMethod method : resource.getAllMethods()) {
+      final Invocable invocable = method.getInvocable();
+      final Sampler sampler =
+          sampler(
+              invocable.getDefinitionMethod(),
+              invocable.getHandlingMethod(),
+              invocable.getHandler().getHandlerClass(),
+              invocable.getDefinitionMethod().getDeclaringClass());
+      if (sampler != null) {
+        resolved.put(invocable.getDefinitionMethod(), sampler);
+      }
+    }
+    for (Resource child : resource.getChildResources()) {
+      resolve(child, resolved);
+    }
+  }
+
+  /**
+   * The closest annotation wins, methods before classes, {@link NotTraced} before {@link Traced}.
+   */
+  @Nullable
+  private static Sampler sampler(final AnnotatedElement... elements) {
+    for (AnnotatedElement element : elements) {
+      if (element.isAnnotationPresent(NotTraced.class)) {
+        return Sampler.NEVER_SAMPLE;
+      }
+      final Traced traced = element.getAnnotation(Traced.class);
+      if (traced != null) {
+        return Samplers.probability(traced.sampleRate());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return true if no resource method is annotated
+   */
+  public boolean isEmpty() {
+    return samplers.isEmpty();
+  }
+
+  /**
+   * @param method resource method matching a request
+   * @return the sampler of the given method, or null if it is not annotated
+   */
+  @Nullable
+  public Sampler getSampler(@Nullable final ResourceMethod method) {
+    if (method == null) {
+      return null;
+    }
+    return samplers.get(method.getInvocable().getDefinitionMethod());
+  }
+
+  @Override
+  @Nullable
+  public Boolean trySample(final HttpRequest request) {
+    final Object raw = request.unwrap();
+    if (raw instanceof ContainerRequest) {
+      final Sampler sampler =
+          getSampler(((ContainerRequest) raw).getUriInfo().getMatchedResourceMethod());
+      if (sampler != null) {
+        return sampler.isSampled(0L);
+      }
+    }
+    return fallback == null ? null : fallback.trySample(request);
+  }
+
+  @Override
+  public String toString() {
+    return "ResourceMethodSampler{" + fallback + "}";
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.Span;
+import brave.Tracing;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.ExceptionMapper;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Wraps the Brave {@link ApplicationEventListener} so that {@link ResourceMethodSampler} can sample
+ * requests by their resource method.
+ *
+ * <p>Once Jersey started, the annotations of the resource methods are resolved by the sampler. If
+ * any resource method is annotated, the server span of each request is started once Jersey matched
+ * its resource method, so that the sampler can read its annotations. The span of a request matching
+ * no annotated resource method, or no resource method at all, then starts back when the request
+ * reached Jersey, while the span of an annotated one starts at matching, after the pre-matching
+ * filters. Otherwise requests are traced as usual.
+ */
+public class ResourceMethodSamplingApplicationEventListener implements ApplicationEventListener {
+
+  private final ApplicationEventListener delegate;
+  private final ResourceMethodSampler sampler;
+  private final Tracing tracing;
+
+  /**
+   * Constructor
+   *
+   * @param delegate Brave TracingApplicationEventListener
+   * @param sampler sampler of the server spans started by the delegate
+   * @param tracing Tracing instance of the delegate
+   */
+  public ResourceMethodSamplingApplicationEventListener(
+      final ApplicationEventListener delegate,
+      final ResourceMethodSampler sampler,
+      final Tracing tracing) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.sampler = Objects.requireNonNull(sampler);
+    this.tracing = Objects.requireNonNull(tracing);
+  }
+
+  @Override
+  public void onEvent(ApplicationEvent event) {
+    if (event.getType() == ApplicationEvent.Type.INITIALIZATION_APP_FINISHED) {
+      sampler.resolve(event.getResourceModel());
+    }
+    delegate.onEvent(event);
+  }
+
+  @Override
+  @Nullable
+  public RequestEventListener onRequest(RequestEvent event) {
+    if (sampler.isEmpty()) {
+      return delegate.onRequest(event);
+    }
+    return new MatchedRequestEventListener();
+  }
+
+  /** Starts the delegate on the first event after matching, as if the request just started. */
+  final class MatchedRequestEventListener implements RequestEventListener {
+    private final long beginNanos = System.nanoTime();
+    private boolean started;
+    @Nullable private RequestEventListener listener;
+
+    @Override
+    public void onEvent(RequestEvent event) {
+      if (!started) {
+        switch (event.getType()) {
+          case START:
+          case MATCHING_START:
+          case LOCATOR_MATCHED:
+          case SUBRESOURCE_LOCATED:
+            return;
+          default:
+            started = true;
+            listener = delegate.onRequest(new StartEvent(event));
+            if (event.getUriInfo() == null
+                || sampler.getSampler(event.getUriInfo().getMatchedResourceMethod()) == null) {
+              startAtBegin();
+            }
+        }
+      }
+      if (listener != null) {
+        listener.onEvent(event);
+      }
+    }
+
+    /** Moves the start of the server span the delegate put in scope back to the request start. */
+    private void startAtBegin() {
+      final Span span = tracing.tracer().currentSpan();
+      if (span != null && !span.isNoop()) {
+        final long now = tracing.clock(span.context()).currentTimeMicroseconds();
+        span.start(now - TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - beginNanos));
+      }
+    }
+  }
+
+  /** A request event seen as the start of the request. */
+  static final class StartEvent implements RequestEvent {
+    private final RequestEvent delegate;
+
+    StartEvent(RequestEvent delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.START;
+    }
+
+    @Override
+    public ContainerRequest getContainerRequest() {
+      return delegate.getContainerRequest();
+    }
+
+    @Override
+    public ContainerResponse getContainerResponse() {
+      return delegate.getContainerResponse();
+    }
+
+    @Override
+    public Throwable getException() {
+      return delegate.getException();
+    }
+
+    @Override
+    public ExtendedUriInfo getUriInfo() {
+      return delegate.getUriInfo();
+    }
+
+    @Override
+    public ExceptionMapper<?> getExceptionMapper() {
+      return delegate.getExceptionMapper();
+    }
+
+    @Override
+    public Iterable<ContainerRequestFilter> getContainerRequestFilters() {
+      return delegate.getContainerRequestFilters();
+    }
+
+    @Override
+    public Iterable<ContainerResponseFilter> getContainerResponseFilters() {
+      return delegate.getContainerResponseFilters();
+    }
+
+    @Override
+    public boolean isSuccess() {
+      return delegate.isSuccess();
+    }
+
+    @Override
+    public boolean isResponseSuccessfullyMapped() {
+      return delegate.isResponseSuccessfullyMapped();
+    }
+
+    @Override
+    public ExceptionCause getExceptionCause() {
+      return delegate.getExceptionCause();
+    }
+
+    @Override
+    public boolean isResponseWritten() {
+      return delegate.isResponseWritten();
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.http.HttpRequest;
+import brave.sampler.Sampler;
+import brave.sampler.SamplerFunction;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import io.dropwizard.jackson.Discoverable;
+import java.util.Optional;
+
+/** A factory for building the {@link Sampler} deciding which traces are recorded. */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+public interface SamplerFactory extends Discoverable {
+
+  /**
+   * Build the sampler used for new traces.
+   *
+   * @return a {@link Sampler} instance
+   */
+  Sampler build();
+
+  /**
+   * Build the sampler used for new traces, registering its metrics if it has any.
+   *
+   * @param metrics Metric Registry
+   * @return a {@link Sampler} instance
+   */
+  default Sampler build(MetricRegistry metrics) {
+    return build();
+  }
+
+  /**
+   * Build the sampler used for incoming HTTP requests, which can defer to {@link #build()} by
+   * returning {@code null} from {@link SamplerFunction#trySample(Object)}.
+   *
+   * @return a {@link SamplerFunction} instance, or empty to use the default HTTP server sampler
+   */
+  default Optional<SamplerFunction<HttpRequest>> buildServerSampler() {
+    return Optional.empty();
+  }
+}
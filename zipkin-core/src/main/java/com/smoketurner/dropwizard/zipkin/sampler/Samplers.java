@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.sampler.BoundarySampler;
+import brave.sampler.Sampler;
+
+/** Builds samplers from a probability of sampling a trace. */
+public final class Samplers {
+
+  /** Lowest probability other than 0.0 that a sampler can be built for. */
+  public static final float MIN_PROBABILITY = 0.0001f;
+
+  private Samplers() {}
+
+  /**
+   * Brave's {@code CountingSampler} only accepts probabilities of at least 0.01, so lower ones are
+   * sampled from the trace ID by {@link BoundarySampler}, down to {@link #MIN_PROBABILITY}.
+   *
+   * @param probability probability of sampling a trace, between 0.0 and 1.0
+   * @return a sampler
+   * @throws IllegalArgumentException if the probability is neither 0.0 nor within {@link
+   *     #MIN_PROBABILITY} and 1.0
+   */
+  public static Sampler probability(final float probability) {
+    if (!isValidProbability(probability)) {
+      throw new IllegalArgumentException(
+          "probability should be 0.0 or between " + MIN_PROBABILITY + " and 1.0: " + probability);
+    }
+    if (probability > 0.0f && probability < 0.01f) {
+      return BoundarySampler.create(probability);
+    }
+    return Sampler.create(probability);
+  }
+
+  /**
+   * @param probability probability of sampling a trace
+   * @return true if {@link #probability(float)} accepts the given probability
+   */
+  public static boolean isValidProbability(final float probability) {
+    return probability == 0.0f || (probability >= MIN_PROBABILITY && probability <= 1.0f);
+  }
+}
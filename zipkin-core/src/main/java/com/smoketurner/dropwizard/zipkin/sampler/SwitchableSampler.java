@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import brave.sampler.Sampler;
+import java.util.Objects;
+
+/**
+ * A {@link Sampler} delegating to a sampler which can be swapped at runtime, for example from an
+ * admin task. Sampling a trace only costs a volatile read of the current sampler.
+ *
+ * <p>As the sampler of the tracer, it only decides the traces which the HTTP sampling rules and the
+ * {@code @Traced} and {@code @NotTraced} annotations leave undecided, so these keep applying while
+ * it is swapped.
+ */
+public final class SwitchableSampler extends Sampler {
+
+  private final Sampler configured;
+  private volatile Sampler current;
+
+  /**
+   * Constructor
+   *
+   * @param configured sampler built from the configuration, used until it is swapped
+   */
+  public SwitchableSampler(final Sampler configured) {
+    this.configured = Objects.requireNonNull(configured);
+    this.current = configured;
+  }
+
+  @Override
+  public boolean isSampled(long traceId) {
+    return current.isSampled(traceId);
+  }
+
+  /**
+   * @return the sampler currently deciding which traces are recorded
+   */
+  public Sampler getCurrent() {
+    return current;
+  }
+
+  /**
+   * Swap the sampler deciding which traces are recorded.
+   *
+   * @param sampler the new sampler
+   * @return the previous sampler
+   */
+  public Sampler swap(final Sampler sampler) {
+    final Sampler previous = current;
+    current = Objects.requireNonNull(sampler);
+    return previous;
+  }
+
+  /**
+   * Restore the sampler built from the configuration.
+   *
+   * @return the previous sampler
+   */
+  public Sampler reset() {
+    return swap(configured);
+  }
+
+  /**
+   * @return true if the sampler built from the configuration has been swapped
+   */
+  public boolean isSwapped() {
+    return current != configured;
+  }
+
+  @Override
+  public String toString() {
+    return "SwitchableSampler{" + current + "}";
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.ClosedSenderException;
+import zipkin2.reporter.ReporterMetrics;
+import zipkin2.reporter.Sender;
+
+/**
+ * A {@link Sender} which hands each message to the asynchronous {@link Call#enqueue(Callback)} of
+ * its delegate, so the {@code AsyncReporter} flush thread is not blocked for the round-trip to the
+ * collector. At most {@code maxInFlight} messages are sent concurrently; once the limit is reached
+ * the flush thread waits, and spans back up into the reporter queue.
+ *
+ * <p>As the reporter only sees the message being handed over, failed messages are recorded by this
+ * sender in the reporter metrics. The duration of each send is recorded in the {@code send.latency}
+ * timer. Enqueued calls share the same limit and timer, and report failures to their callback.
+ */
+public class AsyncSender extends Sender {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSender.class);
+
+  private final Sender delegate;
+  private final int maxInFlight;
+  private final Semaphore inFlight;
+  private final ReporterMetrics metrics;
+  private final Timer latency;
+  private final long closeTimeoutNanos;
+
+  private volatile boolean closed;
+
+  /**
+   * Constructor
+   *
+   * @param delegate Sender supporting asynchronous calls
+   * @param maxInFlight maximum number of messages being sent at the same time
+   * @param closeTimeoutNanos how long to wait for messages being sent on close
+   * @param metrics Metrics of the reporter using this sender
+   * @param registry Metric Registry
+   * @param prefix Prefix for the sender metric names
+   */
+  public AsyncSender(
+      final Sender delegate,
+      final int maxInFlight,
+      final long closeTimeoutNanos,
+      final ReporterMetrics metrics,
+      final MetricRegistry registry,
+      final String prefix) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight < 1: " + maxInFlight);
+    }
+    this.delegate = Objects.requireNonNull(delegate);
+    this.maxInFlight = maxInFlight;
+    this.inFlight = new Semaphore(maxInFlight);
+    this.closeTimeoutNanos = closeTimeoutNanos;
+    this.metrics = Objects.requireNonNull(metrics);
+    this.latency = registry.timer(name(prefix, "send", "latency"));
+    registry.gauge(name(prefix, "send", "in-flight"), () -> (Gauge<Integer>) this::getInFlight);
+  }
+
+  /**
+   * @return the number of messages currently being sent
+   */
+  public int getInFlight() {
+    return maxInFlight - inFlight.availablePermits();
+  }
+
+  @Override
+  public Encoding encoding() {
+    return delegate.encoding();
+  }
+
+  @Override
+  public int messageMaxBytes() {
+    return delegate.messageMaxBytes();
+  }
+
+  @Override
+  public int messageSizeInBytes(List<byte[]> encodedSpans) {
+    return delegate.messageSizeInBytes(encodedSpans);
+  }
+
+  @Override
+  public int messageSizeInBytes(int encodedSizeInBytes) {
+    return delegate.messageSizeInBytes(encodedSizeInBytes);
+  }
+
+  @Override
+  public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+    if (closed) {
+      throw new ClosedSenderException();
+    }
+    return new SendCall(encodedSpans);
+  }
+
+  @Override
+  public CheckResult check() {
+    return delegate.check();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (!inFlight.tryAcquire(maxInFlight, closeTimeoutNanos, TimeUnit.NANOSECONDS)) {
+        LOGGER.warn("Timed out waiting for {} in-flight messages to be sent", getInFlight());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    delegate.close();
+  }
+
+  @Override
+  public String toString() {
+    return "AsyncSender{" + delegate + "}";
+  }
+
+  final class SendCall extends Call.Base<Void> {
+    private final List<byte[]> encodedSpans;
+
+    SendCall(List<byte[]> encodedSpans) {
+      this.encodedSpans = encodedSpans;
+    }
+
+    /** Returns once the message has been handed to the delegate, not once it has been sent. */
+    @Override
+    protected Void doExecute() throws IOException {
+      acquire();
+      send(
+          new Callback<Void>() {
+            @Override
+            public void onSuccess(Void value) {}
+
+            @Override
+            public void onError(Throwable t) {
+              metrics.incrementMessagesDropped(t);
+              metrics.incrementSpansDropped(encodedSpans.size());
+            }
+          });
+      return null;
+    }
+
+    /** Waits for a permit like {@link #doExecute()}, then completes the callback once sent. */
+    @Override
+    protected void doEnqueue(Callback<Void> callback) {
+      try {
+        acquire();
+      } catch (IOException e) {
+        callback.onError(e);
+        return;
+      }
+      send(callback);
+    }
+
+    private void acquire() throws InterruptedIOException {
+      try {
+        inFlight.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting to send spans");
+      }
+    }
+
+    /** Sends the message holding an acquired permit, which is released once it completes. */
+    private void send(final Callback<Void> callback) {
+      final Timer.Context context = latency.time();
+      try {
+        delegate
+            .sendSpans(encodedSpans)
+            .enqueue(
+                new Callback<Void>() {
+                  @Override
+                  public void onSuccess(Void value) {
+                    context.stop();
+                    inFlight.release();
+                    callback.onSuccess(value);
+                  }
+
+                  @Override
+                  public void onError(Throwable t) {
+                    context.stop();
+                    inFlight.release();
+                    callback.onError(t);
+                  }
+                });
+      } catch (RuntimeException | Error e) {
+        inFlight.release();
+        throw e;
+      }
+    }
+
+    @Override
+    public Call<Void> clone() {
+      return new SendCall(encodedSpans);
+    }
+  }
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.ClosedSenderException;
+import zipkin2.reporter.Sender;
+
+/**
+ * A {@link Sender} appending messages to local files, for a log shipping agent to pick them up.
+ * JSON spans are written one per line (NDJSON), and PROTO3 spans are concatenated into a {@code
+ * ListOfSpans} message.
+ *
+ * <p>Spans are appended to a {@code .part} file, which is renamed once it reaches {@code
+ * maxFileBytes} or is older than {@code rollInterval}, so that only complete files match the {@code
+ * <prefix>-*.ndjson[.gz]} or {@code <prefix>-*.pb[.gz]} pattern. The oldest complete files are then
+ * deleted beyond {@code maxFiles} files or {@code maxTotalBytes} bytes.
+ *
+ * <p>Every file operation runs on a single writer thread: the thread sending a message waits for it
+ * to be appended to the buffer of the current file. The buffer is flushed to the operating system
+ * when the file is rolled, when the sender is closed, and otherwise at least once a second, so that
+ * a crash of the process loses at most about a second of spans. The bytes written to the files and
+ * the files rolled and deleted are recorded in the {@code file.written.bytes}, {@code file.rolled}
+ * and {@code file.deleted} meters.
+ */
+public class FileSender extends Sender {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileSender.class);
+  private static final DateTimeFormatter TIMESTAMP =
+      DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss.SSS'Z'").withZone(ZoneOffset.UTC);
+  private static final String PART = ".part";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path directory;
+  private final String prefix;
+  private final String extension;
+  private final Encoding encoding;
+  private final int messageMaxBytes;
+  private final long maxFileBytes;
+  private final long rollIntervalMillis;
+  private final boolean compress;
+  private final int maxFiles;
+  private final long maxTotalBytes;
+  private final Clock clock;
+  private final ScheduledExecutorService writer;
+  private final Meter written;
+  private final Meter rolled;
+  private final Meter deleted;
+
+  private volatile boolean closed;
+  @Nullable private volatile IOException lastError;
+
+  // only accessed by the writer thread
+  @Nullable private CountingOutputStream file;
+  @Nullable private OutputStream out;
+  @Nullable private Path current;
+  private long openedAt;
+  private long reported;
+  private boolean dirty;
+  private long sequence;
+
+  /**
+   * Constructor
+   *
+   * @param directory directory of the span files, which must not be shared with another sender
+   * @param prefix prefix of the span file names
+   * @param encoding encoding of the spans, JSON or PROTO3
+   * @param messageMaxBytes maximum size of a message
+   * @param maxFileBytes size beyond which a file is rolled
+   * @param rollInterval age beyond which a file is rolled
+   * @param unit unit of the roll interval
+   * @param compress whether to gzip the files
+   * @param maxFiles maximum number of complete files to keep
+   * @param maxTotalBytes maximum size of the complete files to keep, or 0 for no limit
+   * @param clock Clock
+   * @param registry Metric Registry
+   * @param metricPrefix Prefix for the sender metric names
+   * @throws IOException if the directory cannot be created
+   */
+  public FileSender(
+      final Path directory,
+      final String prefix,
+      final Encoding encoding,
+      final int messageMaxBytes,
+      final long maxFileBytes,
+      final long rollInterval,
+      final TimeUnit unit,
+      final boolean compress,
+      final int maxFiles,
+      final long maxTotalBytes,
+      final Clock clock,
+      final MetricRegistry registry,
+      final String metricPrefix)
+      throws IOException {
+    if (encoding != Encoding.JSON && encoding != Encoding.PROTO3) {
+      throw new IllegalArgumentException("Span files support JSON or PROTO3 encoding");
+    }
+    this.directory = Files.createDirectories(directory);
+    this.prefix = Objects.requireNonNull(prefix);
+    this.encoding = encoding;
+    this.extension = (encoding == Encoding.JSON ? ".ndjson" : ".pb") + (compress ? ".gz" : "");
+    this.messageMaxBytes = messageMaxBytes;
+    this.maxFileBytes = maxFileBytes;
+    this.rollIntervalMillis = unit.toMillis(rollInterval);
+    this.compress = compress;
+    this.maxFiles = maxFiles;
+    this.maxTotalBytes = maxTotalBytes;
+    this.clock = Objects.requireNonNull(clock);
+    this.written = registry.meter(name(metricPrefix, "file", "written", "bytes"));
+    this.rolled = registry.meter(name(metricPrefix, "file", "rolled"));
+    this.deleted = registry.meter(name(metricPrefix, "file", "deleted"));
+
+    // complete the files left by a previous run, so that they are shipped
+    try (Stream<Path> parts = Files.list(this.directory)) {
+      for (Path part : parts.filter(this::isPart).collect(Collectors.toList())) {
+        LOGGER.info("Completing span file {} left by a previous run", part);
+        complete(part);
+      }
+    }
+
+    this.writer =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              final Thread thread = new Thread(r, "zipkin-file-writer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    final long checkMillis = Math.max(1L, Math.min(rollIntervalMillis, 1000L));
+    writer.scheduleWithFixedDelay(
+        this::rollOrFlush, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Encoding encoding() {
+    return encoding;
+  }
+
+  @Override
+  public int messageMaxBytes() {
+    return messageMaxBytes;
+  }
+
+  @Override
+  public int messageSizeInBytes(List<byte[]> encodedSpans) {
+    if (encoding == Encoding.PROTO3) {
+      return encoding.listSizeInBytes(encodedSpans);
+    }
+    // one line per span instead of a JSON array
+    int size = 0;
+    for (byte[] span : encodedSpans) {
+      size += span.length + 1;
+    }
+    return size;
+  }
+
+  @Override
+  public int messageSizeInBytes(int encodedSizeInBytes) {
+    if (encoding == Encoding.PROTO3) {
+      return encoding.listSizeInBytes(encodedSizeInBytes);
+    }
+    return encodedSizeInBytes + 1;
+  }
+
+  @Override
+  public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+    if (closed) {
+      throw new ClosedSenderException();
+    }
+    return new SendCall(encodedSpans);
+  }
+
+  @Override
+  public CheckResult check() {
+    if (closed) {
+      return CheckResult.failed(new ClosedSenderException());
+    }
+    final IOException error = lastError;
+    if (error != null) {
+      return CheckResult.failed(error);
+    }
+    if (!Files.isWritable(directory)) {
+      return CheckResult.failed(new IOException("Directory " + directory + " is not writable"));
+    }
+    return CheckResult.OK;
+  }
+
+  /**
+   * @return the file spans are currently appended to, or null if none is open
+   */
+  @Nullable
+  Path getCurrentFile() throws IOException {
+    return onWriter(() -> current);
+  }
+
+  /**
+   * Roll the current file if it is older than the roll interval, or flush it otherwise, on the
+   * writer thread.
+   */
+  void maintain() throws IOException {
+    onWriter(
+        () -> {
+          rollOrFlush();
+          return null;
+        });
+  }
+
+  private <T> T onWriter(final Callable<T> task) throws IOException {
+    try {
+      return writer.submit(task).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing spans");
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private void append(final List<byte[]> encodedSpans) throws IOException {
+    try {
+      if (out != null && file != null && file.count >= maxFileBytes) {
+        roll();
+      }
+      if (out == null) {
+        open();
+      }
+      for (byte[] span : encodedSpans) {
+        out.write(span);
+        if (encoding == Encoding.JSON) {
+          out.write('\n');
+        }
+      }
+      dirty = true;
+      markWritten();
+      lastError = null;
+    } catch (IOException e) {
+      lastError = e;
+      closeQuietly();
+      throw e;
+    }
+  }
+
+  private void open() throws IOException {
+    openedAt = clock.getTime();
+    final String name =
+        prefix + "-" + TIMESTAMP.format(Instant.ofEpochMilli(openedAt)) + "-" + sequence++;
+    current = directory.resolve(name + extension + PART);
+    final OutputStream stream = Files.newOutputStream(current);
+    if (compress) {
+      // the deflater buffers its input until flushed, so the count lags behind by less than its
+      // window; sync flushing makes each flush write out the spans compressed so far
+      file = new CountingOutputStream(stream);
+      out = new GZIPOutputStream(file, BUFFER_SIZE, true);
+    } else {
+      // count above the buffer, so that the size includes the buffered bytes
+      file = new CountingOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+      out = file;
+    }
+    reported = 0L;
+    dirty = false;
+  }
+
+  private void rollOrFlush() {
+    if (out == null) {
+      return;
+    }
+    if (clock.getTime() - openedAt >= rollIntervalMillis) {
+      try {
+        roll();
+      } catch (IOException e) {
+        lastError = e;
+        LOGGER.warn("Unable to roll span file {}", current, e);
+      }
+    } else if (dirty) {
+      try {
+        out.flush();
+        dirty = false;
+        markWritten();
+      } catch (IOException e) {
+        lastError = e;
+        LOGGER.warn("Unable to flush span file {}", current, e);
+        closeQuietly();
+      }
+    }
+  }
+
+  /** Record the bytes counted since the last call in the written meter. */
+  private void markWritten() {
+    written.mark(file.count - reported);
+    reported = file.count;
+  }
+
+  private void roll() throws IOException {
+    final Path part = current;
+    try {
+      out.close();
+      markWritten();
+    } finally {
+      out = null;
+      file = null;
+      current = null;
+    }
+    complete(part);
+    rolled.mark();
+    deleteOldFiles();
+  }
+
+  /** Give up on the current file after a failed write, keeping what was written to it. */
+  private void closeQuietly() {
+    if (out == null) {
+      return;
+    }
+    try {
+      roll();
+    } catch (IOException e) {
+      LOGGER.debug("Unable to roll span file after a failed write", e);
+    }
+  }
+
+  private boolean isPart(final Path path) {
+    final String name = path.getFileName().toString();
+    return name.startsWith(prefix + "-") && name.endsWith(PART);
+  }
+
+  private boolean isComplete(final Path path) {
+    final String name = path.getFileName().toString();
+    return name.startsWith(prefix + "-") && name.endsWith(extension);
+  }
+
+  private static void complete(final Path part) throws IOException {
+    final String name = part.getFileName().toString();
+    Files.move(
+        part,
+        part.resolveSibling(name.substring(0, name.length() - PART.length())),
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Delete the oldest complete files beyond the retention limits. */
+  private void deleteOldFiles() throws IOException {
+    final List<Path> files;
+    try (Stream<Path> paths = Files.list(directory)) {
+      files = paths.filter(this::isComplete).collect(Collectors.toCollection(ArrayList::new));
+    }
+    // file names start with their creation time, so they sort from the oldest
+    Collections.sort(files);
+
+    long totalBytes = 0L;
+    for (Path path : files) {
+      totalBytes += size(path);
+    }
+    for (int i = 0; i < files.size(); i++) {
+      final int remaining = files.size() - i;
+      if (remaining <= maxFiles && (maxTotalBytes <= 0L || totalBytes <= maxTotalBytes)) {
+        break;
+      }
+      final Path path = files.get(i);
+      totalBytes -= size(path);
+      Files.deleteIfExists(path);
+      deleted.mark();
+      LOGGER.debug("Deleted span file {}", path);
+    }
+  }
+
+  private static long size(final Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      // already deleted, for example by the log shipping agent
+      return 0L;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      onWriter(
+          () -> {
+            if (out != null) {
+              roll();
+            }
+            return null;
+          });
+    } finally {
+      writer.shutdownNow();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "FileSender{" + directory + "}";
+  }
+
+  final class SendCall extends Call.Base<Void> {
+    private final List<byte[]> encodedSpans;
+
+    SendCall(List<byte[]> encodedSpans) {
+      this.encodedSpans = encodedSpans;
+    }
+
+    @Override
+    protected Void doExecute() throws IOException {
+      return onWriter(
+          () -> {
+            append(encodedSpans);
+            return null;
+          });
+    }
+
+    @Override
+    protected void doEnqueue(Callback<Void> callback) {
+      try {
+        doExecute();
+        callback.onSuccess(null);
+      } catch (IOException | RuntimeException e) {
+        callback.onError(e);
+      }
+    }
+
+    @Override
+    public Call<Void> clone() {
+      return new SendCall(encodedSpans);
+    }
+  }
+
+  /** Counts the bytes written to a file, after compression. */
+  static final class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.DataSizeUnit;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MaxDataSize;
+import io.dropwizard.validation.MinDataSize;
+import io.dropwizard.validation.MinDuration;
+import io.dropwizard.validation.ValidationMethod;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import zipkin2.reporter.Sender;
+
+/**
+ * Configuration of the disk-backed queue used to keep the messages which could not be sent to the
+ * collector, until it becomes reachable again.
+ *
+ * @see SpillingSender
+ */
+public class SpillFactory {
+
+  @NotEmpty private String directory = "";
+
+  @NotNull
+  @MinDataSize(1)
+  private DataSize maxSize = DataSize.mebibytes(256);
+
+  @NotNull
+  @MinDataSize(value = 1, unit = DataSizeUnit.KIBIBYTES)
+  @MaxDataSize(value = Integer.MAX_VALUE, unit = DataSizeUnit.BYTES)
+  private DataSize segmentSize = DataSize.mebibytes(16);
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+  private Duration checkInterval = Duration.seconds(5);
+
+  @JsonProperty
+  public String getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @param directory directory of the spill segment files, which must not be shared with another
+   *     reporter
+   */
+  @JsonProperty
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  @JsonProperty
+  public DataSize getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @param maxSize maximum size of the spill segment files, beyond which the oldest segment is
+   *     evicted
+   */
+  @JsonProperty
+  public void setMaxSize(DataSize maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  @JsonProperty
+  public DataSize getSegmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * @param segmentSize size of each memory-mapped segment file, which must hold the largest message
+   */
+  @JsonProperty
+  public void setSegmentSize(DataSize segmentSize) {
+    this.segmentSize = segmentSize;
+  }
+
+  @JsonProperty
+  public Duration getCheckInterval() {
+    return checkInterval;
+  }
+
+  /**
+   * @param checkInterval how often to check whether the collector has recovered
+   */
+  @JsonProperty
+  public void setCheckInterval(Duration checkInterval) {
+    this.checkInterval = checkInterval;
+  }
+
+  @ValidationMethod(message = "segmentSize must not be larger than maxSize")
+  public boolean isSegmentSizeValid() {
+    return segmentSize == null || maxSize == null || segmentSize.toBytes() <= maxSize.toBytes();
+  }
+
+  /**
+   * Build a new {@link SpillingSender} spilling the messages of the given sender.
+   *
+   * @param delegate Sender of the reporter
+   * @param executor Executor running the replay task
+   * @param registry Metric Registry
+   * @param prefix Prefix for the sender metric names
+   * @return SpillingSender instance
+   * @throws IOException if the spill directory cannot be created or read
+   */
+  public SpillingSender build(
+      final Sender delegate,
+      final ScheduledExecutorService executor,
+      final MetricRegistry registry,
+      final String prefix)
+      throws IOException {
+    final SpillQueue queue =
+        new SpillQueue(
+            Paths.get(directory), maxSize.toBytes(), Math.toIntExact(segmentSize.toBytes()));
+    return new SpillingSender(
+        delegate, queue, executor, checkInterval.toNanoseconds(), registry, prefix);
+  }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * A FIFO queue of encoded span messages stored in memory-mapped segment files of a fixed size. When
+ * the queue reaches its maximum number of segments, the oldest segment is evicted to make room for
+ * new messages.
+ *
+ * <p>Each segment starts with a header holding the position of its next unsent record, followed by
+ * the records. Each message is stored as a record made of its length, its number of spans and the
+ * length and bytes of each span. Segments are zero-filled when created, so a zero length marks the
+ * end of the records and the queue can be recovered from the segment files after a restart, without
+ * replaying the messages which were already sent. Segments recovered beyond the maximum number of
+ * segments, for example after the maximum size was lowered, are evicted from the oldest.
+ *
+ * <p>Segments are unmapped as soon as they are closed or deleted, so the disk space and address
+ * space of the queue are bounded by its maximum size rather than released by the garbage collector.
+ */
+public class SpillQueue implements Closeable {
+
+  private static final String PREFIX = "spans-";
+  private static final String SUFFIX = ".spill";
+
+  /** Size of the segment header, which holds the read position of the segment. */
+  static final int HEADER_SIZE = 8;
+
+  @Nullable private static final MethodHandle UNMAPPER = findUnmapper();
+
+  private final Path directory;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final Deque<Segment> segments = new ArrayDeque<>();
+
+  private long nextSequence;
+  private long pendingBytes;
+  private long evictedOnRecovery;
+
+  @Nullable private Segment peekedSegment;
+  private int peekedPosition;
+
+  /**
+   * Constructor
+   *
+   * @param directory directory of the segment files, which is created if needed
+   * @param maxBytes maximum size of all the segment files
+   * @param segmentSize size of each segment file, including its header
+   * @throws IOException if the existing segments cannot be read
+   */
+  public SpillQueue(final Path directory, final long maxBytes, final int segmentSize)
+      throws IOException {
+    if (segmentSize < 16) {
+      throw new IllegalArgumentException("segmentSize < 16: " + segmentSize);
+    }
+    this.directory = Objects.requireNonNull(directory);
+    this.segmentSize = segmentSize;
+    this.maxSegments = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / segmentSize));
+
+    Files.createDirectories(directory);
+    recover();
+  }
+
+  private void recover() throws IOException {
+    final List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+      stream.forEach(files::add);
+    }
+    Collections.sort(files);
+
+    for (Path file : files) {
+      final String name = file.getFileName().toString();
+      final long sequence =
+          Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+      final Segment segment = Segment.open(file, sequence, segmentSize);
+      segments.addLast(segment);
+      pendingBytes += segment.pendingBytes();
+      nextSequence = sequence + 1;
+    }
+
+    while (segments.size() > maxSegments) {
+      final Segment oldest = segments.removeFirst();
+      evictedOnRecovery += oldest.pendingBytes();
+      pendingBytes -= oldest.pendingBytes();
+      oldest.delete();
+    }
+  }
+
+  /**
+   * Append a message to the queue, evicting the oldest segment if the queue is full.
+   *
+   * @param encodedSpans encoded spans of the message
+   * @return the number of message bytes evicted to make room, or -1 if the message is larger than a
+   *     segment
+   * @throws IOException if a new segment cannot be created
+   */
+  public synchronized long append(final List<byte[]> encodedSpans) throws IOException {
+    final int recordSize = recordSize(encodedSpans);
+    if (recordSize > segmentSize - HEADER_SIZE) {
+      return -1L;
+    }
+
+    long evicted = 0L;
+    Segment tail = segments.peekLast();
+    if (tail == null || !tail.hasRoomFor(recordSize)) {
+      if (segments.size() >= maxSegments) {
+        final Segment oldest = segments.removeFirst();
+        evicted = oldest.pendingBytes();
+        pendingBytes -= evicted;
+        oldest.delete();
+      }
+      tail = Segment.create(segmentFile(nextSequence), nextSequence, segmentSize);
+      nextSequence++;
+      segments.addLast(tail);
+    }
+
+    tail.write(encodedSpans, recordSize);
+    pendingBytes += recordSize;
+    return evicted;
+  }
+
+  /**
+   * @return the oldest message in the queue, or null if the queue is empty
+   */
+  @Nullable
+  public synchronized List<byte[]> peek() {
+    final Segment head = head();
+    if (head == null) {
+      peekedSegment = null;
+      return null;
+    }
+    peekedSegment = head;
+    peekedPosition = head.readPosition;
+    return head.read();
+  }
+
+  /**
+   * Remove the message returned by the last call to {@link #peek()}, once it has been sent. Nothing
+   * is removed if that message has been evicted in the meantime.
+   *
+   * @return the size of the removed record in bytes
+   */
+  public synchronized int remove() {
+    final Segment head = segments.peekFirst();
+    if (head == null || head != peekedSegment || head.readPosition != peekedPosition) {
+      return 0;
+    }
+    peekedSegment = null;
+    final int removed = head.skip();
+    pendingBytes -= removed;
+    if (head.hasPending()) {
+      head.commitReadPosition();
+    } else {
+      // a replayed segment is deleted, so it is not replayed again after a restart
+      segments.removeFirst().deleteQuietly();
+    }
+    return removed;
+  }
+
+  /**
+   * @return the size of the messages evicted from the segments recovered beyond the maximum size of
+   *     the queue, in bytes
+   */
+  public synchronized long getEvictedOnRecovery() {
+    return evictedOnRecovery;
+  }
+
+  /**
+   * @return the size of the messages waiting in the queue, in bytes
+   */
+  public synchronized long getPendingBytes() {
+    return pendingBytes;
+  }
+
+  public synchronized boolean isEmpty() {
+    return pendingBytes == 0L;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    for (Segment segment : segments) {
+      segment.close();
+    }
+    segments.clear();
+  }
+
+  @Nullable
+  private Segment head() {
+    // skip over empty segments recovered after a restart
+    Segment head = segments.peekFirst();
+    while (head != null && !head.hasPending()) {
+      segments.removeFirst().deleteQuietly();
+      head = segments.peekFirst();
+    }
+    return head;
+  }
+
+  private Path segmentFile(long sequence) {
+    return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+  }
+
+  /**
+   * Release the mapping of the given buffer without waiting for it to be garbage collected. The
+   * buffer must not be used afterwards.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    final MethodHandle unmapper = UNMAPPER;
+    if (unmapper == null) {
+      return;
+    }
+    try {
+      unmapper.invoke(buffer);
+    } catch (Throwable ignored) {
+      // the mapping is released when the buffer is garbage collected
+    }
+  }
+
+  @Nullable
+  private static MethodHandle findUnmapper() {
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      // Java 9 and later
+      final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      final Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return lookup
+          .findVirtual(
+              unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+          .bindTo(field.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // fall back to the cleaner of Java 8 buffers
+    }
+    try {
+      final Class<?> directBuffer = Class.forName("sun.nio.ch.DirectBuffer");
+      final Method cleanerMethod = directBuffer.getMethod("cleaner");
+      final Method cleanMethod = cleanerMethod.getReturnType().getMethod("clean");
+      final MethodHandle cleaner =
+          lookup
+              .unreflect(cleanerMethod)
+              .asType(MethodType.methodType(Object.class, ByteBuffer.class));
+      final MethodHandle clean =
+          lookup.unreflect(cleanMethod).asType(MethodType.methodType(void.class, Object.class));
+      return MethodHandles.filterReturnValue(cleaner, clean);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  static int recordSize(List<byte[]> encodedSpans) {
+    long size = 8L; // record length and span count
+    for (byte[] span : encodedSpans) {
+      size += 4L + span.length;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, size);
+  }
+
+  static final class Segment {
+    final Path path;
+    final long sequence;
+    final FileChannel channel;
+    final MappedByteBuffer buffer;
+    int readPosition;
+    int writePosition;
+
+    private Segment(Path path, long sequence, FileChannel channel, MappedByteBuffer buffer) {
+      this.path = path;
+      this.sequence = sequence;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    static Segment create(Path path, long sequence, int size) throws IOException {
+      final FileChannel channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      final Segment segment =
+          new Segment(
+              path, sequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+      segment.readPosition = HEADER_SIZE;
+      segment.writePosition = HEADER_SIZE;
+      segment.commitReadPosition();
+      return segment;
+    }
+
+    static Segment open(Path path, long sequence, int size) throws IOException {
+      final FileChannel channel =
+          FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      final Segment segment =
+          new Segment(
+              path, sequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+      segment.scan();
+      return segment;
+    }
+
+    /** Find the end of the records written before a restart, and the first unsent record. */
+    private void scan() {
+      int position = HEADER_SIZE;
+      while (position + 4 <= buffer.capacity()) {
+        final int length = buffer.getInt(position);
+        if (length <= 0 || position + 4 + length > buffer.capacity()) {
+          break;
+        }
+        position += 4 + length;
+      }
+      writePosition = position;
+
+      final int committed = buffer.getInt(0);
+      readPosition = committed < HEADER_SIZE || committed > writePosition ? HEADER_SIZE : committed;
+    }
+
+    boolean hasRoomFor(int recordSize) {
+      return writePosition + recordSize <= buffer.capacity();
+    }
+
+    boolean hasPending() {
+      return readPosition < writePosition;
+    }
+
+    long pendingBytes() {
+      return (long) writePosition - readPosition;
+    }
+
+    void write(List<byte[]> encodedSpans, int recordSize) {
+      // relative bulk puts on a duplicate, leaving the position of the shared buffer untouched
+      final ByteBuffer record = buffer.duplicate();
+      record.position(writePosition + 4);
+      record.putInt(encodedSpans.size());
+      for (byte[] span : encodedSpans) {
+        record.putInt(span.length);
+        record.put(span);
+      }
+      // write the length last, so a partially written record reads as the end of the segment
+      buffer.putInt(writePosition, recordSize - 4);
+      writePosition += recordSize;
+    }
+
+    List<byte[]> read() {
+      final ByteBuffer record = buffer.duplicate();
+      record.position(readPosition + 4);
+      final int count = record.getInt();
+      final List<byte[]> encodedSpans = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        final byte[] span = new byte[record.getInt()];
+        record.get(span);
+        encodedSpans.add(span);
+      }
+      return encodedSpans;
+    }
+
+    int skip() {
+      final int recordSize = 4 + buffer.getInt(readPosition);
+      readPosition += recordSize;
+      return recordSize;
+    }
+
+    /** Store the read position in the header, so sent records are not replayed after a restart. */
+    void commitReadPosition() {
+      buffer.putInt(0, readPosition);
+    }
+
+    void close() throws IOException {
+      buffer.force();
+      try {
+        channel.close();
+      } finally {
+        unmap(buffer);
+      }
+    }
+
+    void delete() throws IOException {
+      try {
+        channel.close();
+      } finally {
+        unmap(buffer);
+      }
+      Files.deleteIfExists(path);
+    }
+
+    void deleteQuietly() {
+      try {
+        delete();
+      } catch (IOException ignored) {
+        // the file is recreated or recovered on the next start
+      }
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.ClosedSenderException;
+import zipkin2.reporter.Sender;
+
+/**
+ * A {@link Sender} which appends messages to a {@link SpillQueue} on disk when its delegate fails
+ * to send them, instead of letting the {@code AsyncReporter} drop them. While the delegate is
+ * failing, messages are spilled without trying to send them. A task scheduled on the given executor
+ * checks the delegate every {@code checkInterval} and, once {@link Sender#check()} recovers,
+ * replays the spilled messages in the order they were spilled.
+ *
+ * <p>The bytes spilled, replayed and evicted to make room in the queue are recorded in the {@code
+ * spill.spilled.bytes}, {@code spill.replayed.bytes} and {@code spill.evicted.bytes} meters.
+ */
+public class SpillingSender extends Sender {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpillingSender.class);
+
+  private final Sender delegate;
+  private final SpillQueue queue;
+  private final ScheduledFuture<?> replayTask;
+  private final Meter spilled;
+  private final Meter replayed;
+  private final Meter evicted;
+
+  private volatile boolean failing;
+  private volatile boolean closed;
+
+  /**
+   * Constructor
+   *
+   * @param delegate Sender to send and replay messages with
+   * @param queue Queue of the spilled messages
+   * @param executor Executor running the replay task, whose lifecycle is managed by the caller
+   * @param checkIntervalNanos how often to check the delegate and replay spilled messages
+   * @param registry Metric Registry
+   * @param prefix Prefix for the sender metric names
+   */
+  public SpillingSender(
+      final Sender delegate,
+      final SpillQueue queue,
+      final ScheduledExecutorService executor,
+      final long checkIntervalNanos,
+      final MetricRegistry registry,
+      final String prefix) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.queue = Objects.requireNonNull(queue);
+    this.spilled = registry.meter(name(prefix, "spill", "spilled", "bytes"));
+    this.replayed = registry.meter(name(prefix, "spill", "replayed", "bytes"));
+    this.evicted = registry.meter(name(prefix, "spill", "evicted", "bytes"));
+    registry.gauge(
+        name(prefix, "spill", "pending", "bytes"), () -> (Gauge<Long>) queue::getPendingBytes);
+    if (queue.getEvictedOnRecovery() > 0L) {
+      evicted.mark(queue.getEvictedOnRecovery());
+    }
+
+    // replay whatever was left on disk by a previous run once the delegate is reachable
+    this.failing = !queue.isEmpty();
+    this.replayTask =
+        executor.scheduleWithFixedDelay(
+            this::replay, checkIntervalNanos, checkIntervalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return whether messages are currently spilled instead of being sent
+   */
+  public boolean isFailing() {
+    return failing;
+  }
+
+  @Override
+  public Encoding encoding() {
+    return delegate.encoding();
+  }
+
+  @Override
+  public int messageMaxBytes() {
+    return delegate.messageMaxBytes();
+  }
+
+  @Override
+  public int messageSizeInBytes(List<byte[]> encodedSpans) {
+    return delegate.messageSizeInBytes(encodedSpans);
+  }
+
+  @Override
+  public int messageSizeInBytes(int encodedSizeInBytes) {
+    return delegate.messageSizeInBytes(encodedSizeInBytes);
+  }
+
+  @Override
+  public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+    if (closed) {
+      throw new ClosedSenderException();
+    }
+    return new SendCall(encodedSpans);
+  }
+
+  @Override
+  public CheckResult check() {
+    return delegate.check();
+  }
+
+  /** Check the delegate if it is failing, then replay the spilled messages until one fails. */
+  void replay() {
+    try {
+      if (failing) {
+        final CheckResult result = delegate.check();
+        if (!result.ok()) {
+          return;
+        }
+        failing = false;
+        LOGGER.info("Sender recovered, replaying {} spilled bytes", queue.getPendingBytes());
+      }
+
+      List<byte[]> encodedSpans;
+      while (!closed && (encodedSpans = queue.peek()) != null) {
+        try {
+          delegate.sendSpans(encodedSpans).execute();
+        } catch (IOException | RuntimeException e) {
+          markFailing(e);
+          return;
+        }
+        replayed.mark(queue.remove());
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Unable to replay spilled spans", e);
+    }
+  }
+
+  private void markFailing(Throwable cause) {
+    if (!failing) {
+      failing = true;
+      LOGGER.warn("Unable to send spans, spilling them to disk until the sender recovers", cause);
+    }
+  }
+
+  private void spill(List<byte[]> encodedSpans) throws IOException {
+    final long evictedBytes = queue.append(encodedSpans);
+    if (evictedBytes < 0) {
+      throw new IOException("Message is larger than a spill segment");
+    }
+    spilled.mark(SpillQueue.recordSize(encodedSpans));
+    if (evictedBytes > 0) {
+      evicted.mark(evictedBytes);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    replayTask.cancel(false);
+    try {
+      // a replay in progress stops at its next message once closed
+      queue.close();
+    } finally {
+      delegate.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SpillingSender{" + delegate + "}";
+  }
+
+  final class SendCall extends Call.Base<Void> {
+    private final List<byte[]> encodedSpans;
+
+    SendCall(List<byte[]> encodedSpans) {
+      this.encodedSpans = encodedSpans;
+    }
+
+    @Override
+    protected Void doExecute() throws IOException {
+      if (!failing) {
+        try {
+          delegate.sendSpans(encodedSpans).execute();
+          return null;
+        } catch (IOException | RuntimeException e) {
+          markFailing(e);
+          try {
+            spill(encodedSpans);
+          } catch (IOException spillFailure) {
+            e.addSuppressed(spillFailure);
+            throw e;
+          }
+          return null;
+        }
+      }
+      spill(encodedSpans);
+      return null;
+    }
+
+    @Override
+    protected void doEnqueue(Callback<Void> callback) {
+      if (failing) {
+        spillAndComplete(callback, null);
+        return;
+      }
+      delegate
+          .sendSpans(encodedSpans)
+          .enqueue(
+              new Callback<Void>() {
+                @Override
+                public void onSuccess(Void value) {
+                  callback.onSuccess(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                  markFailing(t);
+                  spillAndComplete(callback, t);
+                }
+              });
+    }
+
+    private void spillAndComplete(Callback<Void> callback, @Nullable Throwable cause) {
+      try {
+        spill(encodedSpans);
+      } catch (IOException e) {
+        if (cause != null) {
+          cause.addSuppressed(e);
+          callback.onError(cause);
+        } else {
+          callback.onError(e);
+        }
+        return;
+      }
+      callback.onSuccess(null);
+    }
+
+    @Override
+    public Call<Void> clone() {
+      return new SendCall(encodedSpans);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.servlets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smoketurner.dropwizard.zipkin.handler.RecentTracesSpanHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import zipkin2.Span;
+import zipkin2.codec.SpanBytesEncoder;
+
+/**
+ * Serves the traces kept by a {@link RecentTracesSpanHandler} with the JSON shapes of the Zipkin v2
+ * API, so that Zipkin tools can read them from the admin port:
+ *
+ * <ul>
+ *   <li>{@code GET /api/v2/services}
+ *   <li>{@code GET /api/v2/spans?serviceName=}
+ *   <li>{@code GET /api/v2/remoteServices?serviceName=}
+ *   <li>{@code GET /api/v2/traces?serviceName=&remoteServiceName=&spanName=&minDuration=
+ *       &maxDuration=&endTs=&lookback=&limit=}
+ *   <li>{@code GET /api/v2/trace/{traceId}}
+ * </ul>
+ */
+public class RecentTracesServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String CONTENT_TYPE = "application/json";
+  private static final String TRACE_PATH = "/trace/";
+  private static final int DEFAULT_LIMIT = 10;
+  private static final long DEFAULT_LOOKBACK = TimeUnit.DAYS.toMillis(1);
+
+  private final transient RecentTracesSpanHandler handler;
+  private final transient ObjectMapper mapper;
+
+  /**
+   * Constructor
+   *
+   * @param handler handler keeping the recent spans
+   * @param mapper Object Mapper for the lists of names
+   */
+  public RecentTracesServlet(final RecentTracesSpanHandler handler, final ObjectMapper mapper) {
+    this.handler = Objects.requireNonNull(handler);
+    this.mapper = Objects.requireNonNull(mapper);
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    final String path = Optional.ofNullable(req.getPathInfo()).orElse("/");
+    try {
+      if (path.startsWith(TRACE_PATH)) {
+        writeTrace(path.substring(TRACE_PATH.length()), resp);
+      } else if ("/traces".equals(path)) {
+        writeTraces(req, resp);
+      } else if ("/services".equals(path)) {
+        writeNames(handler.getServiceNames(), resp);
+      } else if ("/spans".equals(path)) {
+        writeNames(handler.getSpanNames(requireParameter(req, "serviceName")), resp);
+      } else if ("/remoteServices".equals(path)) {
+        writeNames(handler.getRemoteServiceNames(requireParameter(req, "serviceName")), resp);
+      } else {
+        resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      }
+    } catch (IllegalArgumentException e) {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  private void writeTrace(String traceId, HttpServletResponse resp) throws IOException {
+    final Optional<List<Span>> trace = handler.getTrace(Span.normalizeTraceId(traceId));
+    if (!trace.isPresent()) {
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Cannot find trace " + traceId);
+      return;
+    }
+    resp.setContentType(CONTENT_TYPE);
+    resp.getOutputStream().write(SpanBytesEncoder.JSON_V2.encodeList(trace.get()));
+  }
+
+  private void writeTraces(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    final List<List<Span>> traces =
+        handler.getTraces(
+            buildFilter(req), (int) getLong(req, "limit", DEFAULT_LIMIT, Integer.MAX_VALUE));
+
+    resp.setContentType(CONTENT_TYPE);
+    final OutputStream output = resp.getOutputStream();
+    output.write('[');
+    for (int i = 0; i < traces.size(); i++) {
+      if (i > 0) {
+        output.write(',');
+      }
+      output.write(SpanBytesEncoder.JSON_V2.encodeList(traces.get(i)));
+    }
+    output.write(']');
+  }
+
+  private void writeNames(Collection<String> names, HttpServletResponse resp) throws IOException {
+    resp.setContentType(CONTENT_TYPE);
+    mapper.writeValue(resp.getOutputStream(), names);
+  }
+
+  static Predicate<Span> buildFilter(HttpServletRequest req) {
+    final String serviceName = req.getParameter("serviceName");
+    final String remoteServiceName = req.getParameter("remoteServiceName");
+    final String spanName = req.getParameter("spanName");
+    final long minDuration = getLong(req, "minDuration", 0L, Long.MAX_VALUE);
+    final long maxDuration = getLong(req, "maxDuration", Long.MAX_VALUE, Long.MAX_VALUE);
+    final long endTs =
+        TimeUnit.MILLISECONDS.toMicros(
+            getLong(req, "endTs", System.currentTimeMillis(), Long.MAX_VALUE));
+    final long beginTs =
+        endTs
+            - TimeUnit.MILLISECONDS.toMicros(
+                getLong(req, "lookback", DEFAULT_LOOKBACK, Long.MAX_VALUE));
+
+    return span ->
+        matches(serviceName, span.localServiceName())
+            && matches(remoteServiceName, span.remoteServiceName())
+            && matches(spanName, span.name())
+            && span.durationAsLong() >= minDuration
+            && span.durationAsLong() <= maxDuration
+            && span.timestampAsLong() >= beginTs
+            && span.timestampAsLong() <= endTs;
+  }
+
+  private static boolean matches(@Nullable String expected, @Nullable String actual) {
+    return expected == null || expected.isEmpty() || expected.equalsIgnoreCase(actual);
+  }
+
+  private static String requireParameter(HttpServletRequest req, String name) {
+    final String value = req.getParameter(name);
+    if (value == null || value.isEmpty()) {
+      throw new IllegalArgumentException(name + " is required");
+    }
+    return value;
+  }
+
+  private static long getLong(HttpServletRequest req, String name, long defaultValue, long max) {
+    final String value = req.getParameter(name);
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    final long parsed;
+    try {
+      parsed = Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(name + " should be a number: " + value, e);
+    }
+    if (parsed < 0 || parsed > max) {
+      throw new IllegalArgumentException(name + " is out of range: " + value);
+    }
+    return parsed;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.servlets;
+
+import java.util.List;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.glassfish.jersey.uri.UriTemplate;
+
+/**
+ * Records the route of the Jersey resource matching each request, such as {@code /users/{id}}, in
+ * the {@link TracingFilter#ROUTE_ATTRIBUTE} request attribute, so that the server span started by
+ * {@link TracingFilter} is named after it.
+ */
+public class RouteApplicationEventListener implements ApplicationEventListener {
+
+  private static final RequestEventListener ROUTE_LISTENER =
+      event -> {
+        if (event.getType() == RequestEvent.Type.REQUEST_MATCHED) {
+          final ContainerRequest request = event.getContainerRequest();
+          request.setProperty(TracingFilter.ROUTE_ATTRIBUTE, route(request));
+        }
+      };
+
+  @Override
+  public void onEvent(ApplicationEvent event) {
+    // only request events are needed
+  }
+
+  @Override
+  public RequestEventListener onRequest(RequestEvent requestEvent) {
+    return ROUTE_LISTENER;
+  }
+
+  /** Concatenate the base path and the templates matched from the root resource to the method. */
+  static String route(ContainerRequest request) {
+    final ExtendedUriInfo uriInfo = request.getUriInfo();
+    final List<UriTemplate> templates = uriInfo.getMatchedTemplates();
+    final StringBuilder route = new StringBuilder();
+    final String basePath = uriInfo.getBaseUri().getPath();
+    if (!"/".equals(basePath)) {
+      route.append(basePath);
+    }
+    for (int i = templates.size() - 1; i >= 0; i--) {
+      final String template = templates.get(i).getTemplate();
+      if ("/".equals(template)) {
+        continue;
+      }
+      if (route.length() > 0
+          && route.charAt(route.length() - 1) == '/'
+          && template.startsWith("/")) {
+        route.setLength(route.length() - 1);
+      }
+      route.append(template);
+    }
+    return route.length() == 0 && !templates.isEmpty() ? "/" : route.toString();
+  }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.servlets;
+
+import brave.Span;
+import brave.Tracer;
+import brave.http.HttpServerHandler;
+import brave.http.HttpServerRequest;
+import brave.http.HttpServerResponse;
+import brave.http.HttpTracing;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * A servlet filter tracing every request handled by Jetty, including servlets and static assets
+ * outside of Jersey.
+ *
+ * <p>The server span starts at the {@link Request#getTimeStamp() time stamp} Jetty gives the
+ * request once its headers are parsed, to the millisecond, rather than when the filter runs, and a
+ * {@code jetty.dispatch} annotation marks when the filters received it. Time spent waiting for a
+ * thread before Jetty read the request is not included. The span is tagged with the number of
+ * request and response body bytes and with the number of jobs queued in the Jetty thread pool at
+ * dispatch. Jersey resources name the span after their route through {@link
+ * RouteApplicationEventListener}.
+ */
+public class TracingFilter implements Filter {
+
+  /** Request attribute holding the route of the request, set by the application. */
+  public static final String ROUTE_ATTRIBUTE = TracingFilter.class.getName() + ".route";
+
+  private static final String SPAN_ATTRIBUTE = TracingFilter.class.getName() + ".span";
+
+  private final HttpTracing httpTracing;
+  private final Tracer tracer;
+  private final HttpServerHandler<HttpServerRequest, HttpServerResponse> handler;
+
+  /**
+   * Constructor
+   *
+   * @param httpTracing HTTP tracing instance
+   */
+  public TracingFilter(final HttpTracing httpTracing) {
+    this.httpTracing = Objects.requireNonNull(httpTracing);
+    this.tracer = httpTracing.tracing().tracer();
+    this.handler = HttpServerHandler.create(httpTracing);
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+    // nothing to initialize
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    if (!(request instanceof HttpServletRequest)
+        || !(response instanceof HttpServletResponse)
+        || request.getAttribute(SPAN_ATTRIBUTE) != null) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    final HttpServletRequest req = (HttpServletRequest) request;
+    final HttpServletResponse resp = (HttpServletResponse) response;
+    final Request baseRequest = Request.getBaseRequest(req);
+
+    final Span span = handler.handleReceive(new TracedRequest(req));
+    req.setAttribute(SPAN_ATTRIBUTE, span);
+    if (!span.isNoop()) {
+      parseDispatch(req, baseRequest, span);
+    }
+
+    Throwable error = null;
+    try (Tracer.SpanInScope ws = tracer.withSpanInScope(span)) {
+      chain.doFilter(req, resp);
+    } catch (IOException | ServletException | RuntimeException | Error e) {
+      error = e;
+      throw e;
+    } finally {
+      if (error == null && req.isAsyncStarted()) {
+        req.getAsyncContext().addListener(new FinishingListener(req, resp, baseRequest, span));
+      } else {
+        finish(req, resp, baseRequest, span, error);
+      }
+    }
+  }
+
+  private void parseDispatch(HttpServletRequest req, @Nullable Request baseRequest, Span span) {
+    if (baseRequest == null) {
+      return;
+    }
+    final long beginMillis = baseRequest.getTimeStamp();
+    if (beginMillis > 0L) {
+      // the time stamp is read from the wall clock in milliseconds, so measure the time elapsed
+      // since on that clock and subtract it from the span clock, rather than mixing both clocks
+      final long elapsedMillis = System.currentTimeMillis() - beginMillis;
+      if (elapsedMillis >= 0L) {
+        final long now = httpTracing.tracing().clock(span.context()).currentTimeMicroseconds();
+        span.start(now - TimeUnit.MILLISECONDS.toMicros(elapsedMillis));
+        span.annotate(now, "jetty.dispatch");
+      }
+    }
+    if (baseRequest.getHttpChannel() != null) {
+      final ThreadPool threadPool = baseRequest.getHttpChannel().getServer().getThreadPool();
+      if (threadPool instanceof QueuedThreadPool) {
+        span.tag(
+            "jetty.queue.size", Integer.toString(((QueuedThreadPool) threadPool).getQueueSize()));
+      }
+    }
+  }
+
+  void finish(
+      HttpServletRequest req,
+      HttpServletResponse resp,
+      @Nullable Request baseRequest,
+      Span span,
+      @Nullable Throwable error) {
+    if (!span.isNoop()) {
+      if (baseRequest != null && baseRequest.getHttpChannel() != null) {
+        span.tag(
+            "http.request.size", Long.toString(baseRequest.getHttpInput().getContentReceived()));
+        span.tag("http.response.size", Long.toString(baseRequest.getResponse().getContentCount()));
+      } else if (req.getContentLengthLong() >= 0L) {
+        span.tag("http.request.size", Long.toString(req.getContentLengthLong()));
+      }
+    }
+    handler.handleSend(new TracedResponse(req, resp, error), span);
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to destroy
+  }
+
+  /** Finishes the span of an asynchronous request once it completes. */
+  private final class FinishingListener implements AsyncListener {
+    private final HttpServletRequest req;
+    private final HttpServletResponse resp;
+    @Nullable private final Request baseRequest;
+    private final Span span;
+    @Nullable private volatile Throwable error;
+
+    FinishingListener(
+        HttpServletRequest req,
+        HttpServletResponse resp,
+        @Nullable Request baseRequest,
+        Span span) {
+      this.req = req;
+      this.resp = resp;
+      this.baseRequest = baseRequest;
+      this.span = span;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      finish(req, resp, baseRequest, span, error);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      error = event.getThrowable();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      error = event.getThrowable();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      // keep listening if the request is suspended again
+      event.getAsyncContext().addListener(this);
+    }
+  }
+
+  static final class TracedRequest extends HttpServerRequest {
+    private final HttpServletRequest delegate;
+
+    TracedRequest(HttpServletRequest delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Object unwrap() {
+      return delegate;
+    }
+
+    @Override
+    public String method() {
+      return delegate.getMethod();
+    }
+
+    @Override
+    public String path() {
+      return delegate.getRequestURI();
+    }
+
+    @Override
+    public String url() {
+      final StringBuffer url = delegate.getRequestURL();
+      if (delegate.getQueryString() != null && !delegate.getQueryString().isEmpty()) {
+        url.append('?').append(delegate.getQueryString());
+      }
+      return url.toString();
+    }
+
+    @Override
+    @Nullable
+    public String header(String name) {
+      return delegate.getHeader(name);
+    }
+
+    @Override
+    @Nullable
+    public String route() {
+      final Object route = delegate.getAttribute(ROUTE_ATTRIBUTE);
+      return route instanceof String ? (String) route : null;
+    }
+
+    @Override
+    public boolean parseClientIpAndPort(Span span) {
+      if (parseClientIpFromXForwardedFor(span)) {
+        return true;
+      }
+      return span.remoteIpAndPort(delegate.getRemoteAddr(), delegate.getRemotePort());
+    }
+  }
+
+  static final class TracedResponse extends HttpServerResponse {
+    private final TracedRequest request;
+    private final HttpServletResponse delegate;
+    @Nullable private final Throwable error;
+
+    TracedResponse(
+        HttpServletRequest request, HttpServletResponse delegate, @Nullable Throwable error) {
+      this.request = new TracedRequest(request);
+      this.delegate = delegate;
+      this.error = error;
+    }
+
+    @Override
+    public Object unwrap() {
+      return delegate;
+    }
+
+    @Override
+    public TracedRequest request() {
+      return request;
+    }
+
+    @Override
+    @Nullable
+    public Throwable error() {
+      return error;
+    }
+
+    @Override
+    public String method() {
+      return request.method();
+    }
+
+    @Override
+    @Nullable
+    public String route() {
+      return request.route();
+    }
+
+    @Override
+    public int statusCode() {
+      // an exception escaping the filter becomes a server error
+      final int status = delegate.getStatus();
+      return error != null && status < 400 ? 500 : status;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.tasks;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.Tracing;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.servlets.tasks.Task;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admin task pausing or resuming tracing at runtime, with {@code POST
+ * /tasks/zipkin-export?paused=true} or {@code paused=false}. While paused, {@link
+ * Tracing#setNoop(boolean)} stops sampling, recording and exporting spans, so span metrics, tail
+ * sampling and recent traces are paused as well, while trace IDs are still propagated. Spans in
+ * progress when tracing is paused are discarded. Without parameters, the task only prints whether
+ * tracing is paused.
+ */
+public class ExportTask extends Task {
+
+  public static final String NAME = "zipkin-export";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExportTask.class);
+
+  private final Tracing tracing;
+  private final Meter swaps;
+
+  /**
+   * Constructor
+   *
+   * @param tracing Tracing of the application
+   * @param registry Metric Registry
+   * @param prefix Prefix for the metric names
+   */
+  public ExportTask(final Tracing tracing, final MetricRegistry registry, final String prefix) {
+    super(NAME);
+    this.tracing = Objects.requireNonNull(tracing);
+    this.swaps = registry.meter(name(prefix, "export", "swaps"));
+    registry.gauge(
+        name(prefix, "export", "paused"), () -> (Gauge<Integer>) () -> tracing.isNoop() ? 1 : 0);
+  }
+
+  @Override
+  public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+    final Optional<String> paused = SamplerTask.getParameter(parameters, "paused");
+    if (paused.isPresent()) {
+      final boolean value = Boolean.parseBoolean(paused.get());
+      if (value != tracing.isNoop()) {
+        tracing.setNoop(value);
+        LOGGER.warn("{} Zipkin tracing", value ? "Paused" : "Resumed");
+        swaps.mark();
+      }
+    }
+
+    output.println("paused: " + tracing.isNoop());
+    output.flush();
+  }
+}
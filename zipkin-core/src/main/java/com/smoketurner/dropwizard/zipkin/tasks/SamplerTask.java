@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.tasks;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.zipkin.sampler.Samplers;
+import com.smoketurner.dropwizard.zipkin.sampler.SwitchableSampler;
+import io.dropwizard.servlets.tasks.Task;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admin task swapping the sampler of new traces at runtime:
+ *
+ * <ul>
+ *   <li>{@code POST /tasks/zipkin-sampler?probability=0.01} samples a probability of traces
+ *   <li>{@code POST /tasks/zipkin-sampler?tracesPerSecond=10} samples at most N traces per second
+ *   <li>{@code POST /tasks/zipkin-sampler?reset=true} restores the configured sampler
+ * </ul>
+ *
+ * Without parameters, the task only prints the current sampler.
+ *
+ * <p>Only the configured sampler is swapped: requests matched by an HTTP sampling rule or by an
+ * annotated resource method are still sampled by the rule or annotation.
+ */
+public class SamplerTask extends Task {
+
+  public static final String NAME = "zipkin-sampler";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SamplerTask.class);
+  private static final String CONFIGURED = "configured";
+  private static final String UNSWAPPED =
+      "requests matched by an HTTP sampling rule or a @Traced or @NotTraced resource method"
+          + " keep their own sampler";
+
+  private final SwitchableSampler sampler;
+  private final Meter swaps;
+  private volatile String description = CONFIGURED;
+
+  /**
+   * Constructor
+   *
+   * @param sampler sampler of the tracing instance
+   * @param registry Metric Registry
+   * @param prefix Prefix for the metric names
+   */
+  public SamplerTask(
+      final SwitchableSampler sampler, final MetricRegistry registry, final String prefix) {
+    super(NAME);
+    this.sampler = Objects.requireNonNull(sampler);
+    this.swaps = registry.meter(name(prefix, "sampler", "swaps"));
+    registry.gauge(
+        name(prefix, "sampler", "swapped"),
+        () -> (Gauge<Integer>) () -> sampler.isSwapped() ? 1 : 0);
+  }
+
+  @Override
+  public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+    final Optional<String> probability = getParameter(parameters, "probability");
+    final Optional<String> tracesPerSecond = getParameter(parameters, "tracesPerSecond");
+    final Optional<String> reset = getParameter(parameters, "reset");
+
+    if (reset.map(Boolean::parseBoolean).orElse(false)) {
+      swap(sampler.reset(), CONFIGURED);
+    } else if (probability.isPresent()) {
+      final float value = Float.parseFloat(probability.get());
+      if (!Samplers.isValidProbability(value)) {
+        throw new IllegalArgumentException(
+            "probability should be 0.0 or between 0.0001 and 1.0: " + value);
+      }
+      swap(sampler.swap(Samplers.probability(value)), "probability=" + value);
+    } else if (tracesPerSecond.isPresent()) {
+      final int value = Integer.parseInt(tracesPerSecond.get());
+      if (value < 0) {
+        throw new IllegalArgumentException("tracesPerSecond < 0: " + value);
+      }
+      swap(sampler.swap(RateLimitingSampler.create(value)), "tracesPerSecond=" + value);
+    }
+
+    output.println("sampler: " + description);
+    if (sampler.isSwapped()) {
+      output.println(UNSWAPPED);
+    }
+    output.flush();
+  }
+
+  private void swap(Sampler previous, String next) {
+    LOGGER.warn("Swapped Zipkin sampler from {} ({}) to {}", description, previous, next);
+    description = next;
+    swaps.mark();
+  }
+
+  static Optional<String> getParameter(Map<String, List<String>> parameters, String name) {
+    final List<String> values = parameters.get(name);
+    if (values == null || values.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(values.get(0).trim());
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import io.dropwizard.util.Duration;
+import java.io.IOException;
+import org.junit.Test;
+
+public class AsyncHttpZipkinFactoryTest {
+
+  @Test
+  public void isDiscoverable() {
+    assertThat(new DiscoverableSubtypeResolver().getDiscoveredSubtypes())
+        .contains(AsyncHttpZipkinFactory.class);
+  }
+
+  @Test
+  public void shouldBeConfigurable() throws IOException {
+    ObjectMapper mapper =
+        new ObjectMapper(new YAMLFactory()).setSubtypeResolver(new DiscoverableSubtypeResolver());
+
+    final ZipkinFactory factory =
+        mapper.readValue(
+            "enabled: true\n"
+                + "collector: http-async\n"
+                + "baseUrl: http://example.com:1234/zipkin\n"
+                + "writeTimeout: 5s\n"
+                + "maxRequests: 8\n"
+                + "compressionEnabled: false\n"
+                + "http2PriorKnowledge: true\n",
+            ZipkinFactory.class);
+    assertThat(factory).isInstanceOf(AsyncHttpZipkinFactory.class);
+    AsyncHttpZipkinFactory httpFactory = (AsyncHttpZipkinFactory) factory;
+    assertThat(httpFactory.resolveEndpoint())
+        .isEqualTo("http://example.com:1234/zipkin/api/v2/spans");
+    assertThat(httpFactory.getWriteTimeout()).isEqualTo(Duration.seconds(5));
+    assertThat(httpFactory.getMaxRequests()).isEqualTo(8);
+    assertThat(httpFactory.isCompressionEnabled()).isFalse();
+    assertThat(httpFactory.isHttp2PriorKnowledge()).isTrue();
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import java.io.IOException;
+import org.junit.Test;
+
+public class CompositeZipkinFactoryTest {
+
+  private final ObjectMapper mapper =
+      new ObjectMapper(new YAMLFactory()).setSubtypeResolver(new DiscoverableSubtypeResolver());
+
+  @Test
+  public void isDiscoverable() {
+    assertThat(new DiscoverableSubtypeResolver().getDiscoveredSubtypes())
+        .contains(CompositeZipkinFactory.class);
+  }
+
+  @Test
+  public void shouldBeConfigurable() throws IOException {
+    final ZipkinFactory factory =
+        mapper.readValue(
+            "collector: composite\n"
+                + "mode: FAILOVER\n"
+                + "maxDropRate: 0.5\n"
+                + "collectors:\n"
+                + "  - collector: kafka\n"
+                + "    bootstrapServers: 127.0.0.1:9092\n"
+                + "    metricPrefix: tracing.kafka\n"
+                + "  - collector: http\n"
+                + "    baseUrl: http://example.com:1234/zipkin\n"
+                + "    metricPrefix: tracing.http\n",
+            ZipkinFactory.class);
+    assertThat(factory).isInstanceOf(CompositeZipkinFactory.class);
+    final CompositeZipkinFactory composite = (CompositeZipkinFactory) factory;
+    assertThat(composite.getMode()).isEqualTo(CompositeZipkinFactory.Mode.FAILOVER);
+    assertThat(composite.getMaxDropRate()).isEqualTo(0.5);
+    assertThat(composite.getCollectors())
+        .hasSize(2)
+        .hasExactlyElementsOfTypes(KafkaZipkinFactory.class, HttpZipkinFactory.class);
+    assertThat(composite.isMetricPrefixUnique()).isTrue();
+    assertThat(composite.isLoadSheddingUnset()).isTrue();
+  }
+
+  @Test
+  public void shouldRejectLoadSheddingOnCollectors() throws IOException {
+    final CompositeZipkinFactory composite =
+        (CompositeZipkinFactory)
+            mapper.readValue(
+                "collector: composite\n"
+                    + "collectors:\n"
+                    + "  - collector: http\n"
+                    + "    loadShedding:\n"
+                    + "      highWaterMark: 0.9\n",
+                ZipkinFactory.class);
+    assertThat(composite.isLoadSheddingUnset()).isFalse();
+  }
+
+  @Test
+  public void shouldRequireDistinctMetricPrefixes() throws IOException {
+    final CompositeZipkinFactory composite =
+        (CompositeZipkinFactory)
+            mapper.readValue(
+                "collector: composite\n"
+                    + "collectors:\n"
+                    + "  - collector: http\n"
+                    + "  - collector: http\n",
+                ZipkinFactory.class);
+    assertThat(composite.isMetricPrefixUnique()).isFalse();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
+import java.io.IOException;
+import org.junit.Test;
+import zipkin2.codec.Encoding;
+
+public class FileZipkinFactoryTest {
+
+  @Test
+  public void isDiscoverable() {
+    assertThat(new DiscoverableSubtypeResolver().getDiscoveredSubtypes())
+        .contains(FileZipkinFactory.class);
+  }
+
+  @Test
+  public void shouldBeConfigurable() throws IOException {
+    ObjectMapper mapper =
+        new ObjectMapper(new YAMLFactory()).setSubtypeResolver(new DiscoverableSubtypeResolver());
+
+    final ZipkinFactory factory =
+        mapper.readValue(
+            "collector: file\n"
+                + "directory: /var/log/zipkin\n"
+                + "filePrefix: orders\n"
+                + "encoding: PROTO3\n"
+                + "maxFileSize: 10MiB\n"
+                + "rollInterval: 1m\n"
+                + "compress: true\n"
+                + "maxFiles: 5\n"
+                + "maxTotalSize: 1GiB\n",
+            ZipkinFactory.class);
+    assertThat(factory).isInstanceOf(FileZipkinFactory.class);
+    final FileZipkinFactory fileFactory = (FileZipkinFactory) factory;
+    assertThat(fileFactory.getDirectory()).isEqualTo("/var/log/zipkin");
+    assertThat(fileFactory.getFilePrefix()).isEqualTo("orders");
+    assertThat(fileFactory.getEncoding()).isEqualTo(Encoding.PROTO3);
+    assertThat(fileFactory.getMaxFileSize()).isEqualTo(DataSize.mebibytes(10));
+    assertThat(fileFactory.getRollInterval()).isEqualTo(Duration.minutes(1));
+    assertThat(fileFactory.isCompress()).isTrue();
+    assertThat(fileFactory.getMaxFiles()).isEqualTo(5);
+    assertThat(fileFactory.getMaxTotalSize()).isEqualTo(DataSize.gibibytes(1));
+  }
+}
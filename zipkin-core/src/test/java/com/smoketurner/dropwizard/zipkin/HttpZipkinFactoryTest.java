@@ -20,9 +20,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import io.dropwizard.util.DataSize;
 import io.dropwizard.util.Duration;
 import java.io.IOException;
 import org.junit.Test;
+import zipkin2.codec.Encoding;
 
 public class HttpZipkinFactoryTest {
 
@@ -52,6 +54,28 @@ public class HttpZipkinFactoryTest {
     assertThat(httpFactory.getReportTimeout()).isEqualTo(Duration.days(3));
   }
 
+  @Test
+  public void shouldConfigureReporter() throws IOException {
+    ObjectMapper mapper =
+        new ObjectMapper(new YAMLFactory()).setSubtypeResolver(new DiscoverableSubtypeResolver());
+
+    final ZipkinFactory factory =
+        mapper.readValue(
+            "collector: http\n"
+                + "encoding: PROTO3\n"
+                + "queuedMaxSpans: 50000\n"
+                + "queuedMaxBytes: 64MiB\n"
+                + "messageMaxBytes: 1MiB\n"
+                + "closeTimeout: 5s\n",
+            ZipkinFactory.class);
+    HttpZipkinFactory httpFactory = (HttpZipkinFactory) factory;
+    assertThat(httpFactory.getEncoding()).isEqualTo(Encoding.PROTO3);
+    assertThat(httpFactory.getQueuedMaxSpans()).isEqualTo(50000);
+    assertThat(httpFactory.getQueuedMaxBytes()).isEqualTo(DataSize.mebibytes(64));
+    assertThat(httpFactory.getMessageMaxBytes()).isEqualTo(DataSize.mebibytes(1));
+    assertThat(httpFactory.getCloseTimeout()).isEqualTo(Duration.seconds(5));
+  }
+
   @Test
   public void endpointResolutionShouldCarryFullBaseUrl() {
     HttpZipkinFactory factory = new HttpZipkinFactory();
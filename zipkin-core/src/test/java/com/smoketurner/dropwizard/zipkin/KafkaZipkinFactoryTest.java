@@ -16,13 +16,16 @@
 package com.smoketurner.dropwizard.zipkin;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.entry;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import io.dropwizard.util.DataSize;
 import io.dropwizard.util.Duration;
 import java.io.IOException;
+import java.util.Collections;
 import org.junit.Test;
 
 public class KafkaZipkinFactoryTest {
@@ -55,4 +58,40 @@ public class KafkaZipkinFactoryTest {
     assertThat(kafkaFactory.getOverrides()).containsExactly(entry("acks", "all"));
     assertThat(kafkaFactory.getReportTimeout()).isEqualTo(Duration.days(3));
   }
+
+  @Test
+  public void messageMaxBytesDefaultsToMaxRequestSize() {
+    final KafkaZipkinFactory factory = new KafkaZipkinFactory();
+    assertThat(factory.resolveMessageMaxBytes()).isNull();
+
+    factory.setOverrides(Collections.singletonMap("max.request.size", "200000"));
+    assertThat(factory.resolveMessageMaxBytes()).isEqualTo(200000);
+
+    factory.setMessageMaxBytes(DataSize.kilobytes(100));
+    assertThat(factory.resolveMessageMaxBytes()).isEqualTo(100000);
+  }
+
+  @Test
+  public void messageMaxBytesMustFitMaxRequestSize() {
+    final KafkaZipkinFactory factory = new KafkaZipkinFactory();
+    factory.setOverrides(Collections.singletonMap("max.request.size", "200000"));
+    factory.setMessageMaxBytes(DataSize.megabytes(1));
+    assertThatThrownBy(factory::resolveMessageMaxBytes)
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("max.request.size");
+    assertThat(factory.isMessageMaxBytesValid()).isFalse();
+  }
+
+  @Test
+  public void messageMaxBytesMustFitTheDefaultMaxRequestSize() {
+    final KafkaZipkinFactory factory = new KafkaZipkinFactory();
+    factory.setMessageMaxBytes(DataSize.mebibytes(1));
+    assertThat(factory.resolveMessageMaxBytes()).isEqualTo(1048576);
+
+    factory.setMessageMaxBytes(DataSize.mebibytes(5));
+    assertThat(factory.isMessageMaxBytesValid()).isFalse();
+    assertThatThrownBy(factory::resolveMessageMaxBytes)
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("1048576");
+  }
 }
@@ -16,6 +16,7 @@
 package com.smoketurner.dropwizard.zipkin;
 
 import brave.http.HttpTracing;
+import com.smoketurner.dropwizard.zipkin.async.TracingExecutorService;
 import io.dropwizard.Application;
 import io.dropwizard.Configuration;
 import io.dropwizard.setup.Bootstrap;
@@ -23,6 +24,7 @@ import io.dropwizard.setup.Environment;
 import io.dropwizard.testing.ResourceHelpers;
 import io.dropwizard.testing.junit.DropwizardAppRule;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.assertj.core.api.Assertions;
@@ -39,6 +41,15 @@ public class ZipkinBundleTest {
     Assertions.assertThat(getApp().httpTracing).isPresent();
   }
 
+  @Test
+  public void shouldBuildTracingExecutors() {
+    final ExecutorService executor =
+        getApp()
+            .bundle
+            .executorService(app.getEnvironment().lifecycle().executorService("test-%d"), "test");
+    Assertions.assertThat(executor).isInstanceOf(TracingExecutorService.class);
+  }
+
   private App getApp() {
     return (App) app.getApplication();
   }
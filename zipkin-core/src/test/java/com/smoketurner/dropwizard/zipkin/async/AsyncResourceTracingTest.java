@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.async;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.ScopedSpan;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.http.HttpTracing;
+import brave.propagation.CurrentTraceContext;
+import brave.propagation.TraceContext;
+import com.smoketurner.dropwizard.zipkin.AbstractZipkinFactory;
+import io.dropwizard.setup.Environment;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ManagedAsync;
+import org.glassfish.jersey.server.ManagedAsyncExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+public class AsyncResourceTracingTest {
+
+  private static final URI BASE_URI = URI.create("http://localhost:8080/");
+  private static final int REQUESTS = 20;
+  private static final ExecutorService COMPLETER = Executors.newSingleThreadExecutor();
+
+  private final Queue<MutableSpan> spans = new ConcurrentLinkedQueue<>();
+  private final Environment environment = new Environment("test");
+  private final ExecutorService clients = Executors.newFixedThreadPool(8);
+  private ApplicationHandler handler;
+
+  @Path("/async")
+  public static class AsyncResource {
+    @Inject @ManagedAsyncExecutor private ExecutorService executor;
+
+    @GET
+    @Path("/managed")
+    @ManagedAsync
+    public String managed() {
+      return child("managed");
+    }
+
+    @GET
+    @Path("/suspended")
+    public void suspended(@Suspended AsyncResponse response) {
+      executor.execute(() -> response.resume(child("suspended")));
+    }
+
+    @GET
+    @Path("/stage")
+    public CompletionStage<String> stage() {
+      return CompletableFuture.supplyAsync(() -> child("stage"), executor)
+          .thenApplyAsync(result -> child("stage-then"), executor);
+    }
+
+    @GET
+    @Path("/completed")
+    public CompletionStage<String> completed() {
+      // completes once the resource method has returned, so that the response is written by the
+      // completing thread
+      return CompletableFuture.supplyAsync(
+          () -> {
+            try {
+              Thread.sleep(100L);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return "completed";
+          },
+          COMPLETER);
+    }
+
+    private static String child(String name) {
+      final ScopedSpan span = Tracing.currentTracer().startScopedSpan(name);
+      try {
+        span.tag("mdc.traceId", String.valueOf(MDC.get("traceId")));
+        return name;
+      } finally {
+        span.finish();
+      }
+    }
+  }
+
+  @Before
+  public void setUp() {
+    final AbstractZipkinFactory factory =
+        new AbstractZipkinFactory() {
+          @Override
+          public Optional<HttpTracing> build(Environment environment) {
+            return buildTracing(
+                environment,
+                new SpanHandler() {
+                  @Override
+                  public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                    spans.add(span);
+                    return true;
+                  }
+                });
+          }
+        };
+    factory.build(environment);
+    environment.jersey().register(AsyncResource.class);
+    handler = new ApplicationHandler(environment.jersey().getResourceConfig());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    clients.shutdownNow();
+    for (LifeCycle managed : environment.lifecycle().getManagedObjects()) {
+      managed.stop();
+    }
+    // the managed objects of an environment which was not started are not stopped
+    final Tracing tracing = Tracing.current();
+    if (tracing != null) {
+      tracing.close();
+    }
+  }
+
+  @Test
+  public void shouldKeepTheSpanHierarchyUnderConcurrency() throws Exception {
+    final List<Future<ContainerResponse>> responses = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      for (String path : new String[] {"managed", "suspended", "stage"}) {
+        responses.add(clients.submit(() -> handler.apply(request(path)).get(5, TimeUnit.SECONDS)));
+      }
+    }
+    for (Future<ContainerResponse> response : responses) {
+      assertThat(response.get().getStatus()).isEqualTo(200);
+    }
+    // the server span of an asynchronous request finishes after its response is completed
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (spans.size() < 7 * REQUESTS && System.nanoTime() < deadline) {
+      Thread.sleep(10L);
+    }
+
+    final Map<String, MutableSpan> servers =
+        spans.stream()
+            .filter(span -> span.kind() == brave.Span.Kind.SERVER)
+            .collect(Collectors.toMap(MutableSpan::traceId, Function.identity()));
+    final List<MutableSpan> children =
+        spans.stream().filter(span -> span.kind() == null).collect(Collectors.toList());
+
+    assertThat(servers).hasSize(3 * REQUESTS);
+    assertThat(children).hasSize(4 * REQUESTS);
+    for (MutableSpan child : children) {
+      final MutableSpan server = servers.get(child.traceId());
+      assertThat(server).as("server span of %s", child.name()).isNotNull();
+      assertThat(child.parentId()).isEqualTo(server.id());
+      assertThat(child.tag("mdc.traceId")).isEqualTo(child.traceId());
+    }
+  }
+
+  @Test
+  public void shouldRestoreTheContextOfTheCompletingThread() throws Exception {
+    final CurrentTraceContext currentTraceContext = Tracing.current().currentTraceContext();
+    final TraceContext outer = TraceContext.newBuilder().traceId(1L).spanId(2L).build();
+
+    try (CurrentTraceContext.Scope ignored = currentTraceContext.newScope(outer)) {
+      assertThat(handler.apply(request("completed")).get(5, TimeUnit.SECONDS).getStatus())
+          .isEqualTo(200);
+      assertThat(currentTraceContext.get()).isEqualTo(outer);
+    }
+
+    assertThat(COMPLETER.submit(currentTraceContext::get).get()).isNull();
+    assertThat(spans)
+        .filteredOn(span -> span.kind() == brave.Span.Kind.SERVER)
+        .extracting(MutableSpan::parentId)
+        .containsExactly("0000000000000002");
+  }
+
+  private static ContainerRequest request(String path) {
+    return new ContainerRequest(
+        BASE_URI, BASE_URI.resolve("/async/" + path), "GET", null, new MapPropertiesDelegate());
+  }
+}
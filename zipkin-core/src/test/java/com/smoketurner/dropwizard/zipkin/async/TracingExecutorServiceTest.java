@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.async;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.ScopedSpan;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.codahale.metrics.MetricRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class TracingExecutorServiceTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final List<MutableSpan> spans = new CopyOnWriteArrayList<>();
+  private final List<Long> begun = new CopyOnWriteArrayList<>();
+  private final Tracing tracing =
+      Tracing.newBuilder()
+          .addSpanHandler(
+              new SpanHandler() {
+                @Override
+                public boolean begin(TraceContext context, MutableSpan span, TraceContext parent) {
+                  begun.add(context.spanId());
+                  return true;
+                }
+
+                @Override
+                public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                  spans.add(span);
+                  return true;
+                }
+              })
+          .build();
+  private final ExecutorService delegate = Executors.newFixedThreadPool(2);
+  private final ScheduledExecutorService scheduledDelegate = Executors.newScheduledThreadPool(1);
+
+  @After
+  public void tearDown() {
+    delegate.shutdownNow();
+    scheduledDelegate.shutdownNow();
+    tracing.close();
+  }
+
+  @Test
+  public void shouldRunTasksInTheSubmittingContext() throws Exception {
+    final ExecutorService executor =
+        new TracingExecutorService(delegate, tracing, registry.timer("queue-wait"), "pool");
+
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    final Future<TraceContext> seen;
+    try {
+      seen = executor.submit(() -> tracing.currentTraceContext().get());
+      assertThat(seen.get(5, TimeUnit.SECONDS).parentId()).isEqualTo(parent.context().spanId());
+    } finally {
+      parent.finish();
+    }
+
+    assertThat(executor.submit(() -> tracing.currentTraceContext().get()).get()).isNull();
+    assertThat(registry.timer("queue-wait").getCount()).isEqualTo(2);
+    assertThat(spans).extracting(MutableSpan::name).containsExactly("pool", "parent");
+    assertThat(spans.get(0).annotationValueAt(0))
+        .isEqualTo(TracingExecutorService.START_ANNOTATION);
+    assertThat(spans.get(0).parentId()).isEqualTo(spans.get(1).id());
+  }
+
+  @Test
+  public void shouldNotModifyAParentWhichFinishedBeforeTheTaskRan() throws Exception {
+    final ExecutorService single = Executors.newSingleThreadExecutor();
+    final ExecutorService executor =
+        new TracingExecutorService(single, tracing, registry.timer("queue-wait"), "pool");
+    final CountDownLatch blocked = new CountDownLatch(1);
+    try {
+      single.execute(
+          () -> {
+            try {
+              blocked.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+
+      final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+      final Future<?> task;
+      try {
+        task = executor.submit(() -> {});
+      } finally {
+        parent.finish();
+      }
+      Thread.sleep(20);
+      blocked.countDown();
+      task.get(5, TimeUnit.SECONDS);
+
+      assertThat(spans).extracting(MutableSpan::name).containsExactly("parent", "pool");
+      // the task span starts when the task was submitted, and is annotated once it runs
+      final MutableSpan span = spans.get(1);
+      assertThat(span.annotationValueAt(0)).isEqualTo(TracingExecutorService.START_ANNOTATION);
+      assertThat(span.annotationTimestampAt(0) - span.startTimestamp())
+          .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(20));
+      // the parent span was not reopened by the task
+      assertThat(begun).doesNotHaveDuplicates().hasSize(2);
+    } finally {
+      single.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldRunScheduledTasksInTheSubmittingContext() throws Exception {
+    final ScheduledExecutorService executor =
+        new TracingScheduledExecutorService(
+            scheduledDelegate, tracing, registry.timer("queue-wait"), "scheduler");
+
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    try {
+      assertThat(
+              executor
+                  .schedule(() -> tracing.currentTraceContext().get(), 10, TimeUnit.MILLISECONDS)
+                  .get(5, TimeUnit.SECONDS)
+                  .parentId())
+          .isEqualTo(parent.context().spanId());
+    } finally {
+      parent.finish();
+    }
+    assertThat(registry.timer("queue-wait").getCount()).isEqualTo(1);
+    assertThat(spans).extracting(MutableSpan::name).containsExactly("scheduler", "parent");
+  }
+
+  @Test
+  public void shouldRecordTheWaitOfEachPeriodicRun() throws Exception {
+    final ScheduledExecutorService executor =
+        new TracingScheduledExecutorService(
+            scheduledDelegate, tracing, registry.timer("queue-wait"), "scheduler");
+    final CountDownLatch runs = new CountDownLatch(3);
+
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    try {
+      executor.scheduleAtFixedRate(runs::countDown, 0, 10, TimeUnit.MILLISECONDS);
+    } finally {
+      parent.finish();
+    }
+
+    assertThat(runs.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(registry.timer("queue-wait").getCount()).isGreaterThanOrEqualTo(3);
+    // periodic runs do not add spans to the trace which scheduled them
+    assertThat(spans).extracting(MutableSpan::name).containsExactly("parent");
+  }
+}
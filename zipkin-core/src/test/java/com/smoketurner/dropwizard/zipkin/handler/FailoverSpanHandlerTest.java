@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import zipkin2.CheckResult;
+import zipkin2.Component;
+
+public class FailoverSpanHandlerTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final Sink primary = new Sink();
+  private final Sink secondary = new Sink();
+  private final FailoverSpanHandler handler =
+      new FailoverSpanHandler(
+          Arrays.asList(target("primary", primary), target("secondary", secondary)),
+          0.1,
+          registry,
+          "test");
+  private final TraceContext context = TraceContext.newBuilder().traceId(1L).spanId(2L).build();
+
+  private FailoverSpanHandler.Target target(String name, Sink sink) {
+    return new FailoverSpanHandler.Target(
+        name, sink, sink.component, new DropwizardReporterMetrics(registry, name));
+  }
+
+  @Test
+  public void shouldFailOverAndBack() {
+    handler.end(context, new MutableSpan(), SpanHandler.Cause.FINISHED);
+    assertThat(primary.spans).hasSize(1);
+
+    primary.up = false;
+    handler.checkHealth();
+    handler.end(context, new MutableSpan(), SpanHandler.Cause.FINISHED);
+
+    assertThat(handler.getActiveIndex()).isEqualTo(1);
+    assertThat(secondary.spans).hasSize(1);
+    assertThat(registry.getGauges().get("test.failover.active").getValue()).isEqualTo(1);
+
+    primary.up = true;
+    handler.checkHealth();
+    handler.end(context, new MutableSpan(), SpanHandler.Cause.FINISHED);
+
+    assertThat(primary.spans).hasSize(2);
+    assertThat(registry.meter("test.failover.switches").getCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldStayActiveWhenNothingIsHealthy() {
+    primary.up = false;
+    secondary.up = false;
+    handler.checkHealth();
+
+    assertThat(handler.getActiveIndex()).isZero();
+  }
+
+  static final class Sink extends SpanHandler {
+    final List<MutableSpan> spans = new ArrayList<>();
+    volatile boolean up = true;
+
+    final Component component =
+        new Component() {
+          @Override
+          public CheckResult check() {
+            return up ? CheckResult.OK : CheckResult.failed(new IOException("connection refused"));
+          }
+        };
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+      spans.add(span);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.Span;
+import brave.Tracing;
+import brave.sampler.Sampler;
+import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class MetricsSpanHandlerTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final MetricsSpanHandler handler = new MetricsSpanHandler(registry, "test", 2);
+  private final Tracing tracing =
+      Tracing.newBuilder()
+          .sampler(Sampler.NEVER_SAMPLE)
+          .alwaysSampleLocal()
+          .addSpanHandler(handler)
+          .build();
+
+  @After
+  public void tearDown() {
+    tracing.close();
+  }
+
+  @Test
+  public void shouldRecordUnsampledServerSpans() {
+    final Span span =
+        tracing
+            .tracer()
+            .newTrace()
+            .kind(Span.Kind.SERVER)
+            .name("get")
+            .tag("http.route", "/users")
+            .start(1_000_000L);
+    assertThat(span.context().sampled()).isFalse();
+    span.finish(1_002_000L);
+
+    tracing
+        .tracer()
+        .newTrace()
+        .kind(Span.Kind.SERVER)
+        .name("get")
+        .tag("http.route", "/users")
+        .error(new IllegalStateException())
+        .start()
+        .finish();
+
+    assertThat(registry.timer("test.server.get.users.requests").getCount()).isEqualTo(2);
+    assertThat(registry.timer("test.server.get.users.requests").getSnapshot().getMax())
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(2));
+    assertThat(registry.meter("test.server.get.users.errors").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeyClientSpansByRemoteService() {
+    tracing
+        .tracer()
+        .newTrace()
+        .kind(Span.Kind.CLIENT)
+        .name("post")
+        .remoteServiceName("billing")
+        .start()
+        .finish();
+
+    assertThat(registry.timer("test.client.post.billing.requests").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldIgnoreLocalSpans() {
+    tracing.tracer().newTrace().name("local").start().finish();
+
+    assertThat(handler.getKeys()).isZero();
+    assertThat(registry.getTimers().keySet())
+        .containsOnly("test.server.other.requests", "test.client.other.requests");
+  }
+
+  @Test
+  public void shouldBoundTheNumberOfKeys() {
+    for (int i = 0; i < 5; i++) {
+      tracing.tracer().newTrace().kind(Span.Kind.SERVER).name("get " + i).start().finish();
+    }
+
+    assertThat(handler.getKeys()).isEqualTo(2);
+    assertThat(registry.timer("test.server.get_0.requests").getCount()).isEqualTo(1);
+    assertThat(registry.timer("test.server.get_1.requests").getCount()).isEqualTo(1);
+    assertThat(registry.timer("test.server.other.requests").getCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldSanitizeRoutes() {
+    finish("get", "/users/{id}", null);
+    finish("get", "/users.{id}", null);
+    finish("get", "/users/{id}", null);
+    finish("get", "/a.b", null);
+    finish("get", "/a", "b");
+
+    assertThat(MetricsSpanHandler.sanitize("/users/{id}")).isEqualTo("users_id");
+    assertThat(registry.timer("test.server.get.users_id.requests").getCount()).isEqualTo(3);
+    assertThat(registry.timer("test.server.get.a_b.requests").getCount()).isEqualTo(1);
+    assertThat(handler.getKeys()).isEqualTo(2);
+    assertThat(registry.timer("test.server.other.requests").getCount()).isEqualTo(1);
+  }
+
+  private void finish(String name, String route, String remoteServiceName) {
+    final Span span = tracing.tracer().newTrace().kind(Span.Kind.SERVER).name(name);
+    span.tag("http.route", route);
+    if (remoteServiceName != null) {
+      span.remoteServiceName(remoteServiceName);
+    }
+    span.start().finish();
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.Span;
+import brave.Tracing;
+import brave.sampler.Sampler;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+public class RecentTracesSpanHandlerTest {
+
+  private final RecentTracesSpanHandler handler = new RecentTracesSpanHandler(3, false);
+  private final Tracing tracing =
+      Tracing.newBuilder().localServiceName("test").addSpanHandler(handler).build();
+
+  @After
+  public void tearDown() {
+    tracing.close();
+  }
+
+  @Test
+  public void shouldKeepTheLastSpans() {
+    for (int i = 0; i < 5; i++) {
+      tracing.tracer().newTrace().name("span " + i).start().finish();
+    }
+
+    assertThat(handler.getSpans())
+        .extracting(zipkin2.Span::name)
+        .containsExactly("span 4", "span 3", "span 2");
+  }
+
+  @Test
+  public void shouldFindTraces() {
+    final Span root = tracing.tracer().newTrace().name("root").start(1_000L);
+    tracing
+        .tracer()
+        .newChild(root.context())
+        .name("child")
+        .remoteServiceName("db")
+        .start(2_000L)
+        .finish(3_000L);
+    root.finish(4_000L);
+    tracing.tracer().newTrace().name("other").start(5_000L).finish(6_000L);
+
+    final String traceId = root.context().traceIdString();
+    assertThat(handler.getTrace(traceId).get())
+        .extracting(zipkin2.Span::name)
+        .containsExactly("root", "child");
+
+    final List<List<zipkin2.Span>> traces = handler.getTraces(span -> true, 10);
+    assertThat(traces).hasSize(2);
+    assertThat(traces.get(0)).extracting(zipkin2.Span::name).containsExactly("other");
+
+    assertThat(handler.getTraces(span -> "db".equals(span.remoteServiceName()), 10))
+        .hasSize(1)
+        .first()
+        .satisfies(trace -> assertThat(trace).hasSize(2));
+    assertThat(handler.getServiceNames()).containsExactly("test");
+    assertThat(handler.getSpanNames("test")).containsExactly("child", "other", "root");
+    assertThat(handler.getRemoteServiceNames("test")).containsExactly("db");
+  }
+
+  @Test
+  public void shouldSkipUnsampledSpans() {
+    try (Tracing unsampled =
+        Tracing.newBuilder()
+            .sampler(Sampler.NEVER_SAMPLE)
+            .alwaysSampleLocal()
+            .addSpanHandler(handler)
+            .build()) {
+      unsampled.tracer().newTrace().name("unsampled").start().finish();
+    }
+
+    assertThat(handler.getSpans()).isEmpty();
+  }
+}
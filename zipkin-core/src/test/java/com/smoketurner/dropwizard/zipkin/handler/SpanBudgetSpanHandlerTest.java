@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler.Cause;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+public class SpanBudgetSpanHandlerTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final SpanBudgetSpanHandler handler =
+      new SpanBudgetSpanHandler(2, 10, 1, 512, registry, "test");
+
+  @Test
+  public void shouldNotModifySpansWithinBudget() {
+    final MutableSpan span = new MutableSpan();
+    span.name("get");
+    span.tag("http.method", "GET");
+    span.annotate(1L, "ws");
+
+    handler.end(null, span, Cause.FINISHED);
+
+    assertThat(span.tags()).containsOnlyKeys("http.method");
+    assertThat(span.annotationCount()).isEqualTo(1);
+    assertThat(registry.meter("test.spans.trimmed").getCount()).isZero();
+  }
+
+  @Test
+  public void shouldTruncateAndDropTags() {
+    final MutableSpan span = new MutableSpan();
+    span.tag("sql", "select * from users where id = ?");
+    span.tag("emoji", "123456789😀");
+    span.tag("dropped", "value");
+    span.annotate(1L, "first");
+    span.annotate(2L, "second");
+
+    handler.end(null, span, Cause.FINISHED);
+
+    assertThat(span.tags()).containsOnlyKeys("sql", "emoji");
+    assertThat(span.tag("sql")).isEqualTo("select * f");
+    assertThat(span.tag("emoji")).isEqualTo("123456789");
+    assertThat(span.annotationCount()).isEqualTo(1);
+    assertThat(span.annotationValueAt(0)).isEqualTo("first");
+
+    assertThat(registry.meter("test.spans.trimmed").getCount()).isEqualTo(1);
+    assertThat(registry.meter("test.tags.truncated").getCount()).isEqualTo(2);
+    assertThat(registry.meter("test.tags.dropped").getCount()).isEqualTo(1);
+    assertThat(registry.meter("test.annotations.dropped").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldDropTagsBeyondSpanSize() {
+    final SpanBudgetSpanHandler sized =
+        new SpanBudgetSpanHandler(100, 1000, 100, 300, registry, "sized");
+    final MutableSpan span = new MutableSpan();
+    span.tag("a", "0123456789");
+    span.tag("b", "0123456789012345678901234567890123456789");
+    span.tag("c", "0123456789");
+
+    sized.end(null, span, Cause.FINISHED);
+
+    // 256 + 17 + 17 fit, the 47 bytes of b do not
+    assertThat(span.tags()).containsOnlyKeys("a", "c");
+    assertThat(registry.meter("sized.tags.dropped").getCount()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.Span;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import com.codahale.metrics.MetricRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class TailSamplingSpanHandlerTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final List<MutableSpan> reported = new ArrayList<>();
+  private final SpanHandler recorder =
+      new SpanHandler() {
+        @Override
+        public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+          reported.add(span);
+          return true;
+        }
+      };
+  private final TailSamplingSpanHandler handler =
+      new TailSamplingSpanHandler(
+          recorder, Sampler.NEVER_SAMPLE, 1, TimeUnit.SECONDS, 2, 3, registry, "test");
+  private final Tracing tracing =
+      Tracing.newBuilder()
+          .sampler(Sampler.NEVER_SAMPLE)
+          .alwaysSampleLocal()
+          .addSpanHandler(handler)
+          .build();
+
+  @After
+  public void tearDown() {
+    tracing.close();
+  }
+
+  @Test
+  public void shouldKeepFailedTraces() {
+    final Span root = tracing.tracer().newTrace().name("root").start();
+    tracing
+        .tracer()
+        .newChild(root.context())
+        .name("child")
+        .error(new IllegalStateException())
+        .finish();
+    assertThat(reported).isEmpty();
+    assertThat(handler.getBufferedSpans()).isEqualTo(1);
+
+    root.finish();
+
+    assertThat(reported).extracting(MutableSpan::name).containsExactly("child", "root");
+    assertThat(handler.getBufferedSpans()).isZero();
+    assertThat(registry.meter("test.traces.kept").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeepSlowTraces() {
+    final Span root = tracing.tracer().newTrace().name("root").start(1_000_000L);
+    root.finish(3_000_000L);
+
+    assertThat(reported).extracting(MutableSpan::name).containsExactly("root");
+  }
+
+  @Test
+  public void shouldDropOtherTraces() {
+    final Span root = tracing.tracer().newTrace().name("root").start(1_000_000L);
+    tracing.tracer().newChild(root.context()).name("child").start(1_000_000L).finish(1_000_100L);
+    root.finish(1_000_200L);
+
+    assertThat(reported).isEmpty();
+    assertThat(handler.getBufferedSpans()).isZero();
+    assertThat(registry.meter("test.traces.dropped").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldFollowTheDecisionForLateSpans() {
+    final Span root = tracing.tracer().newTrace().name("root").start();
+    final Span child = tracing.tracer().newChild(root.context()).name("child").start();
+    root.error(new IllegalStateException()).finish();
+    child.finish();
+
+    assertThat(reported).extracting(MutableSpan::name).containsExactly("root", "child");
+  }
+
+  @Test
+  public void shouldEvictTheOldestTraceWhenFull() {
+    final Span first = tracing.tracer().newTrace().name("first").start();
+    tracing.tracer().newChild(first.context()).name("one").finish();
+    tracing.tracer().newChild(first.context()).name("two").finish();
+    tracing.tracer().newChild(first.context()).name("three").finish();
+    assertThat(registry.meter("test.spans.dropped").getCount()).isEqualTo(1);
+
+    final Span second = tracing.tracer().newTrace().name("second").start();
+    tracing.tracer().newChild(second.context()).name("four").finish();
+    tracing.tracer().newChild(second.context()).name("five").finish();
+
+    assertThat(registry.meter("test.traces.evicted").getCount()).isEqualTo(1);
+    assertThat(handler.getBufferedSpans()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldDropTheRestOfAnEvictedTrace() {
+    final Span first = tracing.tracer().newTrace().name("first").start();
+    tracing.tracer().newChild(first.context()).name("one").finish();
+    tracing.tracer().newChild(first.context()).name("two").finish();
+
+    final Span second = tracing.tracer().newTrace().name("second").start();
+    tracing.tracer().newChild(second.context()).name("three").finish();
+    tracing.tracer().newChild(second.context()).name("four").finish();
+    assertThat(registry.meter("test.traces.evicted").getCount()).isEqualTo(1);
+
+    tracing.tracer().newChild(first.context()).name("late").finish();
+    first.error(new IllegalStateException()).finish();
+
+    assertThat(reported).isEmpty();
+    assertThat(handler.getBufferedSpans()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldPassThroughSampledTraces() {
+    try (Tracing sampled =
+        Tracing.newBuilder().alwaysSampleLocal().addSpanHandler(handler).build()) {
+      sampled.tracer().newTrace().name("sampled").start().finish();
+    }
+
+    assertThat(reported).extracting(MutableSpan::name).containsExactly("sampled");
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.health;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import zipkin2.CheckResult;
+import zipkin2.Component;
+
+public class CollectorProbeTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final AtomicInteger checks = new AtomicInteger();
+  private volatile boolean up = false;
+  private final Component component =
+      new Component() {
+        @Override
+        public CheckResult check() {
+          checks.incrementAndGet();
+          return up ? CheckResult.OK : CheckResult.failed(new IOException("connection refused"));
+        }
+      };
+  private final CollectorProbe probe =
+      new CollectorProbe(component, 1, 8, 30, TimeUnit.SECONDS, registry, "test");
+
+  @Test
+  public void shouldFailUntilChecked() {
+    assertThat(probe.isReachable()).isFalse();
+    assertThat(probe.check().ok()).isFalse();
+    assertThat(checks).hasValue(0);
+    assertThat(gauge("test.collector.reachable")).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldBackOffWhileUnreachable() {
+    assertThat(probe.probe()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    assertThat(probe.probe()).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+    assertThat(probe.probe()).isEqualTo(TimeUnit.SECONDS.toNanos(4));
+    assertThat(probe.probe()).isEqualTo(TimeUnit.SECONDS.toNanos(8));
+    assertThat(probe.probe()).isEqualTo(TimeUnit.SECONDS.toNanos(8));
+    assertThat(probe.getConsecutiveFailures()).isEqualTo(5);
+    assertThat(gauge("test.collector.failures")).isEqualTo(5);
+    assertThat(probe.check().error()).hasMessage("connection refused");
+
+    up = true;
+    assertThat(probe.probe()).isEqualTo(TimeUnit.SECONDS.toNanos(30));
+    assertThat(probe.isReachable()).isTrue();
+    assertThat(probe.getConsecutiveFailures()).isEqualTo(0);
+    assertThat(gauge("test.collector.reachable")).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotOverflowTheBackoff() {
+    for (int i = 0; i < 100; i++) {
+      assertThat(probe.probe()).isBetween(1L, TimeUnit.SECONDS.toNanos(8));
+    }
+  }
+
+  @Test
+  public void shouldCatchFailingChecks() {
+    final CollectorProbe failing =
+        new CollectorProbe(
+            new Component() {
+              @Override
+              public CheckResult check() {
+                throw new IllegalStateException("boom");
+              }
+            },
+            1,
+            8,
+            30,
+            TimeUnit.SECONDS,
+            registry,
+            "failing");
+
+    failing.probe();
+
+    assertThat(failing.check().error()).hasMessage("boom");
+  }
+
+  @Test
+  public void shouldProbeInTheBackground() throws Exception {
+    final CountDownLatch checked = new CountDownLatch(3);
+    final CollectorProbe fast =
+        new CollectorProbe(
+            new Component() {
+              @Override
+              public CheckResult check() {
+                checked.countDown();
+                return CheckResult.failed(new IOException("connection refused"));
+              }
+            },
+            1,
+            4,
+            1,
+            TimeUnit.MILLISECONDS,
+            registry,
+            "fast");
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      fast.start(executor);
+      assertThat(checked.await(5, TimeUnit.SECONDS)).isTrue();
+
+      fast.close();
+      final int failures = fast.getConsecutiveFailures();
+      Thread.sleep(50);
+      assertThat(fast.getConsecutiveFailures()).isBetween(failures, failures + 1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private int gauge(final String name) {
+    return ((Gauge<Integer>) registry.getGauges().get(name)).getValue();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.health;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import java.io.IOException;
+import org.junit.Test;
+import zipkin2.CheckResult;
+import zipkin2.Component;
+
+public class ReporterHealthCheckTest {
+
+  private final DropwizardReporterMetrics metrics =
+      new DropwizardReporterMetrics(new MetricRegistry());
+  private boolean up = true;
+  private double fill = 0.0;
+  private final Component component =
+      new Component() {
+        @Override
+        public CheckResult check() {
+          return up ? CheckResult.OK : CheckResult.failed(new IOException("connection refused"));
+        }
+      };
+  private final ReporterHealthCheck healthCheck =
+      new ReporterHealthCheck(component, metrics, () -> fill, 0.9, 0.1);
+
+  @Test
+  public void shouldBeHealthy() {
+    final HealthCheck.Result result = healthCheck.execute();
+
+    assertThat(result.isHealthy()).isTrue();
+    assertThat(result.getDetails())
+        .containsEntry("reachable", true)
+        .containsEntry("queueFill", 0.0)
+        .containsEntry("dropRate", 0.0);
+  }
+
+  @Test
+  public void shouldBeUnhealthyWhenUnreachable() {
+    up = false;
+
+    final HealthCheck.Result result = healthCheck.execute();
+
+    assertThat(result.isHealthy()).isFalse();
+    assertThat(result.getMessage()).contains("connection refused");
+  }
+
+  @Test
+  public void shouldBeUnhealthyWhenQueueIsFull() {
+    fill = 0.95;
+
+    final HealthCheck.Result result = healthCheck.execute();
+
+    assertThat(result.isHealthy()).isFalse();
+    assertThat(result.getMessage()).isEqualTo("Reporter queue is 95% full");
+  }
+
+  @Test
+  public void shouldOnlyBeDegradedWhenNotCritical() {
+    up = false;
+
+    final HealthCheck.Result result =
+        new ReporterHealthCheck(component, metrics, () -> fill, 0.9, 0.1, false).execute();
+
+    assertThat(result.isHealthy()).isTrue();
+    assertThat(result.getMessage()).contains("connection refused");
+    assertThat(result.getDetails()).containsEntry("degraded", true);
+  }
+}
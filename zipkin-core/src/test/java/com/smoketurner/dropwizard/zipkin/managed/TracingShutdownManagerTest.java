@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.managed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.Tracing;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.zipkin.health.CollectorProbe;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.server.Server;
+import org.junit.After;
+import org.junit.Test;
+import zipkin2.Call;
+import zipkin2.Span;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.AsyncReporter;
+import zipkin2.reporter.Sender;
+
+public class TracingShutdownManagerTest {
+
+  private static final Span SPAN =
+      Span.newBuilder().traceId("1").id("1").name("get").timestamp(1L).duration(1L).build();
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final DropwizardReporterMetrics metrics = new DropwizardReporterMetrics(registry, "test");
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final RecordingSender sender = new RecordingSender();
+  private final TracingShutdownManager manager =
+      new TracingShutdownManager(200, TimeUnit.MILLISECONDS, registry);
+
+  @After
+  public void tearDown() {
+    sender.closing.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldFlushSpansOnShutdown() throws Exception {
+    final Tracing tracing = Tracing.newBuilder().build();
+    manager.setTracing(tracing);
+    final AsyncReporter<Span> reporter = manage(TimeUnit.MILLISECONDS.toNanos(50));
+    sender.closing.countDown();
+    manager.start();
+
+    reporter.report(SPAN);
+    manager.stop();
+
+    assertThat(Tracing.current()).isNull();
+    assertThat(sender.messages).hasSize(1);
+    assertThat(sender.closed).isTrue();
+    assertThat(registry.counter("test.span.lost").getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldFlushWhileJettyStops() throws Exception {
+    final AsyncReporter<Span> reporter = manage(TimeUnit.HOURS.toNanos(1));
+    manager.start();
+
+    reporter.report(SPAN);
+    manager.lifeCycleStopping(new Server());
+
+    assertThat(sender.sent.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void shouldNotWaitForSlowSendersPastTheDeadline() throws Exception {
+    final AsyncReporter<Span> reporter = manage(TimeUnit.MILLISECONDS.toNanos(50));
+    sender.failing = true;
+    manager.start();
+
+    reporter.report(SPAN);
+    final long start = System.nanoTime();
+    manager.stop();
+
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+    assertThat(sender.closed).isFalse();
+    assertThat(registry.counter("test.span.lost").getCount()).isEqualTo(1);
+  }
+
+  private AsyncReporter<Span> manage(final long messageTimeoutNanos) {
+    final AsyncReporter<Span> reporter =
+        AsyncReporter.builder(sender)
+            .metrics(metrics)
+            .messageTimeout(messageTimeoutNanos, TimeUnit.NANOSECONDS)
+            .build();
+    final CollectorProbe probe =
+        new CollectorProbe(reporter, 1, 1, 1, TimeUnit.HOURS, registry, "test");
+    manager.manage(new ReporterManager(reporter, sender, metrics, probe, executor));
+    return reporter;
+  }
+
+  static final class RecordingSender extends Sender {
+    final List<List<byte[]>> messages = new CopyOnWriteArrayList<>();
+    final CountDownLatch sent = new CountDownLatch(1);
+    final CountDownLatch closing = new CountDownLatch(1);
+    volatile boolean failing;
+    volatile boolean closed;
+
+    @Override
+    public Encoding encoding() {
+      return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes() {
+      return 1024;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+      return Encoding.JSON.listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+      if (failing) {
+        return Call.create(null)
+            .map(
+                ignored -> {
+                  throw new IllegalStateException("connection refused");
+                });
+      }
+      messages.add(encodedSpans);
+      sent.countDown();
+      return Call.create(null);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        closing.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      closed = true;
+    }
+  }
+}
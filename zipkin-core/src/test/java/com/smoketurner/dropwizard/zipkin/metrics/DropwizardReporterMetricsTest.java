@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import java.io.IOException;
+import org.junit.Test;
+
+public class DropwizardReporterMetricsTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+
+  @Test
+  public void shouldReportQueueDepthAsGauges() {
+    final DropwizardReporterMetrics metrics = new DropwizardReporterMetrics(registry);
+    metrics.updateQueuedSpans(12);
+    metrics.updateQueuedBytes(345);
+
+    assertThat(registry.getGauges().get("tracing.reporter.queued.spans").getValue()).isEqualTo(12);
+    assertThat(registry.getGauges().get("tracing.reporter.queued.bytes").getValue()).isEqualTo(345);
+  }
+
+  @Test
+  public void shouldSeparateQueueDropsFromSendFailures() {
+    final DropwizardReporterMetrics metrics = new DropwizardReporterMetrics(registry);
+    metrics.incrementSpansDropped(1);
+    metrics.incrementMessagesDropped(new IOException("connection refused"));
+    metrics.incrementSpansDropped(5);
+    metrics.incrementSpansDropped(1);
+
+    assertThat(registry.meter("tracing.reporter.span.dropped").getCount()).isEqualTo(7);
+    assertThat(registry.meter("tracing.reporter.span.dropped.queue").getCount()).isEqualTo(2);
+    assertThat(registry.meter("tracing.reporter.span.dropped.send").getCount()).isEqualTo(5);
+    assertThat(registry.meter("tracing.reporter.message.dropped").getCount()).isEqualTo(1);
+    assertThat(registry.meter("tracing.reporter.dropped.IOException.messages").getCount())
+        .isEqualTo(1);
+    assertThat(registry.meter("tracing.reporter.dropped.IOException.spans").getCount())
+        .isEqualTo(5);
+  }
+
+  @Test
+  public void shouldNotCollideWithDifferentPrefixes() {
+    final DropwizardReporterMetrics first = new DropwizardReporterMetrics(registry, "first");
+    final DropwizardReporterMetrics second = new DropwizardReporterMetrics(registry, "second");
+    first.incrementSpans(3);
+    first.updateQueuedSpans(1);
+    second.incrementSpans(4);
+    second.updateQueuedSpans(2);
+
+    assertThat(registry.meter("first.span.accepted").getCount()).isEqualTo(3);
+    assertThat(registry.meter("second.span.accepted").getCount()).isEqualTo(4);
+    assertThat(registry.getGauges().get("first.queued.spans").getValue()).isEqualTo(1);
+    assertThat(registry.getGauges().get("second.queued.spans").getValue()).isEqualTo(2);
+  }
+}
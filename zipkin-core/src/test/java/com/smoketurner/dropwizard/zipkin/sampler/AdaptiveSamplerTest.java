@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.MetricRegistry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AdaptiveSamplerTest {
+
+  private final Random random = new Random(42);
+  private final ManualClock clock = new ManualClock();
+  private final AdaptiveSampler sampler = new AdaptiveSampler(10, 1, TimeUnit.SECONDS, 1.0, clock);
+
+  @Test
+  public void shouldTargetTracesPerSecond() {
+    assertThat(run(1000)).isEqualTo(1000);
+
+    // the first request of the next interval adjusts the probability
+    assertThat(run(1000)).isBetween(3, 25);
+    assertThat(sampler.getProbability()).isCloseTo(0.01, within(0.0001));
+
+    // the moving average converges on the new request rate
+    for (int i = 0; i < 10; i++) {
+      run(2000);
+    }
+    assertThat(sampler.getProbability()).isCloseTo(0.005, within(0.0001));
+    assertThat(run(2000)).isBetween(5, 20);
+  }
+
+  @Test
+  public void shouldSampleEverythingBelowTarget() {
+    run(1000);
+    for (int i = 0; i < 20; i++) {
+      run(5);
+    }
+    assertThat(sampler.getProbability()).isEqualTo(1.0);
+    assertThat(run(5)).isEqualTo(5);
+  }
+
+  @Test
+  public void shouldExposeProbabilityGauge() {
+    final MetricRegistry registry = new MetricRegistry();
+    final AdaptiveSamplerFactory factory = new AdaptiveSamplerFactory();
+    factory.setInitialProbability(0.5);
+
+    factory.build(registry);
+
+    assertThat(registry.getGauges().get("tracing.sampler.probability").getValue()).isEqualTo(0.5);
+  }
+
+  /** Sample the given number of requests over one second, and return how many were sampled. */
+  private int run(int requests) {
+    final long step = TimeUnit.SECONDS.toNanos(1) / requests;
+    int sampled = 0;
+    for (int i = 0; i < requests; i++) {
+      if (sampler.isSampled(random.nextLong())) {
+        sampled++;
+      }
+      clock.tick += step;
+    }
+    clock.tick += TimeUnit.SECONDS.toNanos(1) - step * requests;
+    return sampled;
+  }
+
+  private static final class ManualClock extends Clock {
+    long tick;
+
+    @Override
+    public long getTick() {
+      return tick;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.http.HttpRequest;
+import brave.sampler.Sampler;
+import brave.sampler.SamplerFunction;
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class LoadShedderTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private long tick = 0L;
+  private double load = 0.0;
+  private final LoadShedder shedder =
+      new LoadShedder(
+          () -> load,
+          0.8,
+          0.5,
+          5,
+          TimeUnit.SECONDS,
+          new Clock() {
+            @Override
+            public long getTick() {
+              return tick;
+            }
+          },
+          registry,
+          "test");
+  private final Sampler sampler = shedder.wrap(Sampler.ALWAYS_SAMPLE);
+
+  @Test
+  public void shouldShedWhileLoadStaysHigh() {
+    load = 0.9;
+    shedder.check();
+    tick += TimeUnit.SECONDS.toNanos(4);
+    shedder.check();
+    assertThat(shedder.isShedding()).isFalse();
+    assertThat(sampler.isSampled(1L)).isTrue();
+
+    tick += TimeUnit.SECONDS.toNanos(1);
+    shedder.check();
+    assertThat(shedder.isShedding()).isTrue();
+    assertThat(sampler.isSampled(1L)).isFalse();
+
+    // between the marks, keep shedding until the queue drains
+    load = 0.6;
+    shedder.check();
+    assertThat(shedder.isShedding()).isTrue();
+
+    load = 0.4;
+    shedder.check();
+    assertThat(shedder.isShedding()).isFalse();
+    assertThat(sampler.isSampled(1L)).isTrue();
+
+    assertThat(registry.meter("test.shed.traces").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotShedOnShortSpikes() {
+    load = 0.9;
+    shedder.check();
+    tick += TimeUnit.SECONDS.toNanos(3);
+    load = 0.7;
+    shedder.check();
+    load = 0.9;
+    tick += TimeUnit.SECONDS.toNanos(3);
+    shedder.check();
+
+    assertThat(shedder.isShedding()).isFalse();
+    assertThat(registry.getGauges().get("test.shedding").getValue()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldShedHttpRequests() {
+    final SamplerFunction<HttpRequest> rules = shedder.wrapHttpSampler(request -> Boolean.TRUE);
+    load = 1.0;
+    shedder.check();
+    tick += TimeUnit.SECONDS.toNanos(5);
+    shedder.check();
+
+    assertThat(rules.trySample(null)).isFalse();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+public class PathPatternMatcherTest {
+
+  @Test
+  public void shouldMatchLiteralSegments() {
+    final PathPatternMatcher matcher = PathPatternMatcher.compile("/ping");
+    assertThat(matcher.matchesPath("/ping")).isTrue();
+    assertThat(matcher.matchesPath("/ping/")).isTrue();
+    assertThat(matcher.matchesPath("/pings")).isFalse();
+    assertThat(matcher.matchesPath("/ping/pong")).isFalse();
+    assertThat(matcher.matchesPath("/")).isFalse();
+    assertThat(matcher.matchesPath(null)).isFalse();
+  }
+
+  @Test
+  public void shouldMatchSingleSegmentWildcards() {
+    final PathPatternMatcher matcher = PathPatternMatcher.compile("/users/*/orders");
+    assertThat(matcher.matchesPath("/users/123/orders")).isTrue();
+    assertThat(matcher.matchesPath("/users//orders")).isFalse();
+    assertThat(matcher.matchesPath("/users/123/456/orders")).isFalse();
+    assertThat(matcher.matchesPath("/users/123")).isFalse();
+  }
+
+  @Test
+  public void shouldMatchAnySuffix() {
+    final PathPatternMatcher matcher = PathPatternMatcher.compile("/bulk/**");
+    assertThat(matcher.matchesPath("/bulk")).isTrue();
+    assertThat(matcher.matchesPath("/bulk/")).isTrue();
+    assertThat(matcher.matchesPath("/bulk/a/b/c")).isTrue();
+    assertThat(matcher.matchesPath("/bulkier")).isFalse();
+  }
+
+  @Test
+  public void shouldRejectInvalidPatterns() {
+    assertThatThrownBy(() -> PathPatternMatcher.compile("ping"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> PathPatternMatcher.compile("/users*"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> PathPatternMatcher.compile("/**/users"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.ScopedSpan;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.http.HttpTracing;
+import brave.propagation.TraceContext;
+import com.smoketurner.dropwizard.zipkin.AbstractZipkinFactory;
+import io.dropwizard.setup.Environment;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.junit.After;
+import org.junit.Test;
+
+public class ResourceMethodSamplerTest {
+
+  private static final URI BASE_URI = URI.create("http://localhost:8080/");
+
+  private final Queue<MutableSpan> spans = new ConcurrentLinkedQueue<>();
+  private final Environment environment = new Environment("test");
+  private ApplicationHandler handler;
+  private HttpTracing httpTracing;
+
+  @Path("/")
+  public static class Resource {
+    @GET
+    @Path("plain")
+    public String plain() {
+      return child("plain");
+    }
+
+    @GET
+    @Path("health")
+    @NotTraced
+    public String health() {
+      return "ok";
+    }
+
+    @GET
+    @Path("traced")
+    @Traced
+    public String traced() {
+      return child("traced");
+    }
+
+    @GET
+    @Path("rare")
+    @Traced(sampleRate = 0.001f)
+    public String rare() {
+      return "rare";
+    }
+
+    private static String child(String name) {
+      final ScopedSpan span = Tracing.currentTracer().startScopedSpan(name);
+      span.finish();
+      return name;
+    }
+  }
+
+  @Path("/polling")
+  @NotTraced
+  public static class PollingResource {
+    @GET
+    public String poll() {
+      return "ok";
+    }
+
+    @GET
+    @Path("traced")
+    @Traced(sampleRate = 1.0f)
+    public String traced() {
+      return "ok";
+    }
+  }
+
+  @PreMatching
+  public static class SlowFilter implements ContainerRequestFilter {
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    // the environment was never started, so its managed objects would not close the tracing
+    httpTracing.tracing().close();
+  }
+
+  @Test
+  public void shouldSampleTracedMethods() throws Exception {
+    start(0.0f);
+
+    request("/plain");
+    request("/health");
+    request("/traced");
+
+    assertThat(serverSpans()).containsExactly("GET /traced");
+    final MutableSpan server = spans.stream().filter(s -> s.kind() != null).findFirst().get();
+    final MutableSpan child = spans.stream().filter(s -> s.kind() == null).findFirst().get();
+    assertThat(child.name()).isEqualTo("traced");
+    assertThat(child.parentId()).isEqualTo(server.id());
+  }
+
+  @Test
+  public void shouldNotSampleNotTracedMethods() throws Exception {
+    start(1.0f);
+
+    request("/plain");
+    request("/health");
+    request("/polling");
+    request("/polling/traced");
+    request("/missing");
+
+    assertThat(serverSpans()).containsExactly("GET /plain", "GET /polling/traced", "GET not_found");
+  }
+
+  @Test
+  public void shouldJoinSampledTracesOfNotTracedMethods() throws Exception {
+    start(1.0f);
+
+    final ContainerRequest request = newRequest("/health");
+    request.header("b3", "0000000000000001-0000000000000002-1");
+    handler.apply(request).get(5, TimeUnit.SECONDS);
+
+    assertThat(serverSpans()).containsExactly("GET /health");
+  }
+
+  @Test
+  public void shouldSampleRatesBelowOnePercent() throws Exception {
+    start(1.0f);
+
+    assertThat(handler.apply(newRequest("/rare")).get(5, TimeUnit.SECONDS).getStatus())
+        .isEqualTo(200);
+    final ContainerRequest request = newRequest("/rare");
+    request.header("b3", "0000000000000001-0000000000000002-1");
+    handler.apply(request).get(5, TimeUnit.SECONDS);
+
+    assertThat(serverSpans()).contains("GET /rare");
+  }
+
+  @Test
+  public void shouldOnlyStartTheSpansOfAnnotatedMethodsAtMatching() throws Exception {
+    start(1.0f, new SlowFilter());
+
+    request("/plain");
+    request("/polling/traced");
+    request("/missing");
+
+    assertThat(serverDuration("GET /plain")).isGreaterThanOrEqualTo(50_000L);
+    assertThat(serverDuration("GET not_found")).isGreaterThanOrEqualTo(50_000L);
+    assertThat(serverDuration("GET /polling/traced")).isLessThan(50_000L);
+  }
+
+  private void start(float sampleRate, Object... components) {
+    final AbstractZipkinFactory factory =
+        new AbstractZipkinFactory() {
+          @Override
+          public Optional<HttpTracing> build(Environment environment) {
+            return buildTracing(
+                environment,
+                new SpanHandler() {
+                  @Override
+                  public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                    spans.add(span);
+                    return true;
+                  }
+                });
+          }
+        };
+    factory.setSampleRate(sampleRate);
+    httpTracing = factory.build(environment).get();
+    environment.jersey().register(Resource.class);
+    environment.jersey().register(PollingResource.class);
+    for (Object component : components) {
+      environment.jersey().register(component);
+    }
+    handler = new ApplicationHandler(environment.jersey().getResourceConfig());
+  }
+
+  private List<String> serverSpans() {
+    return spans.stream()
+        .filter(span -> span.kind() == brave.Span.Kind.SERVER)
+        .map(MutableSpan::name)
+        .collect(Collectors.toList());
+  }
+
+  private long serverDuration(String name) {
+    final MutableSpan span =
+        spans.stream()
+            .filter(s -> s.kind() == brave.Span.Kind.SERVER && name.equals(s.name()))
+            .findFirst()
+            .get();
+    return span.finishTimestamp() - span.startTimestamp();
+  }
+
+  private void request(String path) throws Exception {
+    handler.apply(newRequest(path)).get(5, TimeUnit.SECONDS);
+  }
+
+  private static ContainerRequest newRequest(String path) {
+    return new ContainerRequest(
+        BASE_URI, BASE_URI.resolve(path), "GET", null, new MapPropertiesDelegate());
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sampler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.http.HttpRequest;
+import brave.http.HttpServerRequest;
+import brave.sampler.BoundarySampler;
+import brave.sampler.SamplerFunction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.smoketurner.dropwizard.zipkin.AbstractZipkinFactory;
+import com.smoketurner.dropwizard.zipkin.ZipkinFactory;
+import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import java.io.IOException;
+import org.junit.Test;
+
+public class SamplerFactoryTest {
+
+  private final ObjectMapper mapper =
+      new ObjectMapper(new YAMLFactory()).setSubtypeResolver(new DiscoverableSubtypeResolver());
+
+  @Test
+  public void isDiscoverable() {
+    assertThat(new DiscoverableSubtypeResolver().getDiscoveredSubtypes())
+        .contains(
+            AdaptiveSamplerFactory.class,
+            BoundarySamplerFactory.class,
+            HttpRulesSamplerFactory.class,
+            ProbabilitySamplerFactory.class,
+            RateLimitedSamplerFactory.class);
+  }
+
+  @Test
+  public void shouldBeConfigurable() throws IOException {
+    final AbstractZipkinFactory factory =
+        (AbstractZipkinFactory)
+            mapper.readValue(
+                "collector: empty\n"
+                    + "sampler:\n"
+                    + "  type: rate-limited\n"
+                    + "  tracesPerSecond: 5\n",
+                ZipkinFactory.class);
+    assertThat(factory.getSamplerFactory()).isInstanceOf(RateLimitedSamplerFactory.class);
+    assertThat(((RateLimitedSamplerFactory) factory.getSamplerFactory()).getTracesPerSecond())
+        .isEqualTo(5);
+  }
+
+  @Test
+  public void shouldApplyHttpRulesInOrder() throws IOException {
+    final HttpRulesSamplerFactory factory =
+        (HttpRulesSamplerFactory)
+            mapper.readValue(
+                "type: http\n"
+                    + "rules:\n"
+                    + "  - method: GET\n"
+                    + "    path: /ping\n"
+                    + "    probability: 0.0\n"
+                    + "  - pattern: /users/*/orders\n"
+                    + "    probability: 1.0\n"
+                    + "  - path: /users\n"
+                    + "    tracesPerSecond: 0\n",
+                SamplerFactory.class);
+    assertThat(factory.getRules()).hasSize(3);
+    assertThat(factory.getRules().get(0).isMatcherValid()).isTrue();
+    assertThat(factory.getRules().get(0).isSamplerValid()).isTrue();
+
+    final SamplerFunction<HttpRequest> sampler = factory.buildServerSampler().get();
+    assertThat(sampler.trySample(request("GET", "/ping"))).isFalse();
+    assertThat(sampler.trySample(request("POST", "/ping"))).isNull();
+    assertThat(sampler.trySample(request("GET", "/users/1/orders"))).isTrue();
+    assertThat(sampler.trySample(request("GET", "/users/1"))).isFalse();
+    assertThat(sampler.trySample(request("GET", "/other"))).isNull();
+  }
+
+  @Test
+  public void shouldRejectAmbiguousRules() {
+    final HttpSamplingRule rule = new HttpSamplingRule();
+    assertThat(rule.isMatcherValid()).isFalse();
+    assertThat(rule.isSamplerValid()).isFalse();
+
+    rule.setPath("/ping");
+    rule.setPattern("/ping");
+    rule.setProbability(0.1f);
+    rule.setTracesPerSecond(1);
+    assertThat(rule.isMatcherValid()).isFalse();
+    assertThat(rule.isSamplerValid()).isFalse();
+  }
+
+  @Test
+  public void shouldSampleProbabilitiesBelowOnePercent() {
+    final HttpSamplingRule rule = new HttpSamplingRule();
+    rule.setPath("/ping");
+    rule.setProbability(0.001f);
+    assertThat(rule.isProbabilityValid()).isTrue();
+    assertThat(rule.buildSampler()).isNotNull();
+
+    rule.setProbability(0.00001f);
+    assertThat(rule.isProbabilityValid()).isFalse();
+
+    final ProbabilitySamplerFactory factory = new ProbabilitySamplerFactory();
+    factory.setProbability(0.001f);
+    assertThat(factory.isProbabilityValid()).isTrue();
+    assertThat(factory.build()).isInstanceOf(BoundarySampler.class);
+  }
+
+  private static HttpRequest request(String method, String path) {
+    return new HttpServerRequest() {
+      @Override
+      public String method() {
+        return method;
+      }
+
+      @Override
+      public String path() {
+        return path;
+      }
+
+      @Override
+      public String url() {
+        return "http://localhost" + path;
+      }
+
+      @Override
+      public String header(String name) {
+        return null;
+      }
+
+      @Override
+      public Object unwrap() {
+        return this;
+      }
+    };
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.zipkin.metrics.DropwizardReporterMetrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+public class AsyncSenderTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final DropwizardReporterMetrics metrics = new DropwizardReporterMetrics(registry);
+  private final PendingSender delegate = new PendingSender();
+  private final AsyncSender sender =
+      new AsyncSender(delegate, 2, TimeUnit.SECONDS.toNanos(1), metrics, registry, "test");
+
+  @Test
+  public void shouldNotWaitForTheDelegate() throws IOException {
+    sender.sendSpans(Collections.singletonList(new byte[1])).execute();
+    sender.sendSpans(Collections.singletonList(new byte[1])).execute();
+
+    assertThat(delegate.callbacks).hasSize(2);
+    assertThat(sender.getInFlight()).isEqualTo(2);
+    assertThat(registry.getGauges().get("test.send.in-flight").getValue()).isEqualTo(2);
+
+    delegate.callbacks.get(0).onSuccess(null);
+    assertThat(sender.getInFlight()).isEqualTo(1);
+    assertThat(registry.timer("test.send.latency").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRecordFailedMessages() throws IOException {
+    final List<byte[]> spans = new ArrayList<>();
+    spans.add(new byte[1]);
+    spans.add(new byte[1]);
+    sender.sendSpans(spans).execute();
+
+    delegate.callbacks.get(0).onError(new IOException("connection reset"));
+
+    assertThat(sender.getInFlight()).isEqualTo(0);
+    assertThat(registry.meter("tracing.reporter.message.dropped").getCount()).isEqualTo(1);
+    assertThat(registry.meter("tracing.reporter.span.dropped.send").getCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldLimitAndTimeEnqueuedMessages() {
+    final List<Throwable> errors = new ArrayList<>();
+    final Callback<Void> callback =
+        new Callback<Void>() {
+          @Override
+          public void onSuccess(Void value) {}
+
+          @Override
+          public void onError(Throwable t) {
+            errors.add(t);
+          }
+        };
+    sender.sendSpans(Collections.singletonList(new byte[1])).enqueue(callback);
+    sender.sendSpans(Collections.singletonList(new byte[1])).enqueue(callback);
+    assertThat(sender.getInFlight()).isEqualTo(2);
+
+    delegate.callbacks.get(0).onSuccess(null);
+    delegate.callbacks.get(1).onError(new IOException("connection reset"));
+
+    assertThat(sender.getInFlight()).isEqualTo(0);
+    assertThat(registry.timer("test.send.latency").getCount()).isEqualTo(2);
+    assertThat(errors).hasSize(1);
+    // the caller is told of the failure, so it is not recorded twice
+    assertThat(registry.meter("tracing.reporter.message.dropped").getCount()).isEqualTo(0);
+  }
+
+  static final class PendingSender extends Sender {
+    final List<Callback<Void>> callbacks = new ArrayList<>();
+
+    @Override
+    public Encoding encoding() {
+      return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes() {
+      return 1024;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+      return Encoding.JSON.listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+      return new Call.Base<Void>() {
+        @Override
+        protected Void doExecute() {
+          throw new AssertionError("should be enqueued");
+        }
+
+        @Override
+        protected void doEnqueue(Callback<Void> callback) {
+          callbacks.add(callback);
+        }
+
+        @Override
+        public Call<Void> clone() {
+          return this;
+        }
+      };
+    }
+  }
+}
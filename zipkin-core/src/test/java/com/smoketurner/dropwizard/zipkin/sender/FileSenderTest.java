@@ -0,0 +1,256 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.MetricRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import zipkin2.Span;
+import zipkin2.codec.Encoding;
+import zipkin2.codec.SpanBytesDecoder;
+import zipkin2.codec.SpanBytesEncoder;
+import zipkin2.reporter.ClosedSenderException;
+
+public class FileSenderTest {
+
+  private static final Span SPAN =
+      Span.newBuilder().traceId("1").id("2").name("get").timestamp(1L).duration(1L).build();
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private long time = 1_600_000_000_000L;
+  private final Clock clock =
+      new Clock() {
+        @Override
+        public long getTick() {
+          return TimeUnit.MILLISECONDS.toNanos(time);
+        }
+
+        @Override
+        public long getTime() {
+          return time;
+        }
+      };
+  private FileSender sender;
+
+  @After
+  public void tearDown() throws IOException {
+    if (sender != null) {
+      sender.close();
+    }
+  }
+
+  @Test
+  public void shouldWriteOneSpanPerLine() throws IOException {
+    sender = sender(Encoding.JSON, 1024 * 1024, false, 10, 0L);
+    final byte[] json = SpanBytesEncoder.JSON_V2.encode(SPAN);
+
+    sender.sendSpans(Arrays.asList(json, json)).execute();
+
+    final Path current = sender.getCurrentFile();
+    assertThat(current.getFileName().toString()).startsWith("spans-").endsWith(".ndjson.part");
+    assertThat(Files.size(current)).isZero();
+
+    sender.maintain();
+    assertThat(new String(Files.readAllBytes(current), UTF_8).split("\n"))
+        .hasSize(2)
+        .allSatisfy(line -> assertThat(SpanBytesDecoder.JSON_V2.decodeOne(line.getBytes(UTF_8))));
+    assertThat(sender.messageSizeInBytes(Arrays.asList(json, json)))
+        .isEqualTo(2 * (json.length + 1));
+    assertThat(registry.meter("test.file.written.bytes").getCount())
+        .isEqualTo(2 * (json.length + 1));
+
+    sender.close();
+    assertThat(files()).hasSize(1);
+    assertThat(files().get(0).getFileName().toString()).endsWith(".ndjson");
+  }
+
+  @Test
+  public void shouldRollBySize() throws IOException {
+    sender = sender(Encoding.JSON, 1, false, 10, 0L);
+    final List<byte[]> message = Arrays.asList(SpanBytesEncoder.JSON_V2.encode(SPAN));
+
+    sender.sendSpans(message).execute();
+    time += 1;
+    sender.sendSpans(message).execute();
+    time += 1;
+    sender.sendSpans(message).execute();
+
+    assertThat(files()).hasSize(2);
+    assertThat(registry.meter("test.file.rolled").getCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldRollByTime() throws IOException {
+    sender = sender(Encoding.JSON, 1024 * 1024, false, 10, 0L);
+    sender.sendSpans(Arrays.asList(SpanBytesEncoder.JSON_V2.encode(SPAN))).execute();
+
+    sender.maintain();
+    assertThat(files()).isEmpty();
+
+    time += TimeUnit.MINUTES.toMillis(1);
+    sender.maintain();
+    assertThat(files()).hasSize(1);
+    assertThat(sender.getCurrentFile()).isNull();
+  }
+
+  @Test
+  public void shouldDeleteTheOldestFiles() throws IOException {
+    sender = sender(Encoding.JSON, 1, false, 2, 0L);
+    final List<byte[]> message = Arrays.asList(SpanBytesEncoder.JSON_V2.encode(SPAN));
+
+    for (int i = 0; i < 5; i++) {
+      time += 1;
+      sender.sendSpans(message).execute();
+    }
+    final Path newest = sender.getCurrentFile();
+    sender.close();
+
+    assertThat(files()).hasSize(2);
+    assertThat(files().get(1).toString() + ".part").isEqualTo(newest.toString());
+    assertThat(registry.meter("test.file.deleted").getCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldLimitTheTotalSize() throws IOException {
+    final List<byte[]> message = Arrays.asList(SpanBytesEncoder.JSON_V2.encode(SPAN));
+    final long messageBytes = message.get(0).length + 1;
+    sender = sender(Encoding.JSON, 1, false, 10, 2 * messageBytes);
+
+    for (int i = 0; i < 5; i++) {
+      time += 1;
+      sender.sendSpans(message).execute();
+    }
+    sender.close();
+
+    assertThat(files()).hasSize(2);
+  }
+
+  @Test
+  public void shouldCompressProtoSpans() throws IOException {
+    sender = sender(Encoding.PROTO3, 1024 * 1024, true, 10, 0L);
+    final byte[] proto = SpanBytesEncoder.PROTO3.encode(SPAN);
+
+    sender.sendSpans(Arrays.asList(proto, proto)).execute();
+    sender.close();
+
+    final Path file = files().get(0);
+    assertThat(file.getFileName().toString()).endsWith(".pb.gz");
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        bytes.write(buffer, 0, read);
+      }
+      assertThat(SpanBytesDecoder.PROTO3.decodeList(bytes.toByteArray()))
+          .containsExactly(SPAN, SPAN);
+    }
+  }
+
+  @Test
+  public void shouldFlushCompressedSpans() throws IOException {
+    sender = sender(Encoding.JSON, 1024 * 1024, true, 10, 0L);
+    final byte[] json = SpanBytesEncoder.JSON_V2.encode(SPAN);
+
+    sender.sendSpans(Arrays.asList(json, json)).execute();
+    sender.maintain();
+
+    // the file is still open, so its gzip stream has no trailer yet
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(sender.getCurrentFile()))) {
+      int read;
+      while ((read = in.read()) >= 0) {
+        bytes.write(read);
+      }
+    } catch (EOFException e) {
+      // expected at the end of the flushed bytes
+    }
+    assertThat(new String(bytes.toByteArray(), UTF_8).split("\n"))
+        .hasSize(2)
+        .allSatisfy(line -> assertThat(SpanBytesDecoder.JSON_V2.decodeOne(line.getBytes(UTF_8))));
+  }
+
+  @Test
+  public void shouldCompleteFilesLeftByAPreviousRun() throws IOException {
+    Files.write(folder.getRoot().toPath().resolve("spans-1-0.ndjson.part"), new byte[] {'\n'});
+
+    sender = sender(Encoding.JSON, 1024 * 1024, false, 10, 0L);
+
+    assertThat(files())
+        .extracting(path -> path.getFileName().toString())
+        .containsExactly("spans-1-0.ndjson");
+  }
+
+  @Test
+  public void shouldRejectSpansOnceClosed() throws IOException {
+    sender = sender(Encoding.JSON, 1024 * 1024, false, 10, 0L);
+    sender.close();
+
+    assertThat(sender.check().ok()).isFalse();
+    assertThatThrownBy(() -> sender.sendSpans(Arrays.asList(new byte[1])))
+        .isInstanceOf(ClosedSenderException.class);
+  }
+
+  private FileSender sender(
+      Encoding encoding, long maxFileBytes, boolean compress, int maxFiles, long maxTotalBytes)
+      throws IOException {
+    return new FileSender(
+        folder.getRoot().toPath(),
+        "spans",
+        encoding,
+        1024 * 1024,
+        maxFileBytes,
+        1,
+        TimeUnit.MINUTES,
+        compress,
+        maxFiles,
+        maxTotalBytes,
+        clock,
+        registry,
+        "test");
+  }
+
+  /** Rolled span files, from the oldest. */
+  private List<Path> files() throws IOException {
+    try (Stream<Path> paths = Files.list(folder.getRoot().toPath())) {
+      return paths
+          .filter(path -> !path.toString().endsWith(".part"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillQueueTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static List<byte[]> message(String span) {
+    return Collections.singletonList(span.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String first(List<byte[]> message) {
+    return new String(message.get(0), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void shouldReturnMessagesInOrder() throws IOException {
+    try (SpillQueue queue = new SpillQueue(folder.getRoot().toPath(), 1024, 64)) {
+      queue.append(message("one"));
+      queue.append(message("two"));
+      assertThat(queue.getPendingBytes()).isEqualTo(2 * SpillQueue.recordSize(message("one")));
+
+      assertThat(first(queue.peek())).isEqualTo("one");
+      queue.remove();
+      assertThat(first(queue.peek())).isEqualTo("two");
+      queue.remove();
+      assertThat(queue.peek()).isNull();
+      assertThat(queue.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldEvictTheOldestSegmentWhenFull() throws IOException {
+    final int recordSize = SpillQueue.recordSize(message("first"));
+    final int segmentSize = SpillQueue.HEADER_SIZE + recordSize;
+    try (SpillQueue queue =
+        new SpillQueue(folder.getRoot().toPath(), 2 * segmentSize, segmentSize)) {
+      assertThat(queue.append(message("first"))).isZero();
+      assertThat(queue.append(message("other"))).isZero();
+      assertThat(queue.append(message("third"))).isEqualTo(recordSize);
+
+      assertThat(first(queue.peek())).isEqualTo("other");
+    }
+  }
+
+  @Test
+  public void shouldRejectMessagesLargerThanASegment() throws IOException {
+    try (SpillQueue queue = new SpillQueue(folder.getRoot().toPath(), 1024, 16)) {
+      assertThat(queue.append(message("larger than a segment"))).isEqualTo(-1);
+      assertThat(queue.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldRecoverMessagesAfterARestart() throws IOException {
+    final Path directory = folder.getRoot().toPath();
+    try (SpillQueue queue = new SpillQueue(directory, 1024, 64)) {
+      queue.append(message("one"));
+      queue.append(message("two"));
+    }
+
+    try (SpillQueue queue = new SpillQueue(directory, 1024, 64)) {
+      assertThat(first(queue.peek())).isEqualTo("one");
+      queue.remove();
+      assertThat(first(queue.peek())).isEqualTo("two");
+      queue.append(message("six"));
+      queue.remove();
+      assertThat(first(queue.peek())).isEqualTo("six");
+    }
+  }
+
+  @Test
+  public void shouldNotReplaySentMessagesAfterARestart() throws IOException {
+    final Path directory = folder.getRoot().toPath();
+    try (SpillQueue queue = new SpillQueue(directory, 1024, 64)) {
+      queue.append(message("one"));
+      queue.append(message("two"));
+      queue.append(message("six"));
+      queue.peek();
+      queue.remove();
+    }
+
+    try (SpillQueue queue = new SpillQueue(directory, 1024, 64)) {
+      assertThat(queue.getPendingBytes()).isEqualTo(2 * SpillQueue.recordSize(message("two")));
+      assertThat(first(queue.peek())).isEqualTo("two");
+      queue.remove();
+      assertThat(first(queue.peek())).isEqualTo("six");
+    }
+  }
+
+  @Test
+  public void shouldDeleteReplayedSegments() throws IOException {
+    final Path directory = folder.getRoot().toPath();
+    try (SpillQueue queue = new SpillQueue(directory, 1024, 64)) {
+      queue.append(message("one"));
+      queue.peek();
+      queue.remove();
+      assertThat(directory.toFile().list()).isEmpty();
+    }
+  }
+
+  @Test
+  public void shouldEvictRecoveredSegmentsBeyondTheMaximumSize() throws IOException {
+    final Path directory = folder.getRoot().toPath();
+    final int recordSize = SpillQueue.recordSize(message("first"));
+    final int segmentSize = SpillQueue.HEADER_SIZE + recordSize;
+    try (SpillQueue queue = new SpillQueue(directory, 3 * segmentSize, segmentSize)) {
+      queue.append(message("first"));
+      queue.append(message("other"));
+      queue.append(message("third"));
+    }
+
+    try (SpillQueue queue = new SpillQueue(directory, segmentSize, segmentSize)) {
+      assertThat(queue.getEvictedOnRecovery()).isEqualTo(2 * recordSize);
+      assertThat(queue.getPendingBytes()).isEqualTo(recordSize);
+      assertThat(directory.toFile().list()).hasSize(1);
+      assertThat(first(queue.peek())).isEqualTo("third");
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.sender;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codahale.metrics.MetricRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+public class SpillingSenderTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final FlakySender delegate = new FlakySender();
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private SpillingSender sender;
+
+  @Before
+  public void setUp() throws IOException {
+    final SpillQueue queue = new SpillQueue(folder.getRoot().toPath(), 4096, 1024);
+    sender =
+        new SpillingSender(delegate, queue, executor, TimeUnit.HOURS.toNanos(1), registry, "test");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    sender.close();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldSpillAndReplayOnceTheSenderRecovers() throws IOException {
+    final List<byte[]> spans = Collections.singletonList(new byte[10]);
+    final int recordSize = SpillQueue.recordSize(spans);
+
+    delegate.up = false;
+    sender.sendSpans(spans).execute();
+    sender.sendSpans(spans).execute();
+
+    assertThat(sender.isFailing()).isTrue();
+    assertThat(delegate.attempts).isEqualTo(1);
+    assertThat(delegate.sent).isEmpty();
+    assertThat(registry.meter("test.spill.spilled.bytes").getCount()).isEqualTo(2 * recordSize);
+    assertThat(registry.getGauges().get("test.spill.pending.bytes").getValue())
+        .isEqualTo(2L * recordSize);
+
+    sender.replay();
+    assertThat(delegate.sent).isEmpty();
+
+    delegate.up = true;
+    sender.replay();
+
+    assertThat(sender.isFailing()).isFalse();
+    assertThat(delegate.sent).hasSize(2);
+    assertThat(registry.meter("test.spill.replayed.bytes").getCount()).isEqualTo(2 * recordSize);
+    assertThat(registry.getGauges().get("test.spill.pending.bytes").getValue()).isEqualTo(0L);
+  }
+
+  @Test
+  public void shouldSendDirectlyWhenTheSenderIsUp() throws IOException {
+    sender.sendSpans(Collections.singletonList(new byte[10])).execute();
+
+    assertThat(delegate.sent).hasSize(1);
+    assertThat(registry.meter("test.spill.spilled.bytes").getCount()).isZero();
+  }
+
+  static final class FlakySender extends Sender {
+    final List<List<byte[]>> sent = new ArrayList<>();
+    volatile boolean up = true;
+    int attempts;
+
+    @Override
+    public Encoding encoding() {
+      return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes() {
+      return 1024;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+      return Encoding.JSON.listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public CheckResult check() {
+      return up ? CheckResult.OK : CheckResult.failed(new IOException("connection refused"));
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+      attempts++;
+      if (!up) {
+        return new Call.Base<Void>() {
+          @Override
+          protected Void doExecute() throws IOException {
+            throw new IOException("connection refused");
+          }
+
+          @Override
+          protected void doEnqueue(Callback<Void> callback) {
+            callback.onError(new IOException("connection refused"));
+          }
+
+          @Override
+          public Call<Void> clone() {
+            return this;
+          }
+        };
+      }
+      sent.add(encodedSpans);
+      return Call.create(null);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.servlets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.http.HttpTracing;
+import brave.propagation.TraceContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.servlet.ServletContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TracingFilterTest {
+
+  private final List<MutableSpan> spans = new CopyOnWriteArrayList<>();
+  private final Tracing tracing =
+      Tracing.newBuilder()
+          .addSpanHandler(
+              new SpanHandler() {
+                @Override
+                public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                  spans.add(span);
+                  return true;
+                }
+              })
+          .build();
+  private final Server server = new Server(0);
+
+  @Path("/users")
+  public static class UserResource {
+    @GET
+    @Path("/{id}")
+    public String get(@PathParam("id") String id) {
+      return "user " + id;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    final ServletContextHandler context = new ServletContextHandler();
+    context.addFilter(
+        new FilterHolder(new TracingFilter(HttpTracing.create(tracing))),
+        "/*",
+        EnumSet.of(DispatcherType.REQUEST));
+    context.addServlet(
+        new ServletHolder(
+            new HttpServlet() {
+              private static final long serialVersionUID = 1L;
+
+              @Override
+              protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+                  throws IOException {
+                resp.getOutputStream().write("static".getBytes(StandardCharsets.UTF_8));
+              }
+            }),
+        "/static");
+    context.addServlet(
+        new ServletHolder(
+            new ServletContainer(
+                new ResourceConfig(UserResource.class, RouteApplicationEventListener.class))),
+        "/api/*");
+    server.setHandler(context);
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop();
+    tracing.close();
+  }
+
+  @Test
+  public void shouldTraceServletRequests() throws Exception {
+    assertThat(get("/static")).isEqualTo("static");
+
+    final MutableSpan span = awaitSpan();
+    assertThat(span.name()).isEqualTo("GET");
+    assertThat(span.tags())
+        .containsEntry("http.path", "/static")
+        .containsEntry("http.response.size", "6")
+        .containsEntry("http.request.size", "0")
+        .containsKey("jetty.queue.size");
+    assertThat(span.annotationCount()).isEqualTo(1);
+    assertThat(span.annotationValueAt(0)).isEqualTo("jetty.dispatch");
+    assertThat(span.annotationTimestampAt(0)).isGreaterThanOrEqualTo(span.startTimestamp());
+  }
+
+  @Test
+  public void shouldNameJerseySpansAfterTheirRoute() throws Exception {
+    assertThat(get("/api/users/1")).isEqualTo("user 1");
+
+    final MutableSpan span = awaitSpan();
+    assertThat(span.name()).isEqualTo("GET /api/users/{id}");
+    assertThat(span.tags()).containsEntry("http.response.size", "6");
+  }
+
+  private String get(String path) throws IOException {
+    final int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    final HttpURLConnection connection =
+        (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+    try (InputStream input = connection.getInputStream()) {
+      final byte[] buffer = new byte[1024];
+      final int read = input.read(buffer);
+      return new String(buffer, 0, read, StandardCharsets.UTF_8);
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /** The span finishes after the response is written, so it may trail the client slightly. */
+  private MutableSpan awaitSpan() throws InterruptedException {
+    for (int i = 0; i < 100 && spans.isEmpty(); i++) {
+      Thread.sleep(10);
+    }
+    assertThat(spans).hasSize(1);
+    return spans.get(0);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.tasks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.codahale.metrics.MetricRegistry;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+public class ExportTaskTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final List<MutableSpan> reported = new ArrayList<>();
+  private final List<Long> begun = new ArrayList<>();
+  private final Tracing tracing =
+      Tracing.newBuilder()
+          .addSpanHandler(
+              new SpanHandler() {
+                @Override
+                public boolean begin(TraceContext context, MutableSpan span, TraceContext parent) {
+                  begun.add(context.spanId());
+                  return true;
+                }
+
+                @Override
+                public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                  reported.add(span);
+                  return true;
+                }
+              })
+          .build();
+  private final ExportTask task = new ExportTask(tracing, registry, "test");
+
+  @After
+  public void tearDown() {
+    tracing.close();
+  }
+
+  @Test
+  public void shouldPauseAndResumeTracing() throws Exception {
+    final brave.Span inProgress = tracing.tracer().newTrace().name("in-progress").start();
+
+    assertThat(execute("true")).isEqualTo("paused: true\n");
+    final brave.Span paused = tracing.tracer().newTrace().name("paused").start();
+    paused.finish();
+    inProgress.finish();
+    // new spans are not recorded at all, so no span handler sees them
+    assertThat(paused.isNoop()).isTrue();
+    assertThat(begun).containsExactly(inProgress.context().spanId());
+    assertThat(reported).isEmpty();
+    assertThat(registry.getGauges().get("test.export.paused").getValue()).isEqualTo(1);
+
+    assertThat(execute("false")).isEqualTo("paused: false\n");
+    tracing.tracer().newTrace().name("resumed").start().finish();
+    assertThat(reported).extracting(MutableSpan::name).containsExactly("resumed");
+
+    // setting the current state again is not a swap
+    execute("false");
+    assertThat(registry.meter("test.export.swaps").getCount()).isEqualTo(2);
+  }
+
+  private String execute(String paused) throws Exception {
+    final StringWriter output = new StringWriter();
+    task.execute(
+        Collections.singletonMap("paused", Collections.singletonList(paused)),
+        new PrintWriter(output));
+    return output.toString();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.tasks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import brave.Tracing;
+import brave.http.HttpRequest;
+import brave.http.HttpRequestMatchers;
+import brave.http.HttpRuleSampler;
+import brave.http.HttpServerHandler;
+import brave.http.HttpServerRequest;
+import brave.http.HttpServerResponse;
+import brave.http.HttpTracing;
+import brave.sampler.BoundarySampler;
+import brave.sampler.Sampler;
+import brave.sampler.SamplerFunction;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.dropwizard.zipkin.sampler.SwitchableSampler;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class SamplerTaskTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+  private final SwitchableSampler sampler = new SwitchableSampler(Sampler.ALWAYS_SAMPLE);
+  private final SamplerTask task = new SamplerTask(sampler, registry, "test");
+
+  @Test
+  public void shouldSwapSampler() throws Exception {
+    assertThat(execute("probability", "0.0"))
+        .startsWith("sampler: probability=0.0\n")
+        .contains("keep their own sampler");
+    assertThat(sampler.isSampled(1L)).isFalse();
+    assertThat(sampler.isSwapped()).isTrue();
+
+    assertThat(execute("tracesPerSecond", "5")).startsWith("sampler: tracesPerSecond=5\n");
+    assertThat(sampler.isSampled(1L)).isTrue();
+
+    assertThat(execute("reset", "true")).isEqualTo("sampler: configured\n");
+    assertThat(sampler.getCurrent()).isSameAs(Sampler.ALWAYS_SAMPLE);
+
+    assertThat(registry.meter("test.sampler.swaps").getCount()).isEqualTo(3);
+    assertThat(registry.getGauges().get("test.sampler.swapped").getValue()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldSwapToProbabilitiesBelowOnePercent() throws Exception {
+    assertThat(execute("probability", "0.001")).startsWith("sampler: probability=0.001\n");
+    assertThat(sampler.getCurrent()).isInstanceOf(BoundarySampler.class);
+  }
+
+  @Test
+  public void shouldRejectInvalidProbability() {
+    assertThatThrownBy(() -> execute("probability", "2"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> execute("probability", "0.00001"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(sampler.isSwapped()).isFalse();
+  }
+
+  @Test
+  public void shouldKeepTheServerRulesWhileSwapped() throws Exception {
+    final SamplerFunction<HttpRequest> rules =
+        HttpRuleSampler.newBuilder()
+            .putRule(HttpRequestMatchers.pathStartsWith("/api"), Sampler.ALWAYS_SAMPLE)
+            .build();
+    try (Tracing tracing = Tracing.newBuilder().sampler(sampler).build()) {
+      final HttpServerHandler<HttpServerRequest, HttpServerResponse> handler =
+          HttpServerHandler.create(HttpTracing.newBuilder(tracing).serverSampler(rules).build());
+
+      execute("probability", "0.0");
+
+      assertThat(handler.handleReceive(new Request("/api/orders")).isNoop()).isFalse();
+      assertThat(handler.handleReceive(new Request("/other")).isNoop()).isTrue();
+    }
+  }
+
+  static final class Request extends HttpServerRequest {
+    private final String path;
+
+    Request(String path) {
+      this.path = path;
+    }
+
+    @Override
+    public Object unwrap() {
+      return this;
+    }
+
+    @Override
+    public String method() {
+      return "GET";
+    }
+
+    @Override
+    public String path() {
+      return path;
+    }
+
+    @Override
+    public String url() {
+      return "http://localhost" + path;
+    }
+
+    @Override
+    public String header(String name) {
+      return null;
+    }
+  }
+
+  private String execute(String name, String value) throws Exception {
+    final Map<String, List<String>> parameters =
+        Collections.singletonMap(name, Collections.singletonList(value));
+    final StringWriter output = new StringWriter();
+    task.execute(parameters, new PrintWriter(output));
+    return output.toString();
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.jdbi;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reduces SQL statements to a bounded shape suitable for a span tag: comments are removed, string
+ * and numeric literals are replaced with {@code ?}, runs of placeholders (such as {@code IN} lists)
+ * collapse into a single {@code ?}, whitespace is collapsed and the result is truncated to a
+ * maximum length.
+ */
+final class SqlNormalizer {
+
+  private final int maxLength;
+
+  /**
+   * Constructor
+   *
+   * @param maxLength Maximum length of a normalized statement
+   */
+  SqlNormalizer(final int maxLength) {
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Normalize a SQL statement in a single pass, stopping once the maximum length is reached.
+   *
+   * @param sql SQL statement
+   * @return the normalized statement
+   */
+  String normalize(@Nullable final String sql) {
+    if (sql == null) {
+      return "";
+    }
+
+    final int length = sql.length();
+    final StringBuilder out = new StringBuilder(Math.min(length, maxLength));
+    int i = 0;
+    while (i < length && out.length() < maxLength) {
+      final char c = sql.charAt(i);
+      if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        i = skipLineComment(sql, i);
+        space(out);
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        i = skipBlockComment(sql, i);
+        space(out);
+      } else if (c == '\'') {
+        i = skipString(sql, i);
+        placeholder(out);
+      } else if (Character.isDigit(c) && !isIdentifierEnd(out)) {
+        i = skipNumber(sql, i);
+        placeholder(out);
+      } else if (c == '?') {
+        i++;
+        placeholder(out);
+      } else if (Character.isWhitespace(c)) {
+        i++;
+        space(out);
+      } else if (c == '"' || c == '`') {
+        final int end = skipQuoted(sql, i, c);
+        out.append(sql, i, Math.min(end, i + maxLength - out.length()));
+        i = end;
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+
+    int end = Math.min(out.length(), maxLength);
+    while (end > 0 && out.charAt(end - 1) == ' ') {
+      end--;
+    }
+    out.setLength(end);
+    return out.toString();
+  }
+
+  private static void space(final StringBuilder out) {
+    final int length = out.length();
+    if (length > 0 && out.charAt(length - 1) != ' ') {
+      out.append(' ');
+    }
+  }
+
+  /** Append a placeholder unless it directly follows another one, as in {@code (?, ?, ?)}. */
+  private static void placeholder(final StringBuilder out) {
+    int end = out.length();
+    if (end > 0 && out.charAt(end - 1) == ' ') {
+      end--;
+    }
+    if (end > 1 && out.charAt(end - 1) == ',' && out.charAt(end - 2) == '?') {
+      out.setLength(end - 1);
+      return;
+    }
+    out.append('?');
+  }
+
+  private static boolean isIdentifierEnd(final StringBuilder out) {
+    final int length = out.length();
+    if (length == 0) {
+      return false;
+    }
+    final char c = out.charAt(length - 1);
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '"' || c == '`';
+  }
+
+  private static int skipLineComment(final String sql, final int start) {
+    final int end = sql.indexOf('\n', start);
+    return end < 0 ? sql.length() : end + 1;
+  }
+
+  private static int skipBlockComment(final String sql, final int start) {
+    final int end = sql.indexOf("*/", start + 2);
+    return end < 0 ? sql.length() : end + 2;
+  }
+
+  private static int skipString(final String sql, final int start) {
+    int i = start + 1;
+    while (i < sql.length()) {
+      if (sql.charAt(i) == '\'') {
+        // a doubled quote is an escaped quote inside the literal
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipNumber(final String sql, final int start) {
+    int i = start;
+    while (i < sql.length()) {
+      final char c = sql.charAt(i);
+      if (Character.isLetterOrDigit(c) || c == '.') {
+        i++;
+      } else if ((c == '+' || c == '-') && isExponent(sql.charAt(i - 1))) {
+        i++;
+      } else {
+        break;
+      }
+    }
+    return i;
+  }
+
+  private static boolean isExponent(final char c) {
+    return c == 'e' || c == 'E';
+  }
+
+  private static int skipQuoted(final String sql, final int start, final char quote) {
+    final int end = sql.indexOf(quote, start + 1);
+    return end < 0 ? sql.length() : end + 1;
+  }
+}
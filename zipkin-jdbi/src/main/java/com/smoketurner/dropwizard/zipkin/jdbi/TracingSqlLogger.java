@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.jdbi;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.CurrentTraceContext;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.jdbi.v3.core.statement.ParsedSql;
+import org.jdbi.v3.core.statement.SqlLogger;
+import org.jdbi.v3.core.statement.StatementContext;
+
+/**
+ * A {@link SqlLogger} that records a client span for each statement executed within a trace.
+ *
+ * <p>Spans are created retroactively once a statement completes, so statements that run outside of
+ * a trace, are not sampled or finish faster than the minimum duration cost no more than a
+ * comparison. Failed statements are always recorded. Every call is forwarded to a delegate logger
+ * so the Dropwizard statement timers keep working.
+ */
+public class TracingSqlLogger implements SqlLogger {
+
+  static final String SQL_QUERY = "sql.query";
+
+  private final SqlLogger delegate;
+  private final Tracer tracer;
+  private final CurrentTraceContext currentTraceContext;
+  private final String remoteServiceName;
+  private final long minDurationNanos;
+  private final SqlNormalizer normalizer;
+
+  /**
+   * Constructor
+   *
+   * @param delegate Logger to forward every call to
+   * @param tracing Tracing instance
+   * @param remoteServiceName Name of the database as it should appear in traces
+   * @param minDurationNanos Statements faster than this are not recorded
+   * @param maxSqlLength Maximum length of the {@code sql.query} tag
+   */
+  public TracingSqlLogger(
+      final SqlLogger delegate,
+      final Tracing tracing,
+      final String remoteServiceName,
+      final long minDurationNanos,
+      final int maxSqlLength) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.tracer = tracing.tracer();
+    this.currentTraceContext = tracing.currentTraceContext();
+    this.remoteServiceName = Objects.requireNonNull(remoteServiceName);
+    this.minDurationNanos = minDurationNanos;
+    this.normalizer = new SqlNormalizer(maxSqlLength);
+  }
+
+  @Override
+  public void logBeforeExecution(final StatementContext context) {
+    delegate.logBeforeExecution(context);
+  }
+
+  @Override
+  public void logAfterExecution(final StatementContext context) {
+    delegate.logAfterExecution(context);
+    if (context.getElapsedTime(ChronoUnit.NANOS) >= minDurationNanos) {
+      record(context, null);
+    }
+  }
+
+  @Override
+  public void logException(final StatementContext context, final SQLException ex) {
+    delegate.logException(context, ex);
+    record(context, ex);
+  }
+
+  private void record(final StatementContext context, @Nullable final Throwable error) {
+    if (currentTraceContext.get() == null) {
+      return;
+    }
+    final Instant start = context.getExecutionMoment();
+    if (start == null) {
+      return;
+    }
+
+    final Span span = tracer.nextSpan();
+    if (span.isNoop()) {
+      return;
+    }
+
+    final String sql = normalizer.normalize(getSql(context));
+    span.kind(Span.Kind.CLIENT).name(getOperation(sql)).remoteServiceName(remoteServiceName);
+    if (!sql.isEmpty()) {
+      span.tag(SQL_QUERY, sql);
+    }
+    if (error != null) {
+      span.error(error);
+    }
+
+    final Instant end = context.getCompletionMoment();
+    final long startMicros = toMicros(start);
+    span.start(startMicros);
+    if (end != null) {
+      span.finish(toMicros(end));
+    } else {
+      span.finish(startMicros + context.getElapsedTime(ChronoUnit.MICROS));
+    }
+  }
+
+  @Nullable
+  private static String getSql(final StatementContext context) {
+    final ParsedSql parsed = context.getParsedSql();
+    if (parsed != null) {
+      return parsed.getSql();
+    }
+    return context.getRenderedSql();
+  }
+
+  /**
+   * @return the first keyword of the statement, such as {@code select}
+   */
+  static String getOperation(final String sql) {
+    int end = 0;
+    while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+      end++;
+    }
+    return end == 0 ? "query" : sql.substring(0, end).toLowerCase(Locale.ROOT);
+  }
+
+  private static long toMicros(final Instant instant) {
+    return TimeUnit.SECONDS.toMicros(instant.getEpochSecond())
+        + TimeUnit.NANOSECONDS.toMicros(instant.getNano());
+  }
+}
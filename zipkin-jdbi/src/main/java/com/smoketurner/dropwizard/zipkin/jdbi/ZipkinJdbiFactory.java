@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.jdbi;
+
+import brave.http.HttpTracing;
+import com.codahale.metrics.jdbi3.strategies.SmartNameStrategy;
+import com.codahale.metrics.jdbi3.strategies.StatementNameStrategy;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.db.PooledDataSourceFactory;
+import io.dropwizard.jdbi3.JdbiFactory;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import java.util.Objects;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.SqlStatements;
+
+/**
+ * A {@link JdbiFactory} whose {@link Jdbi} instances record a client span for each statement
+ * executed within a trace. The name the {@link Jdbi} is built with is used as the remote service
+ * name of those spans.
+ */
+public class ZipkinJdbiFactory extends JdbiFactory {
+  private final HttpTracing httpTracing;
+  private Duration minDuration = Duration.milliseconds(0);
+  private int maxSqlLength = 1024;
+
+  /**
+   * Constructor
+   *
+   * @param httpTracing HttpTracing instance
+   */
+  public ZipkinJdbiFactory(final HttpTracing httpTracing) {
+    this(httpTracing, new SmartNameStrategy());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param httpTracing HttpTracing instance
+   * @param nameStrategy Strategy used to name the statement timers
+   */
+  public ZipkinJdbiFactory(
+      final HttpTracing httpTracing, final StatementNameStrategy nameStrategy) {
+    super(nameStrategy);
+    this.httpTracing = Objects.requireNonNull(httpTracing);
+  }
+
+  /**
+   * Only record statements that take at least this long. Failed statements are always recorded.
+   *
+   * @param minDuration Minimum statement duration
+   * @return this factory
+   */
+  public ZipkinJdbiFactory minDuration(final Duration minDuration) {
+    this.minDuration = Objects.requireNonNull(minDuration);
+    return this;
+  }
+
+  /**
+   * Truncate the normalized SQL tagged on each span to this length.
+   *
+   * @param maxSqlLength Maximum length of the {@code sql.query} tag
+   * @return this factory
+   */
+  public ZipkinJdbiFactory maxSqlLength(final int maxSqlLength) {
+    if (maxSqlLength < 0) {
+      throw new IllegalArgumentException("maxSqlLength must not be negative");
+    }
+    this.maxSqlLength = maxSqlLength;
+    return this;
+  }
+
+  @Override
+  public Jdbi build(
+      final Environment environment,
+      final PooledDataSourceFactory configuration,
+      final ManagedDataSource dataSource,
+      final String name) {
+    final Jdbi jdbi = super.build(environment, configuration, dataSource, name);
+    jdbi.setSqlLogger(
+        new TracingSqlLogger(
+            jdbi.getConfig(SqlStatements.class).getSqlLogger(),
+            httpTracing.tracing(),
+            name,
+            minDuration.toNanoseconds(),
+            maxSqlLength));
+    return jdbi;
+  }
+}
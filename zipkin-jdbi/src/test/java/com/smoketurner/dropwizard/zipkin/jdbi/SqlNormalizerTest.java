@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class SqlNormalizerTest {
+
+  private final SqlNormalizer normalizer = new SqlNormalizer(64);
+
+  @Test
+  public void testReplacesLiterals() {
+    assertThat(normalizer.normalize("SELECT * FROM t1 WHERE a = 'it''s' AND b = -1.5e-3"))
+        .isEqualTo("SELECT * FROM t1 WHERE a = ? AND b = -?");
+  }
+
+  @Test
+  public void testCollapsesPlaceholdersAndWhitespace() {
+    assertThat(normalizer.normalize("SELECT  id\n\tFROM t WHERE id IN (?, ?,?) AND x = ?"))
+        .isEqualTo("SELECT id FROM t WHERE id IN (?) AND x = ?");
+  }
+
+  @Test
+  public void testStripsComments() {
+    assertThat(normalizer.normalize("/* UserDao.find */ SELECT 1 -- trailing\n FROM dual"))
+        .isEqualTo("SELECT ? FROM dual");
+  }
+
+  @Test
+  public void testKeepsQuotedIdentifiers() {
+    assertThat(normalizer.normalize("SELECT \"col 1\" FROM `t 2`"))
+        .isEqualTo("SELECT \"col 1\" FROM `t 2`");
+  }
+
+  @Test
+  public void testTruncates() {
+    assertThat(new SqlNormalizer(10).normalize("SELECT name FROM users")).isEqualTo("SELECT nam");
+    assertThat(normalizer.normalize(null)).isEmpty();
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.jdbi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import brave.ScopedSpan;
+import brave.Span;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.http.HttpTracing;
+import brave.propagation.TraceContext;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZipkinJdbiFactoryTest {
+
+  private final List<MutableSpan> spans = new CopyOnWriteArrayList<>();
+  private final Tracing tracing =
+      Tracing.newBuilder()
+          .addSpanHandler(
+              new SpanHandler() {
+                @Override
+                public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                  spans.add(span);
+                  return true;
+                }
+              })
+          .build();
+  private final Environment environment = new Environment("test");
+  private final DataSourceFactory dataSourceFactory = new DataSourceFactory();
+
+  @Before
+  public void setUp() {
+    dataSourceFactory.setDriverClass("org.h2.Driver");
+    dataSourceFactory.setUrl("jdbc:h2:mem:zipkin-jdbi;DB_CLOSE_DELAY=-1");
+    dataSourceFactory.setUser("sa");
+  }
+
+  @After
+  public void tearDown() {
+    tracing.close();
+  }
+
+  private Jdbi build(final ZipkinJdbiFactory factory) {
+    final Jdbi jdbi = factory.build(environment, dataSourceFactory, "h2");
+    jdbi.useHandle(
+        h -> h.execute("CREATE TABLE IF NOT EXISTS users (id INT PRIMARY KEY, name VARCHAR(64))"));
+    spans.clear();
+    return jdbi;
+  }
+
+  @Test
+  public void testRecordsStatementsWithinTrace() {
+    final Jdbi jdbi = build(new ZipkinJdbiFactory(HttpTracing.create(tracing)));
+
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    try {
+      jdbi.useHandle(h -> h.execute("INSERT INTO users VALUES (1, 'alice')"));
+      jdbi.useHandle(
+          h ->
+              h.createQuery("SELECT name FROM users WHERE id IN (<ids>)")
+                  .bindList("ids", 1, 2, 3)
+                  .mapTo(String.class)
+                  .list());
+    } finally {
+      parent.finish();
+    }
+
+    assertThat(spans).hasSize(3);
+    final MutableSpan insert = spans.get(0);
+    assertThat(insert.kind()).isEqualTo(Span.Kind.CLIENT);
+    assertThat(insert.name()).isEqualTo("insert");
+    assertThat(insert.remoteServiceName()).isEqualTo("h2");
+    assertThat(insert.parentId()).isEqualTo(parent.context().spanIdString());
+    assertThat(insert.tag(TracingSqlLogger.SQL_QUERY)).isEqualTo("INSERT INTO users VALUES (?)");
+    assertThat(insert.finishTimestamp()).isGreaterThanOrEqualTo(insert.startTimestamp());
+
+    final MutableSpan select = spans.get(1);
+    assertThat(select.name()).isEqualTo("select");
+    assertThat(select.tag(TracingSqlLogger.SQL_QUERY))
+        .isEqualTo("SELECT name FROM users WHERE id IN (?)");
+
+    // the Dropwizard statement timers still run
+    assertThat(environment.metrics().getTimers()).isNotEmpty();
+  }
+
+  @Test
+  public void testIgnoresStatementsOutsideTrace() {
+    final Jdbi jdbi = build(new ZipkinJdbiFactory(HttpTracing.create(tracing)));
+
+    jdbi.useHandle(h -> h.execute("INSERT INTO users VALUES (2, 'bob')"));
+
+    assertThat(spans).isEmpty();
+  }
+
+  @Test
+  public void testMinDurationSkipsFastStatementsButNotErrors() {
+    final Jdbi jdbi =
+        build(
+            new ZipkinJdbiFactory(HttpTracing.create(tracing))
+                .minDuration(Duration.minutes(1))
+                .maxSqlLength(16));
+
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    try {
+      jdbi.useHandle(h -> h.execute("INSERT INTO users VALUES (3, 'carol')"));
+      assertThatThrownBy(
+              () -> jdbi.useHandle(h -> h.execute("INSERT INTO users VALUES (3, 'dan')")))
+          .isInstanceOf(Exception.class);
+    } finally {
+      parent.finish();
+    }
+
+    assertThat(spans).hasSize(2);
+    final MutableSpan failed = spans.get(0);
+    assertThat(failed.name()).isEqualTo("insert");
+    assertThat(failed.error()).isNotNull();
+    assertThat(failed.tag(TracingSqlLogger.SQL_QUERY)).isEqualTo("INSERT INTO user");
+  }
+}
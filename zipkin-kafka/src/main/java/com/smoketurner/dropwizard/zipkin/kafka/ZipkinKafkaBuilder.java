@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.kafka;
+
+import brave.Span;
+import brave.Tracing;
+import brave.http.HttpTracing;
+import brave.kafka.clients.KafkaTracing;
+import brave.messaging.MessagingRuleSampler;
+import brave.messaging.MessagingTracing;
+import brave.propagation.B3Propagation;
+import brave.sampler.Sampler;
+import java.util.Objects;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
+
+/**
+ * Builds the {@link KafkaTracing} used to wrap the application's Kafka {@link Producer} and {@link
+ * Consumer} instances, from the {@link HttpTracing} of the {@code ZipkinBundle}.
+ */
+public class ZipkinKafkaBuilder {
+
+  private final Tracing tracing;
+  private ZipkinKafkaConfiguration configuration = new ZipkinKafkaConfiguration();
+
+  /**
+   * Constructor
+   *
+   * @param httpTracing HttpTracing instance
+   */
+  public ZipkinKafkaBuilder(final HttpTracing httpTracing) {
+    this.tracing = httpTracing.tracing();
+  }
+
+  /**
+   * Use the given configuration
+   *
+   * @param configuration Kafka tracing configuration
+   * @return this builder
+   */
+  public ZipkinKafkaBuilder using(final ZipkinKafkaConfiguration configuration) {
+    this.configuration = Objects.requireNonNull(configuration);
+    return this;
+  }
+
+  /**
+   * Build a new {@link KafkaTracing}
+   *
+   * @return new KafkaTracing
+   */
+  public KafkaTracing build() {
+    final B3Propagation.Format format =
+        configuration.isSingleHeader() ? B3Propagation.Format.SINGLE : B3Propagation.Format.MULTI;
+    final MessagingTracing.Builder messaging =
+        MessagingTracing.newBuilder(tracing)
+            .propagation(
+                B3Propagation.newFactoryBuilder()
+                    .injectFormat(Span.Kind.PRODUCER, format)
+                    .injectFormat(Span.Kind.CONSUMER, format)
+                    .build()
+                    .get());
+    final Float batchSampleRate = configuration.getBatchSampleRate();
+    if (batchSampleRate != null) {
+      messaging.consumerSampler(
+          MessagingRuleSampler.newBuilder()
+              .putRule(request -> true, Sampler.create(batchSampleRate))
+              .build());
+    }
+    return KafkaTracing.newBuilder(messaging.build())
+        .remoteServiceName(configuration.getRemoteServiceName())
+        .singleRootSpanOnReceiveBatch(configuration.isBatchSpans())
+        .build();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.kafka;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.annotation.Nullable;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotEmpty;
+
+public class ZipkinKafkaConfiguration {
+
+  @NotEmpty private String remoteServiceName = "kafka";
+
+  private boolean singleHeader = true;
+
+  private boolean batchSpans = false;
+
+  @Nullable
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private Float batchSampleRate;
+
+  @JsonProperty
+  public String getRemoteServiceName() {
+    return remoteServiceName;
+  }
+
+  /**
+   * Sets {@code span.remoteServiceName} in producer and consumer spans.
+   *
+   * @param remoteServiceName the name of the Kafka cluster
+   */
+  @JsonProperty
+  public void setRemoteServiceName(final String remoteServiceName) {
+    this.remoteServiceName = remoteServiceName;
+  }
+
+  @JsonProperty
+  public boolean isSingleHeader() {
+    return singleHeader;
+  }
+
+  /**
+   * Propagates the trace context of records in the single {@code b3} header (the default) rather
+   * than in the four {@code X-B3-*} headers expected by older instrumentation. Both formats are
+   * read from consumed records.
+   *
+   * @param singleHeader whether to write a single header per record
+   */
+  @JsonProperty
+  public void setSingleHeader(final boolean singleHeader) {
+    this.singleHeader = singleHeader;
+  }
+
+  @JsonProperty
+  public boolean isBatchSpans() {
+    return batchSpans;
+  }
+
+  /**
+   * Creates a single consumer span for all the records of a poll that do not carry a trace context,
+   * instead of a new trace per record.
+   *
+   * @param batchSpans whether to create one span per polled batch
+   */
+  @JsonProperty
+  public void setBatchSpans(final boolean batchSpans) {
+    this.batchSpans = batchSpans;
+  }
+
+  @JsonProperty
+  @Nullable
+  public Float getBatchSampleRate() {
+    return batchSampleRate;
+  }
+
+  /**
+   * Sets the probability of tracing polled records which do not carry a trace context. Defaults to
+   * the sampler of the application.
+   *
+   * @param batchSampleRate the sample rate, between 0.0 and 1.0
+   */
+  @JsonProperty
+  public void setBatchSampleRate(@Nullable final Float batchSampleRate) {
+    this.batchSampleRate = batchSampleRate;
+  }
+}
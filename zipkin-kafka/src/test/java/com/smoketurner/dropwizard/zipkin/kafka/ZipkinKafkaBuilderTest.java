@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2019 Smoke Turner, LLC (github@smoketurner.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.smoketurner.dropwizard.zipkin.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.ScopedSpan;
+import brave.Span;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.http.HttpTracing;
+import brave.kafka.clients.KafkaTracing;
+import brave.propagation.TraceContext;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Test;
+
+public class ZipkinKafkaBuilderTest {
+
+  private static final String TOPIC = "events";
+
+  private final List<MutableSpan> spans = new CopyOnWriteArrayList<>();
+  private final Tracing tracing =
+      Tracing.newBuilder()
+          .addSpanHandler(
+              new SpanHandler() {
+                @Override
+                public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                  spans.add(span);
+                  return true;
+                }
+              })
+          .build();
+  private final ZipkinKafkaConfiguration configuration = new ZipkinKafkaConfiguration();
+  private final MockProducer<String, String> mockProducer =
+      new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+  private final MockConsumer<String, String> mockConsumer =
+      new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+
+  @After
+  public void tearDown() {
+    tracing.close();
+  }
+
+  private KafkaTracing build() {
+    return new ZipkinKafkaBuilder(HttpTracing.create(tracing)).using(configuration).build();
+  }
+
+  private List<String> sendAndGetHeaderKeys(final KafkaTracing kafkaTracing) {
+    final Producer<String, String> producer = kafkaTracing.producer(mockProducer);
+    final ScopedSpan parent = tracing.tracer().startScopedSpan("parent");
+    try {
+      producer.send(new ProducerRecord<>(TOPIC, "key", "value"));
+    } finally {
+      parent.finish();
+    }
+
+    final List<String> keys = new CopyOnWriteArrayList<>();
+    for (Header header : mockProducer.history().get(0).headers()) {
+      keys.add(header.key());
+    }
+    return keys;
+  }
+
+  @Test
+  public void testProducerWritesMultipleHeaders() {
+    configuration.setSingleHeader(false);
+
+    assertThat(sendAndGetHeaderKeys(build()))
+        .containsExactlyInAnyOrder(
+            "X-B3-TraceId", "X-B3-SpanId", "X-B3-ParentSpanId", "X-B3-Sampled");
+
+    final MutableSpan span = spans.get(0);
+    assertThat(span.kind()).isEqualTo(Span.Kind.PRODUCER);
+    assertThat(span.remoteServiceName()).isEqualTo("kafka");
+  }
+
+  @Test
+  public void testProducerWritesSingleHeaderByDefault() {
+    configuration.setRemoteServiceName("events-cluster");
+
+    assertThat(sendAndGetHeaderKeys(build())).containsExactly("b3");
+
+    final MutableSpan span = spans.get(0);
+    final String b3 =
+        new String(
+            mockProducer.history().get(0).headers().lastHeader("b3").value(),
+            StandardCharsets.UTF_8);
+    assertThat(b3).startsWith(span.traceId() + "-" + span.id());
+    assertThat(span.remoteServiceName()).isEqualTo("events-cluster");
+  }
+
+  private ConsumerRecords<String, String> poll(final int records) {
+    final TopicPartition partition = new TopicPartition(TOPIC, 0);
+    mockConsumer.assign(Collections.singletonList(partition));
+    mockConsumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+    for (int i = 0; i < records; i++) {
+      mockConsumer.addRecord(new ConsumerRecord<>(TOPIC, 0, i, "key", "value"));
+    }
+    final Consumer<String, String> consumer = build().consumer(mockConsumer);
+    return consumer.poll(Duration.ZERO);
+  }
+
+  @Test
+  public void testConsumerTracesEachRecordByDefault() {
+    assertThat(poll(3).count()).isEqualTo(3);
+
+    assertThat(spans).hasSize(3);
+  }
+
+  @Test
+  public void testConsumerBatchSpan() {
+    configuration.setBatchSpans(true);
+
+    final ConsumerRecords<String, String> records = poll(3);
+
+    assertThat(spans).hasSize(1);
+    final MutableSpan span = spans.get(0);
+    assertThat(span.kind()).isEqualTo(Span.Kind.CONSUMER);
+    for (ConsumerRecord<String, String> record : records) {
+      assertThat(new String(record.headers().lastHeader("b3").value(), StandardCharsets.UTF_8))
+          .startsWith(span.traceId() + "-" + span.id());
+    }
+  }
+
+  @Test
+  public void testConsumerBatchSampleRate() {
+    configuration.setBatchSpans(true);
+    configuration.setBatchSampleRate(0.0f);
+
+    final ConsumerRecords<String, String> records = poll(3);
+
+    assertThat(records.count()).isEqualTo(3);
+    assertThat(spans).isEmpty();
+  }
+}